@@ -1,9 +1,11 @@
 package edu.utsa.cs3443.macromateapp;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import edu.utsa.cs3443.macromateapp.controller.SidebarController;
 import edu.utsa.cs3443.macromateapp.model.DataManager;
@@ -128,6 +130,8 @@ public class MacroMateApplication extends Application {
     /**
      * Initializes application state, loads persistent user data, and determines the
      * first screen to display (dashboard if a user is already logged in, otherwise login).
+     * If saved data exists but cannot be read, an error is shown and the application exits
+     * without touching the files.
      *
      * @param stage the primary stage provided by the JavaFX runtime
      */
@@ -138,13 +142,28 @@ public class MacroMateApplication extends Application {
         // Load data folder in user's home directory
         Path dir = Paths.get(System.getProperty("user.home"), ".macromate1");
         dataManager = new DataManager(dir);
-        dataManager.loadAllData();
+        dataManager.setCallbackExecutor(Platform::runLater);
+        // The saved data is read in the background; the first screen is shown once it is loaded.
+        dataManager.loadAllDataAsync().whenComplete((loaded, error) -> {
+            if (error != null) {
+                new Alert(Alert.AlertType.ERROR, "MacroMate could not read its saved data in " + dir
+                        + " and will close without changing it.\n\n" + error.getMessage()).showAndWait();
+                Platform.exit();
+            } else if (dataManager.getActiveUser() != null) {
+                // The user's shard is read in the background too; show the dashboard once it is loaded.
+                dataManager.loadActiveUserAsync().thenRun(() -> switchScene("dashboard.fxml", "MacroMate"));
+            } else {
+                switchScene("login.fxml", "MacroMate - Login");
+            }
+        });
+    }
 
-        if (dataManager.getActiveUser() != null) {
-            switchScene("dashboard.fxml", "MacroMate");
-        } else {
-            switchScene("login.fxml", "MacroMate - Login");
-        }
+    /**
+     * Flushes any pending background writes before the application exits.
+     */
+    @Override
+    public void stop() {
+        if (dataManager != null) dataManager.shutdown();
     }
 
     /**
@@ -4,6 +4,7 @@ import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.XYChart;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.ProgressBar;
@@ -16,6 +17,7 @@ import javafx.scene.chart.CategoryAxis;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 /**
  * Controller for the Dashboard view of the MacroMate application.
  *
@@ -61,6 +63,11 @@ public class DashboardController {
     @FXML private Label avgCarbsLabel;
     @FXML private Label avgFatLabel;
 
+    @FXML private Label avg30CaloriesLabel;
+    @FXML private Label avg90CaloriesLabel;
+    @FXML private Label avg365CaloriesLabel;
+    @FXML private Label avgAllTimeCaloriesLabel;
+
     @FXML private DatePicker historyDatePicker;
     @FXML private Label caloriesTitleLabel;
     @FXML private Label macrosTitleLabel;
@@ -88,6 +95,9 @@ public class DashboardController {
         if (helloLabel != null) {
             String name = (u == null || u.getName() == null || u.getName().isBlank()) ? "User" : u.getName().trim();
             helloLabel.setText("Hello, " + name + "!");
+            if (dataManager.isActiveUserReadOnly()) {
+                new Alert(Alert.AlertType.ERROR, "Your saved diary could not be read. It is kept as it is on disk, and nothing can be changed until it can be read.").show();
+            }
         }
 
         if (dateLabel != null) {
@@ -123,8 +133,6 @@ public class DashboardController {
         double cGoal = goal == null ? 200 : goal.getTargetCarbsG();
         double fGoal = goal == null ? 65 : goal.getTargetFatG();
 
-        today.computeTotals();
-
         int cal = today.getTotalCalories();
         double p = today.getTotalProteinG();
         double c = today.getTotalCarbsG();
@@ -143,34 +151,43 @@ public class DashboardController {
         if (fatLabel != null) fatLabel.setText("%.0fg / %.0fg".formatted(f, fGoal));
         if (fatProgressBar != null) fatProgressBar.setProgress(fGoal <= 0 ? 0 : Math.min(1.0, f / fGoal));
 
-        Map<FoodLog.MealType, List<String>> byMeal = new EnumMap<>(FoodLog.MealType.class);
-        Map<FoodLog.MealType, Double> kcalByMeal = new EnumMap<>(FoodLog.MealType.class);
-        for (FoodLog.MealType mt : FoodLog.MealType.values()) {
-            byMeal.put(mt, new ArrayList<>());
-            kcalByMeal.put(mt, 0.0);
-        }
-
-        for (FoodLog log : today.getFoodLogs()) {
-            if (log == null) continue;
-            FoodLog.MealType mt = log.getMealType() == null ? FoodLog.MealType.SNACK : log.getMealType();
-            String name = dataManager.resolveFoodNameById(log.getCustomFoodId());
-            if (name == null || name.isBlank()) name = "Item";
+        setMealList(breakfastList, mealLines(today, FoodLog.MealType.BREAKFAST));
+        setMealList(lunchList, mealLines(today, FoodLog.MealType.LUNCH));
+        setMealList(dinnerList, mealLines(today, FoodLog.MealType.DINNER));
+        setMealList(snackList, mealLines(today, FoodLog.MealType.SNACK));
 
-            String line = "%s - %.0f kcal (%s)".formatted(name, log.gtCalories(), log.getFormattedTime());
-            byMeal.get(mt).add(line);
-            kcalByMeal.put(mt, kcalByMeal.get(mt) + log.gtCalories());
+        if (breakfastCaloriesLabel != null) breakfastCaloriesLabel.setText("%.0f kcal".formatted(today.getMealTotals(FoodLog.MealType.BREAKFAST).getCalories()));
+        if (lunchCaloriesLabel != null) lunchCaloriesLabel.setText("%.0f kcal".formatted(today.getMealTotals(FoodLog.MealType.LUNCH).getCalories()));
+        if (dinnerCaloriesLabel != null) dinnerCaloriesLabel.setText("%.0f kcal".formatted(today.getMealTotals(FoodLog.MealType.DINNER).getCalories()));
+        if (snackCaloriesLabel != null) snackCaloriesLabel.setText("%.0f kcal".formatted(today.getMealTotals(FoodLog.MealType.SNACK).getCalories()));
+    }
+    /**
+     * Builds the display lines for one meal, read straight from the DayLog's meal bucket.
+     *
+     * @param day day to list
+     * @param mealType meal to list
+     * @return one line per entry, in time order
+     */
+    private List<String> mealLines(DayLog day, FoodLog.MealType mealType) {
+        List<String> lines = new ArrayList<>();
+        for (FoodLog log : day.getFoodLogs(mealType)) {
+            lines.add(mealLine(log));
         }
+        return lines;
+    }
 
-        setMealList(breakfastList, byMeal.get(FoodLog.MealType.BREAKFAST));
-        setMealList(lunchList, byMeal.get(FoodLog.MealType.LUNCH));
-        setMealList(dinnerList, byMeal.get(FoodLog.MealType.DINNER));
-        setMealList(snackList, byMeal.get(FoodLog.MealType.SNACK));
-
-        if (breakfastCaloriesLabel != null) breakfastCaloriesLabel.setText("%.0f kcal".formatted(kcalByMeal.get(FoodLog.MealType.BREAKFAST)));
-        if (lunchCaloriesLabel != null) lunchCaloriesLabel.setText("%.0f kcal".formatted(kcalByMeal.get(FoodLog.MealType.LUNCH)));
-        if (dinnerCaloriesLabel != null) dinnerCaloriesLabel.setText("%.0f kcal".formatted(kcalByMeal.get(FoodLog.MealType.DINNER)));
-        if (snackCaloriesLabel != null) snackCaloriesLabel.setText("%.0f kcal".formatted(kcalByMeal.get(FoodLog.MealType.SNACK)));
+    /**
+     * Formats one entry the way it is shown in the meal lists.
+     *
+     * @param log entry to format
+     * @return display line
+     */
+    private String mealLine(FoodLog log) {
+        String name = dataManager.resolveFoodNameById(log.getCustomFoodId());
+        if (name == null || name.isBlank()) name = "Item";
+        return "%s - %.0f kcal (%s)".formatted(name, log.gtCalories(), log.getFormattedTime());
     }
+
     /**
      * Sets the items of a meal list view.
      *
@@ -234,31 +251,19 @@ public class DashboardController {
         FoodLog toRemove = null;
 
         // Rebuild the *display text* exactly like refreshDashboard() does and match it
-        for (FoodLog log : today.getFoodLogs()) {
-            if (log == null) continue;
-
-            FoodLog.MealType mt = (log.getMealType() == null)
-                    ? FoodLog.MealType.SNACK
-                    : log.getMealType();
-            if (mt != mealType) continue;
-
-            String name = dataManager.resolveFoodNameById(log.getCustomFoodId());
-            if (name == null || name.isBlank()) name = "Item";
-
-            String line = "%s - %.0f kcal (%s)".formatted(
-                    name,
-                    log.gtCalories(),
-                    log.getFormattedTime()
-            );
-
-            if (line.equals(selected)) {
+        for (FoodLog log : today.getFoodLogs(mealType)) {
+            if (mealLine(log).equals(selected)) {
                 toRemove = log;
                 break;
             }
         }
 
         if (toRemove != null) {
-            today.removeFoodLog(toRemove);  // updates totals in DayLog
+            // updates totals in DayLog and journals the removal
+            if (!dataManager.removeFoodLog(LocalDate.now(), toRemove)) {
+                new Alert(Alert.AlertType.ERROR, "The saved diary for this month could not be read, so it cannot be changed.").showAndWait();
+                return;
+            }
             // Rebuild the lists, labels, and progress bars
             refreshDashboard();
         }
@@ -278,15 +283,26 @@ public class DashboardController {
         List<LocalDate> days = new ArrayList<>();
         for (int i = 6; i >= 0; i--) days.add(LocalDate.now().minusDays(i));
 
+        // Per-day values and the weekly average come from the rollup; days without a log are zero.
+        List<Macros> totals = dataManager.getDailyTotals(days.get(0), days.get(days.size() - 1));
+        Macros avg = dataManager.getAverageTotals(days.get(0), days.get(days.size() - 1));
+
         if (caloriesChart != null) {
             caloriesChart.getData().clear();
             XYChart.Series<String, Number> s = new XYChart.Series<>();
-            for (LocalDate d : days) {
-                DayLog dl = dataManager.getDayLog(d);
-                dl.computeTotals();
-                s.getData().add(new XYChart.Data<>(d.format(DateTimeFormatter.ofPattern("MMM d")), dl.getTotalCalories()));
+            s.setName("Calories");
+            // Each day is drawn against the goal that applied that day, not today's goal.
+            XYChart.Series<String, Number> goalS = new XYChart.Series<>();
+            goalS.setName("Goal");
+            for (int i = 0; i < days.size(); i++) {
+                LocalDate d = days.get(i);
+                String x = d.format(DateTimeFormatter.ofPattern("MMM d"));
+                s.getData().add(new XYChart.Data<>(x, Math.round(totals.get(i).getCalories())));
+                Goal goal = dataManager.getGoalOn(d);
+                goalS.getData().add(new XYChart.Data<>(x, goal == null ? 2000 : goal.getTargetCalories()));
             }
             caloriesChart.getData().add(s);
+            caloriesChart.getData().add(goalS);
         }
 
         if (macrosChart != null) {
@@ -299,33 +315,38 @@ public class DashboardController {
             XYChart.Series<String, Number> fS = new XYChart.Series<>();
             fS.setName("Fat");
 
-            double sumCal = 0, sumP = 0, sumC = 0, sumF = 0;
-
-            for (LocalDate d : days) {
-                DayLog dl = dataManager.getDayLog(d);
-                dl.computeTotals();
+            for (int i = 0; i < days.size(); i++) {
+                Macros m = totals.get(i);
 
-                String x = d.format(DateTimeFormatter.ofPattern("MMM d"));
-                pS.getData().add(new XYChart.Data<>(x, dl.getTotalProteinG()));
-                cS.getData().add(new XYChart.Data<>(x, dl.getTotalCarbsG()));
-                fS.getData().add(new XYChart.Data<>(x, dl.getTotalFatG()));
-
-                sumCal += dl.getTotalCalories();
-                sumP += dl.getTotalProteinG();
-                sumC += dl.getTotalCarbsG();
-                sumF += dl.getTotalFatG();
+                String x = days.get(i).format(DateTimeFormatter.ofPattern("MMM d"));
+                pS.getData().add(new XYChart.Data<>(x, m.getProteinG()));
+                cS.getData().add(new XYChart.Data<>(x, m.getCarbsG()));
+                fS.getData().add(new XYChart.Data<>(x, m.getFatG()));
             }
 
             macrosChart.getData().addAll(pS, cS, fS);
 
-            if (avgCaloriesLabel != null) avgCaloriesLabel.setText("%d".formatted((int) Math.round(sumCal / 7.0)));
-            if (avgProteinLabel != null) avgProteinLabel.setText("%dg".formatted((int) Math.round(sumP / 7.0)));
-            if (avgCarbsLabel != null) avgCarbsLabel.setText("%dg".formatted((int) Math.round(sumC / 7.0)));
-            if (avgFatLabel != null) avgFatLabel.setText("%dg".formatted((int) Math.round(sumF / 7.0)));
+            if (avgCaloriesLabel != null) avgCaloriesLabel.setText("%d".formatted((int) Math.round(avg.getCalories())));
+            if (avgProteinLabel != null) avgProteinLabel.setText("%dg".formatted((int) Math.round(avg.getProteinG())));
+            if (avgCarbsLabel != null) avgCarbsLabel.setText("%dg".formatted((int) Math.round(avg.getCarbsG())));
+            if (avgFatLabel != null) avgFatLabel.setText("%dg".formatted((int) Math.round(avg.getFatG())));
         }
+        showLongRangeAverages();
+    }
+    /**
+     * Updates the 30-, 90- and 365-day and all-time average calorie labels. Each average is a
+     * range query on the user's daily rollup rather than a walk over the days in the range.
+     */
+    private void showLongRangeAverages() {
+        LocalDate today = LocalDate.now();
+        if (avg30CaloriesLabel != null) avg30CaloriesLabel.setText("%d".formatted((int) Math.round(dataManager.getAverageTotals(today.minusDays(29), today).getCalories())));
+        if (avg90CaloriesLabel != null) avg90CaloriesLabel.setText("%d".formatted((int) Math.round(dataManager.getAverageTotals(today.minusDays(89), today).getCalories())));
+        if (avg365CaloriesLabel != null) avg365CaloriesLabel.setText("%d".formatted((int) Math.round(dataManager.getAverageTotals(today.minusDays(364), today).getCalories())));
+        if (avgAllTimeCaloriesLabel != null) avgAllTimeCaloriesLabel.setText("%d".formatted((int) Math.round(dataManager.getAllTimeAverageTotals().getCalories())));
     }
     /**
-     * Displays daily details for the currently selected date in the date picker.
+     * Displays daily details for the currently selected date in the date picker. If that date's
+     * month is not in memory yet, it is loaded in the background and the details are shown then.
      */
     @FXML
     public void showDailyDetails() {
@@ -335,37 +356,25 @@ public class DashboardController {
         if (historyDatePicker != null && historyDatePicker.getValue() != null) {
             date = historyDatePicker.getValue();
         }
+        CompletableFuture<Void> load = dataManager.loadDaysAsync(date, date);
+        if (!load.isDone()) {
+            load.thenRun(this::showDailyDetails);
+            return;
+        }
         if (caloriesTitleLabel != null) caloriesTitleLabel.setText("Calorie Intake (Today)");
         if (macrosTitleLabel != null) macrosTitleLabel.setText("Macronutrients (Today)");
-        if (summaryTitleLabel != null) summaryTitleLabel.setText("Daily Summary");
+        if (summaryTitleLabel != null) {
+            Goal goal = dataManager.getGoalOn(date);
+            summaryTitleLabel.setText(goal == null ? "Daily Summary" : "Daily Summary (Goal: %d cal)".formatted(goal.getTargetCalories()));
+        }
 
         DayLog day = dataManager.getDayLog(date);
         if (day == null) return;
 
-        Map<FoodLog.MealType, Double> calByMeal = new EnumMap<>(FoodLog.MealType.class);
-        Map<FoodLog.MealType, Double> pByMeal = new EnumMap<>(FoodLog.MealType.class);
-        Map<FoodLog.MealType, Double> cByMeal = new EnumMap<>(FoodLog.MealType.class);
-        Map<FoodLog.MealType, Double> fByMeal = new EnumMap<>(FoodLog.MealType.class);
-
+        // Per-meal totals are maintained by the DayLog itself.
+        Map<FoodLog.MealType, Macros> byMeal = new EnumMap<>(FoodLog.MealType.class);
         for (FoodLog.MealType mt : FoodLog.MealType.values()) {
-            calByMeal.put(mt, 0.0);
-            pByMeal.put(mt, 0.0);
-            cByMeal.put(mt, 0.0);
-            fByMeal.put(mt, 0.0);
-        }
-
-        day.computeTotals();
-
-        for (FoodLog log : day.getFoodLogs()) {
-            if (log == null) continue;
-            FoodLog.MealType mt = log.getMealType() == null ? FoodLog.MealType.SNACK : log.getMealType();
-
-            calByMeal.put(mt, calByMeal.get(mt) + log.gtCalories());
-
-            Map<String, Double> m = log.getMacros();
-            pByMeal.put(mt, pByMeal.get(mt) + m.getOrDefault("proteinG", 0.0));
-            cByMeal.put(mt, cByMeal.get(mt) + m.getOrDefault("carbsG", 0.0));
-            fByMeal.put(mt, fByMeal.get(mt) + m.getOrDefault("fatG", 0.0));
+            byMeal.put(mt, day.getMealTotals(mt));
         }
 
         if (caloriesChart != null) {
@@ -378,7 +387,7 @@ public class DashboardController {
             s.setName(date.format(DateTimeFormatter.ofPattern("MMM d")));
 
             for (FoodLog.MealType mt : FoodLog.MealType.values()) {
-                s.getData().add(new XYChart.Data<>(prettyMeal(mt), calByMeal.get(mt)));
+                s.getData().add(new XYChart.Data<>(prettyMeal(mt), byMeal.get(mt).getCalories()));
             }
 
             caloriesChart.getData().add(s);
@@ -399,9 +408,9 @@ public class DashboardController {
 
             for (FoodLog.MealType mt : FoodLog.MealType.values()) {
                 String x = prettyMeal(mt);
-                pS.getData().add(new XYChart.Data<>(x, pByMeal.get(mt)));
-                cS.getData().add(new XYChart.Data<>(x, cByMeal.get(mt)));
-                fS.getData().add(new XYChart.Data<>(x, fByMeal.get(mt)));
+                pS.getData().add(new XYChart.Data<>(x, byMeal.get(mt).getProteinG()));
+                cS.getData().add(new XYChart.Data<>(x, byMeal.get(mt).getCarbsG()));
+                fS.getData().add(new XYChart.Data<>(x, byMeal.get(mt).getFatG()));
             }
 
             macrosChart.getData().addAll(pS, cS, fS);
@@ -411,6 +420,7 @@ public class DashboardController {
             if (avgCarbsLabel != null) avgCarbsLabel.setText("%dg".formatted((int) Math.round(day.getTotalCarbsG())));
             if (avgFatLabel != null) avgFatLabel.setText("%dg".formatted((int) Math.round(day.getTotalFatG())));
         }
+        showLongRangeAverages();
     }
     /**
      * Converts a meal type enum value into a display-friendly string.
@@ -434,7 +444,6 @@ public class DashboardController {
         // Clear active user if needed
         if (dataManager != null) {
             dataManager.setActiveUser(null);
-            dataManager.saveAllData();
         }
 
         MacroMateApplication.switchScene("login.fxml", "MacroMate - Login");
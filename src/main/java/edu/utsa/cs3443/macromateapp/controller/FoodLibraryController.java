@@ -69,7 +69,7 @@ public class FoodLibraryController {
         }
 
         if (foodsList != null) {
-            foodsList.setItems(FXCollections.observableArrayList(dataManager.getFoodsForActiveUser()));
+            foodsList.setItems(FXCollections.observableList(dataManager.getFoodsForActiveUser()));
         }
 
         if (libraryList != null) {
@@ -112,6 +112,7 @@ public class FoodLibraryController {
 
     /**
      * Filters the foods list and custom foods list based on the current search field text.
+     * Foods are looked up in the search index, so each keystroke stays cheap on a large catalog.
      */
     @FXML
     public void handleSearch() {
@@ -122,14 +123,7 @@ public class FoodLibraryController {
         String query = q == null ? "" : q.trim().toLowerCase(Locale.ROOT);
 
         if (foodsList != null) {
-            List<Food> filtered = dataManager.getFoodsForActiveUser().stream()
-                    .filter(Objects::nonNull)
-                    .filter(f -> query.isEmpty()
-                            || safe(f.getName()).contains(query)
-                            || safe(f.getBrand()).contains(query)
-                            || safe(f.getCategory()).contains(query))
-                    .collect(Collectors.toList());
-            foodsList.setItems(FXCollections.observableArrayList(filtered));
+            foodsList.setItems(FXCollections.observableList(dataManager.searchFoodsForActiveUser(query)));
         }
 
         if (libraryList != null) {
@@ -140,16 +134,6 @@ public class FoodLibraryController {
         }
     }
 
-    /**
-     * Normalizes a string for safe, lower-cased comparisons.
-     *
-     * @param s value used by this method
-     * @return the result of this operation
-     */
-    private String safe(String s) {
-        return s == null ? "" : s.toLowerCase(Locale.ROOT);
-    }
-
     /**
      * Handles selection changes in the foods list and updates the selected food label.
      */
@@ -199,7 +183,7 @@ public class FoodLibraryController {
                 : LocalDate.now();
 
         FoodLog log = dataManager.createFoodLogFromFood(
-                UUID.randomUUID().toString(),
+                IdDictionary.newId(),
                 selectedFood,
                 mt,
                 servings,
@@ -207,8 +191,10 @@ public class FoodLibraryController {
                 notes
         );
 
-        dataManager.addFoodLog(logDate, log);
-        dataManager.saveAllData();
+        if (!dataManager.addFoodLog(logDate, log)) {
+            showError("The saved diary for that month could not be read, so it cannot be changed.");
+            return;
+        }
         showStatus("Added to diary.");
     }
 
@@ -239,29 +225,12 @@ public class FoodLibraryController {
         double fats = askDouble("Fat (g) per serving:", 0);
         if (fats < 0) return;
 
-        String cfId = UUID.randomUUID().toString();
-
-        CustomFood cf = new CustomFood(cfId, dataManager.getActiveUser().getId(), name, "");
-
-        Food perServing = new Food(
-                "cf_item_" + cfId,
-                name,
-                "Custom",
-                "Custom",
-                1.0,
-                calories,
-                protein,
-                carbs,
-                fats
-        );
-
-        dataManager.getFoods().add(perServing);
-        cf.addIngredient(perServing, 1.0);
-        dataManager.getCustomFoods().add(cf);
-
-        dataManager.saveAllData();
+        if (dataManager.createCustomFood(name, calories, protein, carbs, fats) == null) {
+            showError("Your saved data could not be read, so custom foods cannot be changed.");
+            return;
+        }
 
-        if (foodsList != null) foodsList.setItems(FXCollections.observableArrayList(dataManager.getFoodsForActiveUser()));
+        if (foodsList != null) foodsList.setItems(FXCollections.observableList(dataManager.getFoodsForActiveUser()));
         refreshLibrary();
         showStatus("Custom food created.");
     }
@@ -280,10 +249,7 @@ public class FoodLibraryController {
         int idx = libraryList.getSelectionModel().getSelectedIndex();
         if (idx < 0) { showError("Select a custom food first."); return; }
 
-        List<CustomFood> mine = dataManager.getCustomFoods().stream()
-                .filter(Objects::nonNull)
-                .filter(cf -> dataManager.getActiveUser().getId().equalsIgnoreCase(cf.getUserId()))
-                .collect(Collectors.toList());
+        List<CustomFood> mine = myCustomFoods();
 
         if (idx >= mine.size()) { showError("Select a custom food first."); return; }
 
@@ -298,11 +264,69 @@ public class FoodLibraryController {
         boolean ok = dataManager.deleteCustomFoodById(target.getId());
         if (!ok) { showError("Could not delete."); return; }
 
-        if (foodsList != null) foodsList.setItems(FXCollections.observableArrayList(dataManager.getFoodsForActiveUser()));
+        if (foodsList != null) foodsList.setItems(FXCollections.observableList(dataManager.getFoodsForActiveUser()));
         refreshLibrary();
         showStatus("Custom food deleted.");
     }
 
+    /**
+     * Adds the selected custom food to another of the active user's custom foods, prompting for
+     * the recipe and the number of servings. Recipes that already contain the selected food
+     * (directly or through another recipe) are not offered. Recipes that share a name are listed
+     * separately, with numbered labels.
+     */
+    @FXML
+    public void handleAddSelectedToRecipe() {
+        hideMessages();
+
+        if (dataManager == null) { showError("Data not initialized."); return; }
+        if (dataManager.getActiveUser() == null) { showError("No active user."); return; }
+        if (libraryList == null) { showError("Custom list not available."); return; }
+
+        int idx = libraryList.getSelectionModel().getSelectedIndex();
+        List<CustomFood> mine = myCustomFoods();
+        if (idx < 0 || idx >= mine.size()) { showError("Select a custom food first."); return; }
+
+        CustomFood component = mine.get(idx);
+        // Recipes are picked by label but kept by ID; custom foods sharing a name get numbered labels.
+        Map<String, String> recipeIdsByLabel = new LinkedHashMap<>();
+        for (CustomFood cf : mine) {
+            if (cf == component) continue;
+            if (!dataManager.canAddCustomFoodComponent(cf.getId(), component.getId())) continue;
+            String label = safeTitle(cf.getName());
+            for (int n = 2; recipeIdsByLabel.containsKey(label); n++) label = safeTitle(cf.getName()) + " (" + n + ")";
+            recipeIdsByLabel.put(label, cf.getId());
+        }
+        if (recipeIdsByLabel.isEmpty()) { showError("No other custom food can use this one."); return; }
+
+        ChoiceDialog<String> pick = new ChoiceDialog<>(recipeIdsByLabel.keySet().iterator().next(), recipeIdsByLabel.keySet());
+        pick.setHeaderText("Add \"" + safeTitle(component.getName()) + "\" to Recipe");
+        pick.setContentText("Recipe:");
+        Optional<String> title = pick.showAndWait();
+        if (title.isEmpty()) return;
+
+        TextInputDialog d = new TextInputDialog("1.0");
+        d.setHeaderText("Add \"" + safeTitle(component.getName()) + "\" to Recipe");
+        d.setContentText("Servings:");
+        Optional<String> r = d.showAndWait();
+        if (r.isEmpty()) return;
+        double servings;
+        try {
+            servings = Double.parseDouble(r.get().trim());
+        } catch (Exception e) {
+            showError("Servings must be a number.");
+            return;
+        }
+        if (servings <= 0) { showError("Servings must be > 0."); return; }
+
+        if (!dataManager.addCustomFoodComponent(recipeIdsByLabel.get(title.get()), component.getId(), servings)) {
+            showError("Could not add to recipe.");
+            return;
+        }
+        refreshLibrary();
+        showStatus("Added to recipe.");
+    }
+
     /**
      * Prompts the user for a numeric value in a dialog.
      *
@@ -332,28 +356,41 @@ public class FoodLibraryController {
     }
 
     /**
-     * Builds display strings for custom foods belonging to the active user.
+     * Returns the active user's custom foods, in the order they are listed in the library.
+     *
+     * @return the active user's custom foods
+     */
+    private List<CustomFood> myCustomFoods() {
+        return dataManager.getCustomFoods().stream()
+                .filter(Objects::nonNull)
+                .filter(cf -> dataManager.getActiveUser().getId().equalsIgnoreCase(cf.getUserId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Builds display strings for custom foods belonging to the active user. Totals include any
+     * custom foods a recipe uses and come from one memoized pass over the user's recipes.
      *
      * @return the result of this operation
      */
     private List<String> buildCustomFoodItems() {
         if (dataManager == null || dataManager.getActiveUser() == null) return List.of();
 
+        Map<String, Macros> totals = dataManager.getCustomFoodNutrients();
         List<String> out = new ArrayList<>();
-        for (CustomFood cf : dataManager.getCustomFoods()) {
-            if (cf == null) continue;
-            if (!dataManager.getActiveUser().getId().equalsIgnoreCase(cf.getUserId())) continue;
-
-            Map<String, Double> m = cf.computerMacros();
+        for (CustomFood cf : myCustomFoods()) {
+            Macros m = totals.get(cf.getId());
+            if (m == null) m = cf.computeNutrients();
 
-            double calories = cf.computerCalories();
+            int timesLogged = dataManager.countFoodLogs(cf.getId());
 
-            out.add("%s — %.0f kcal/serv (P: %.1fg  C: %.1fg  F: %.1fg)".formatted(
+            out.add("%s — %.0f kcal/serv (P: %.1fg  C: %.1fg  F: %.1fg) · logged %d×".formatted(
                     safeTitle(cf.getName()),
-                    calories,
-                    m.getOrDefault("proteinG", 0.0),
-                    m.getOrDefault("carbsG", 0.0),
-                    m.getOrDefault("fatG", 0.0)
+                    m.getCalories(),
+                    m.getProteinG(),
+                    m.getCarbsG(),
+                    m.getFatG(),
+                    timesLogged
             ));
         }
         return out;
@@ -53,7 +53,8 @@ public class LoginController {
     }
 
     /**
-     * Attempts to authenticate the user and navigate to the dashboard on success.
+     * Attempts to authenticate the user and, on success, navigates to the dashboard once the
+     * user's data has been loaded in the background.
      */
     @FXML
     private void handleLogin() {
@@ -73,15 +74,15 @@ public class LoginController {
                 showError("Invalid email or password.");
                 return;
             }
-            dataManager.saveAllData();
-            MacroMateApplication.switchScene("dashboard.fxml", "MacroMate");
+            dataManager.loadActiveUserAsync().thenRun(() -> MacroMateApplication.switchScene("dashboard.fxml", "MacroMate"));
         } catch (Exception e) {
             showError("Login failed.");
         }
     }
 
     /**
-     * Attempts to create a new user account and navigate to the dashboard on success.
+     * Attempts to create a new user account and, on success, navigates to the dashboard once the
+     * user's data has been loaded in the background.
      */
     @FXML
     private void handleSignUp() {
@@ -108,8 +109,7 @@ public class LoginController {
             return;
         }
 
-        dataManager.saveAllData();
-        MacroMateApplication.switchScene("dashboard.fxml", "MacroMate");
+        dataManager.loadActiveUserAsync().thenRun(() -> MacroMateApplication.switchScene("dashboard.fxml", "MacroMate"));
     }
 
     /**
@@ -6,10 +6,10 @@ import javafx.scene.control.TextField;
 import edu.utsa.cs3443.macromateapp.MacroMateApplication;
 import edu.utsa.cs3443.macromateapp.model.DataManager;
 import edu.utsa.cs3443.macromateapp.model.Goal;
+import edu.utsa.cs3443.macromateapp.model.IdDictionary;
 import edu.utsa.cs3443.macromateapp.model.User;
 
 import java.time.LocalDate;
-import java.util.UUID;
 
 /**
  * Controller for the Settings view of the MacroMate application.
@@ -65,7 +65,7 @@ public class SettingsController {
 
         if (u != null) {
             if (fullNameField != null) fullNameField.setText(u.getName() == null ? "" : u.getName());
-            if (emailField != null) emailField.setText(u.getId() == null ? "" : u.getId());
+            if (emailField != null) emailField.setText(u.getEmail() == null ? "" : u.getEmail());
         }
 
         Goal g = dataManager.getActiveGoal();
@@ -114,7 +114,7 @@ public class SettingsController {
      * Saves profile changes for the active user.
      *
      * <p>This method updates the user's name if provided, and attempts to update the account email
-     * through the data manager when the email field value differs from the current user id.</p>
+     * through the data manager when the email field value differs from the current email.</p>
      */
     @FXML
     public void handleSaveProfile() {
@@ -127,14 +127,13 @@ public class SettingsController {
         String newName = fullNameField == null ? "" : fullNameField.getText().trim();
         String newEmail = emailField == null ? "" : emailField.getText().trim();
 
-        if (!newName.isBlank()) u.setName(newName);
+        if (!newName.isBlank()) dataManager.updateActiveUserName(newName);
 
-        if (!newEmail.isBlank() && !newEmail.equalsIgnoreCase(u.getId())) {
-            boolean ok = dataManager.updateAccountEmail(u.getId(), newEmail);
+        if (!newEmail.isBlank() && !newEmail.equalsIgnoreCase(u.getEmail())) {
+            boolean ok = dataManager.updateAccountEmail(u.getEmail(), newEmail);
             if (!ok) { showError("Email unavailable."); return; }
         }
 
-        dataManager.saveAllData();
         showStatus("Profile saved.");
     }
 
@@ -142,7 +141,8 @@ public class SettingsController {
      * Saves nutrition goals for the active user.
      *
      * <p>This method validates numeric goal fields, creates a new {@link edu.utsa.cs3443.macromateapp.model.Goal}
-     * with a 30-day window starting today, replaces existing goals in the data manager, and persists changes.</p>
+     * with a 30-day window starting today, and adds it to the user's goal history in the data manager, where it
+     * takes over from today on while earlier goals are kept for the days they applied to.</p>
      */
     @FXML
     public void handleSaveGoals() {
@@ -166,11 +166,9 @@ public class SettingsController {
         LocalDate start = LocalDate.now();
         LocalDate end = start.plusDays(30);
 
-        Goal g = new Goal(UUID.randomUUID().toString(), cal, p, c, f, start, end);
+        Goal g = new Goal(IdDictionary.newId(), cal, p, c, f, start, end);
 
-        dataManager.getGoals().clear();
-        dataManager.getGoals().add(g);
-        dataManager.saveAllData();
+        if (!dataManager.addGoal(g)) { showError("Your saved data could not be read, so goals cannot be changed."); return; }
 
         showStatus("Goals saved.");
     }
@@ -178,8 +176,8 @@ public class SettingsController {
     /**
      * Resets goal fields and stored goals to default values.
      *
-     * <p>This method creates a new default goal, replaces existing goals in the data manager,
-     * persists changes, and updates the UI fields to match the default values.</p>
+     * <p>This method creates a new default goal, adds it to the user's goal history in the data manager
+     * (earlier goals are kept), and updates the UI fields to match the default values.</p>
      */
     @FXML
     public void handleResetGoals() {
@@ -190,11 +188,9 @@ public class SettingsController {
         LocalDate start = LocalDate.now();
         LocalDate end = start.plusDays(30);
 
-        Goal g = new Goal(UUID.randomUUID().toString(), 2000, 150, 200, 65, start, end);
+        Goal g = new Goal(IdDictionary.newId(), 2000, 150, 200, 65, start, end);
 
-        dataManager.getGoals().clear();
-        dataManager.getGoals().add(g);
-        dataManager.saveAllData();
+        if (!dataManager.addGoal(g)) { showError("Your saved data could not be read, so goals cannot be changed."); return; }
 
         if (caloriesGoalField != null) caloriesGoalField.setText("2000");
         if (proteinGoalField != null) proteinGoalField.setText("150");
@@ -211,7 +207,6 @@ public class SettingsController {
     public void handleSignOut() {
         if (dataManager != null) {
             dataManager.setActiveUser(null);
-            dataManager.saveAllData();
         }
         MacroMateApplication.switchScene("login.fxml", "MacroMate - Login");
     }
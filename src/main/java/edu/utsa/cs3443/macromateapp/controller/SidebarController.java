@@ -106,7 +106,6 @@ public class SidebarController {
     public void handleLogout() {
         if (dataManager != null) {
             dataManager.setActiveUser(null);
-            dataManager.saveAllData();
         }
         MacroMateApplication.switchScene("login.fxml", "MacroMate - Login");
     }
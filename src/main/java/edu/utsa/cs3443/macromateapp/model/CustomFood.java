@@ -3,20 +3,40 @@ package edu.utsa.cs3443.macromateapp.model;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
 
 /**
  * Represents a user-created food item composed of multiple base {@link Food} objects.
  * A CustomFood stores a name, description, and a list of ingredients, where each ingredient is paired with its quantity in grams.
+ * It may also use other custom foods as components, referenced by ID with a number of servings; see {@link RecipeGraph}.
  * This class supports JavaFX properties for dynamic UI binding and also includes methods for computing total calories and macronutrients.
  *
- * <p>This class is serializable. JavaFX properties are marked transient and synchronized with their underlying string values to avoid serialization issues.</p>
+ * <p>Ingredients are references: a food ID and a gram amount, kept in parallel arrays. Once
+ * {@link #bindFoods(Function)} has been called with the application's food index, every
+ * ingredient points at the one shared {@link Food} for its ID, so recipes do not hold copies of
+ * database foods and edits to a Food reach every recipe using it. A Food object is only kept per
+ * recipe for ingredients the index cannot resolve, such as the custom food's own generated item.
+ * An ingredient read as a reference that could not be resolved yet (for example while the food
+ * database is unavailable) is kept unbound, with no Food, until a later {@link #bindFoods} finds
+ * it; it counts for nothing in the totals but is never dropped.</p>
+ *
+ * <p>This class is serializable. JavaFX properties are marked transient and synchronized with their underlying string values to avoid serialization issues.
+ * The serialized form still holds ingredients as a list of Food and gram pairs, so custom foods written by older versions can be read.</p>
  */
 public class CustomFood implements Serializable {
     @Serial
@@ -40,8 +60,53 @@ public class CustomFood implements Serializable {
     /** JavaFX property for food description (lazy-loaded). */
     private transient StringProperty description;
 
-    /** List of ingredients paired with their respective gram amounts. */
-    private List<AbstractMap.SimpleEntry<Food, Double>> ingredients;
+    /** Initial capacity of the ingredient arrays. */
+    private static final int INITIAL_INGREDIENTS = 2;
+
+    /**
+     * Serialized form, unchanged from when ingredients were held as a list of Food and gram
+     * pairs, so custom foods written by older versions can still be read.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("userId", String.class),
+            new ObjectStreamField("nameValue", String.class),
+            new ObjectStreamField("descriptionValue", String.class),
+            new ObjectStreamField("ingredients", List.class),
+            new ObjectStreamField("components", List.class),
+    };
+
+    /** Number of ingredients in use at the front of the ingredient arrays. */
+    private int ingredientCount;
+
+    /** Food ID of each ingredient. */
+    private String[] ingredientIds;
+
+    /** Gram amount of each ingredient, parallel to {@link #ingredientIds}. */
+    private double[] ingredientGrams;
+
+    /**
+     * Food of each ingredient, parallel to {@link #ingredientIds}: the shared Food once bound,
+     * otherwise the Food it was added with (null for a reference that is not bound yet).
+     */
+    private Food[] ingredientFoods;
+
+    /** Other custom foods used in this one, as custom food ID paired with servings (null in data saved before nested recipes). */
+    private List<AbstractMap.SimpleEntry<String, Double>> components;
+
+    /** Per-serving totals from the last {@link #computeNutrients()}, or null if they must be recomputed. */
+    private transient Macros cachedNutrients;
+
+    /** Sum of the ingredients' {@link Food#getRevision()} values when {@link #cachedNutrients} was computed. */
+    private transient long cachedRevisions;
+
+    /**
+     * Recipe graph this custom food is a node of (null if none). While set, the ingredient foods
+     * tell this custom food about edits, and the graph is told whenever the own-ingredient totals
+     * change.
+     */
+    private transient RecipeGraph graph;
 
     /**
      * Default constructor that initializes a blank custom food entry.
@@ -63,7 +128,10 @@ public class CustomFood implements Serializable {
         this.userId = userId;
         this.nameValue = name;
         this.descriptionValue = description;
-        this.ingredients = new ArrayList<>();
+        this.ingredientIds = new String[INITIAL_INGREDIENTS];
+        this.ingredientGrams = new double[INITIAL_INGREDIENTS];
+        this.ingredientFoods = new Food[INITIAL_INGREDIENTS];
+        this.components = new ArrayList<>();
     }
 
     /**
@@ -130,12 +198,155 @@ public class CustomFood implements Serializable {
     }
 
     /**
-     * Returns list of entry information
+     * Returns list of entry information. The list is a read-only view over the ingredient arrays
+     * that creates an entry per access; prefer {@link #getIngredientCount()} and the indexed
+     * getters in loops. Use {@link #addIngredient} and {@link #removeIngredient} to change it.
      *
      * @return list of ingredient entries, each containing a Food and gram amount
      */
     public List<AbstractMap.SimpleEntry<Food, Double>> getIngredients() {
-        return ingredients;
+        return new IngredientView();
+    }
+
+    /**
+     * Returns the number of ingredients.
+     *
+     * @return ingredient count
+     */
+    public int getIngredientCount() {
+        return ingredientCount;
+    }
+
+    /**
+     * Returns the food ID of one ingredient.
+     *
+     * @param index ingredient position
+     * @return food ID
+     */
+    public String getIngredientId(int index) {
+        Objects.checkIndex(index, ingredientCount);
+        return ingredientIds[index];
+    }
+
+    /**
+     * Returns the gram amount of one ingredient.
+     *
+     * @param index ingredient position
+     * @return grams
+     */
+    public double getIngredientGrams(int index) {
+        Objects.checkIndex(index, ingredientCount);
+        return ingredientGrams[index];
+    }
+
+    /**
+     * Returns the Food of one ingredient.
+     *
+     * @param index ingredient position
+     * @return the shared Food for the ingredient's ID once bound, otherwise the Food it was added
+     *         with, or null for a reference that is not bound yet
+     */
+    public Food getIngredientFood(int index) {
+        Objects.checkIndex(index, ingredientCount);
+        return ingredientFoods[index];
+    }
+
+    /**
+     * Points every ingredient at the shared Food for its ID, dropping per-recipe copies and binding
+     * unbound references. Ingredients whose ID the lookup does not know keep the Food they have.
+     *
+     * @param foods lookup of shared foods by ID (returns null for unknown IDs)
+     */
+    void bindFoods(Function<String, Food> foods) {
+        for (int i = 0; i < ingredientCount; i++) {
+            Food shared = foods.apply(ingredientIds[i]);
+            if (shared == null || shared == ingredientFoods[i]) continue;
+            setIngredientFood(i, shared);
+            ingredientIds[i] = shared.getId();
+            ingredientsChanged();
+        }
+    }
+
+    /**
+     * Makes this custom food a node of a recipe graph, or takes it out of one. While it is in a
+     * graph, its ingredient foods tell it about edits.
+     *
+     * @param graph graph this custom food now belongs to, or null to leave its graph
+     */
+    void setGraph(RecipeGraph graph) {
+        if (this.graph == graph) return;
+        for (int i = 0; i < ingredientCount; i++) {
+            Food f = ingredientFoods[i];
+            if (f == null) continue;
+            if (graph == null) f.removeUser(this);
+            else f.addUser(this);
+        }
+        this.graph = graph;
+    }
+
+    /**
+     * Called by an ingredient food when its serving size or nutrient values are edited.
+     */
+    void ingredientEdited() {
+        ingredientsChanged();
+    }
+
+    /**
+     * Drops the cached own-ingredient totals and tells the graph, which drops the memoized
+     * totals of this custom food and of the recipes that use it.
+     */
+    private void ingredientsChanged() {
+        cachedNutrients = null;
+        if (graph != null) graph.ownTotalsChanged(id);
+    }
+
+    /**
+     * Points one ingredient at a Food, moving the edit registration from the previous Food while
+     * this custom food is in a graph.
+     *
+     * @param index ingredient position
+     * @param food new Food of the ingredient (null for an unbound reference)
+     */
+    private void setIngredientFood(int index, Food food) {
+        Food previous = ingredientFoods[index];
+        ingredientFoods[index] = food;
+        if (graph == null || previous == food) return;
+        if (previous != null && !usesFood(previous)) previous.removeUser(this);
+        if (food != null) food.addUser(this);
+    }
+
+    /**
+     * Returns whether an ingredient currently points at the given Food object.
+     *
+     * @param food Food to look for
+     * @return true if some ingredient uses that exact object
+     */
+    private boolean usesFood(Food food) {
+        for (int i = 0; i < ingredientCount; i++) {
+            if (ingredientFoods[i] == food) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the other custom foods this one uses. The list is read-only; components are changed
+     * through {@link RecipeGraph}, which rejects cycles.
+     *
+     * @return list of component entries, each containing a custom food ID and a number of servings
+     */
+    public List<AbstractMap.SimpleEntry<String, Double>> getComponents() {
+        return Collections.unmodifiableList(components());
+    }
+
+    /**
+     * Returns the component list, creating it for objects deserialized from data saved before
+     * nested recipes.
+     *
+     * @return mutable component list
+     */
+    private List<AbstractMap.SimpleEntry<String, Double>> components() {
+        if (components == null) components = new ArrayList<>();
+        return components;
     }
 
     /**
@@ -184,16 +395,48 @@ public class CustomFood implements Serializable {
      */
     public void addIngredient(Food food, double grams) {
         if (food == null) return;
+        addIngredient(food.getId(), food, grams);
+    }
+
+    /**
+     * Adds an ingredient by food ID alone, leaving it unbound until {@link #bindFoods} resolves it.
+     * Used when a stored reference cannot be resolved yet.
+     *
+     * @param foodId ID of the ingredient's food
+     * @param grams the amount in grams for this ingredient (must be positive)
+     */
+    void addIngredientRef(String foodId, double grams) {
+        if (foodId == null) return;
+        addIngredient(foodId, null, grams);
+    }
+
+    /**
+     * Adds an ingredient, or increases the grams of an existing one with the same food ID.
+     *
+     * @param foodId ID of the ingredient's food
+     * @param food the Food, or null to add an unbound reference
+     * @param grams the amount in grams (must be positive)
+     */
+    private void addIngredient(String foodId, Food food, double grams) {
         if (grams <= 0) return;
 
-        for (int i = 0; i < ingredients.size(); i++) {
-            var e = ingredients.get(i);
-            if (e != null && e.getKey() != null && e.getKey().getId().equals(food.getId())) {
-                ingredients.set(i, new AbstractMap.SimpleEntry<>(food, e.getValue() + grams));
-                return;
+        int i = indexOfIngredient(foodId);
+        if (i >= 0) {
+            if (food != null) setIngredientFood(i, food);
+            ingredientGrams[i] += grams;
+        } else {
+            if (ingredientCount == ingredientIds.length) {
+                int capacity = Math.max(INITIAL_INGREDIENTS, ingredientCount * 2);
+                ingredientIds = Arrays.copyOf(ingredientIds, capacity);
+                ingredientGrams = Arrays.copyOf(ingredientGrams, capacity);
+                ingredientFoods = Arrays.copyOf(ingredientFoods, capacity);
             }
+            ingredientIds[ingredientCount] = foodId;
+            ingredientGrams[ingredientCount] = grams;
+            ingredientCount++;
+            setIngredientFood(ingredientCount - 1, food);
         }
-        ingredients.add(new AbstractMap.SimpleEntry<>(food, grams));
+        ingredientsChanged();
     }
 
     /**
@@ -203,7 +446,101 @@ public class CustomFood implements Serializable {
      */
     public void removeIngredient(Food food) {
         if (food == null) return;
-        ingredients.removeIf(e -> e != null && e.getKey() != null && e.getKey().getId().equals(food.getId()));
+        int i = indexOfIngredient(food.getId());
+        if (i < 0) return;
+
+        Food removed = ingredientFoods[i];
+        int tail = ingredientCount - i - 1;
+        System.arraycopy(ingredientIds, i + 1, ingredientIds, i, tail);
+        System.arraycopy(ingredientGrams, i + 1, ingredientGrams, i, tail);
+        System.arraycopy(ingredientFoods, i + 1, ingredientFoods, i, tail);
+        ingredientCount--;
+        ingredientIds[ingredientCount] = null;
+        ingredientFoods[ingredientCount] = null;
+        if (graph != null && removed != null && !usesFood(removed)) removed.removeUser(this);
+        ingredientsChanged();
+    }
+
+    /**
+     * Finds an ingredient by food ID.
+     *
+     * @param foodId food ID
+     * @return ingredient position, or -1 if this custom food has no such ingredient
+     */
+    private int indexOfIngredient(String foodId) {
+        for (int i = 0; i < ingredientCount; i++) {
+            if (Objects.equals(ingredientIds[i], foodId)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds servings of another custom food. If it is already a component, its servings are
+     * increased instead. Does not check for cycles; {@link RecipeGraph} does that before calling this.
+     *
+     * @param customFoodId ID of the custom food to use
+     * @param servings number of servings (must be positive)
+     */
+    void addComponent(String customFoodId, double servings) {
+        if (customFoodId == null || servings <= 0) return;
+        List<AbstractMap.SimpleEntry<String, Double>> list = components();
+        for (int i = 0; i < list.size(); i++) {
+            var e = list.get(i);
+            if (e != null && customFoodId.equals(e.getKey())) {
+                list.set(i, new AbstractMap.SimpleEntry<>(customFoodId, e.getValue() + servings));
+                return;
+            }
+        }
+        list.add(new AbstractMap.SimpleEntry<>(customFoodId, servings));
+    }
+
+    /**
+     * Removes another custom food from this one's components.
+     *
+     * @param customFoodId ID of the component to remove
+     * @return true if it was a component
+     */
+    boolean removeComponent(String customFoodId) {
+        if (customFoodId == null) return false;
+        return components().removeIf(e -> e != null && customFoodId.equals(e.getKey()));
+    }
+
+    /**
+     * Computes the summed calories and macronutrients of all ingredients for their gram amounts.
+     * Components (other custom foods) are not included; {@link RecipeGraph} adds them.
+     * The result is cached until an ingredient is added or removed, or an ingredient's serving
+     * size or nutrient values are edited.
+     *
+     * @return nutrient totals for the entire custom food item
+     */
+    public Macros computeNutrients() {
+        long revisions = ingredientRevisions();
+        if (cachedNutrients != null && cachedRevisions == revisions) return cachedNutrients;
+
+        Macros.Accumulator sum = new Macros.Accumulator();
+        for (int i = 0; i < ingredientCount; i++) {
+            Food f = ingredientFoods[i];
+            if (f == null || f.getServingSize() <= 0.0) continue;
+            double s = Math.max(0.0, ingredientGrams[i] / f.getServingSize());
+            sum.add(f.getCalories() * s, f.getProteinG() * s, f.getCarbsG() * s, f.getFatG() * s);
+        }
+        cachedNutrients = sum.toMacros();
+        cachedRevisions = revisions;
+        return cachedNutrients;
+    }
+
+    /**
+     * Adds up the edit counters of all ingredients. Counters only grow, so the sum changes
+     * whenever any ingredient is edited.
+     *
+     * @return sum of the ingredients' revisions
+     */
+    private long ingredientRevisions() {
+        long sum = 0;
+        for (int i = 0; i < ingredientCount; i++) {
+            if (ingredientFoods[i] != null) sum += ingredientFoods[i].getRevision();
+        }
+        return sum;
     }
 
     /**
@@ -212,12 +549,7 @@ public class CustomFood implements Serializable {
      * @return total calories for the custom entry
      */
     public double computerCalories() {
-        double total = 0.0;
-        for (var e : ingredients) {
-            if (e == null || e.getKey() == null) continue;
-            total += e.getKey().getCaloriesForGrams(e.getValue());
-        }
-        return total;
+        return computeNutrients().getCalories();
     }
 
     /**
@@ -227,20 +559,71 @@ public class CustomFood implements Serializable {
      * @return a map of macronutrient totals for the entire custom food item
      */
     public Map<String, Double> computerMacros() {
-        double p = 0.0, c = 0.0, f = 0.0;
-        for (var e : ingredients) {
-            if (e == null || e.getKey() == null) continue;
-            Map<String, Double> m = e.getKey().getMacrosForGrams(e.getValue());
-            p += m.getOrDefault("proteinG", 0.0);
-            c += m.getOrDefault("carbsG", 0.0);
-            f += m.getOrDefault("fatG", 0.0);
+        return computeNutrients().toMap();
+    }
+
+    /**
+     * Writes this custom food in its original serialized form, with ingredients as a list of
+     * Food and gram pairs.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", id);
+        f.put("userId", userId);
+        f.put("nameValue", nameValue);
+        f.put("descriptionValue", descriptionValue);
+        f.put("ingredients", new ArrayList<>(getIngredients()));
+        f.put("components", new ArrayList<>(components()));
+        out.writeFields();
+    }
+
+    /**
+     * Reads a custom food written in the serialized form, moving its ingredients into the
+     * ingredient arrays. The Foods read are per-recipe copies until {@link #bindFoods} is called.
+     *
+     * @param in stream to read from
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a stored class cannot be found
+     */
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        id = (String) f.get("id", null);
+        userId = (String) f.get("userId", null);
+        nameValue = (String) f.get("nameValue", null);
+        descriptionValue = (String) f.get("descriptionValue", null);
+        ingredientIds = new String[INITIAL_INGREDIENTS];
+        ingredientGrams = new double[INITIAL_INGREDIENTS];
+        ingredientFoods = new Food[INITIAL_INGREDIENTS];
+        if (f.get("ingredients", null) instanceof List<?> list) {
+            for (Object o : list) {
+                if (o instanceof Map.Entry<?, ?> e && e.getKey() instanceof Food food && e.getValue() instanceof Double grams) {
+                    addIngredient(food, grams);
+                }
+            }
         }
-        Map<String, Double> out = new LinkedHashMap<>();
-        out.put("proteinG", p);
-        out.put("carbsG", c);
-        out.put("fatG", f);
-        return out;
+        components = (List<AbstractMap.SimpleEntry<String, Double>>) f.get("components", null);
     }
-}
 
+    /**
+     * Read-only list view of the ingredient arrays.
+     */
+    private class IngredientView extends AbstractList<AbstractMap.SimpleEntry<Food, Double>> implements RandomAccess {
 
+        @Override
+        public AbstractMap.SimpleEntry<Food, Double> get(int index) {
+            Objects.checkIndex(index, ingredientCount);
+            return new AbstractMap.SimpleEntry<>(ingredientFoods[index], ingredientGrams[index]);
+        }
+
+        @Override
+        public int size() {
+            return ingredientCount;
+        }
+    }
+}
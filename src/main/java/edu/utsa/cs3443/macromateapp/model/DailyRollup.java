@@ -0,0 +1,317 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Running per-day nutrient totals for one user, indexed by epoch day, that answer any date-range
+ * sum in O(log n). Each {@link UserShard} keeps one, updated as FoodLogs are filed into or removed
+ * from its DayLogs and seeded with whole-day totals saved with the shard for months that are not
+ * loaded.
+ *
+ * <p>Days are held in a window of consecutive epoch days starting at {@link #origin}. Each day's
+ * calories, protein, carbs and fat are stored directly (so one day reads in O(1)) and in a Fenwick
+ * tree per nutrient, interleaved in one array, so a range is the difference of two prefix sums.
+ * The window doubles, and the trees are rebuilt in O(n), when a day outside it is added. It never
+ * grows past {@value #MAX_WINDOW_DAYS} days: a day that would stretch it further (a typo such as
+ * year 2205) is kept in a small sorted map instead and added to range sums directly, so one
+ * far-off date cannot make the window huge.</p>
+ *
+ * <p>Updates add or subtract one entry's amounts, so rounding error can build up in the trees. As
+ * in {@link DayLog}, the trees are rebuilt exactly from the per-day values every
+ * {@value #REBUILD_INTERVAL} updates, and a day's values are reset to exactly zero when its last
+ * entry is removed.</p>
+ */
+public final class DailyRollup {
+
+    /** Values kept per day: calories, protein, carbs, fat. */
+    private static final int NUTRIENTS = 4;
+
+    /** Number of days in the window when the first day is added. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Largest number of days the window may span (about 90 years). */
+    private static final int MAX_WINDOW_DAYS = 1 << 15;
+
+    /** Number of updates after which the trees are rebuilt from the per-day values. */
+    private static final int REBUILD_INTERVAL = 4096;
+
+    /** Epoch day of the first day in the window. */
+    private long origin;
+
+    /** Number of days in the window (a power of two, 0 before the first day is added). */
+    private int capacity;
+
+    /** Per-day totals, {@link #NUTRIENTS} values per day of the window. */
+    private double[] values = new double[0];
+
+    /** Fenwick trees over {@link #values}, {@link #NUTRIENTS} values per node, 1-based. */
+    private double[] tree = new double[NUTRIENTS];
+
+    /** Number of entries per day of the window. */
+    private int[] counts = new int[0];
+
+    /** Updates since the trees were last rebuilt. */
+    private int updatesSinceRebuild;
+
+    /**
+     * Days that do not fit in the window, by epoch day: {@link #NUTRIENTS} totals followed by the
+     * number of entries. A day stays here until its last entry is removed.
+     */
+    private final NavigableMap<Long, double[]> outliers = new TreeMap<>();
+
+    /**
+     * Adds one entry's totals to a day.
+     *
+     * @param day date of the DayLog holding the entry
+     * @param m   the entry's totals
+     */
+    void add(LocalDate day, Macros m) {
+        update(day, m, 1, 1);
+    }
+
+    /**
+     * Removes one entry's totals from a day.
+     *
+     * @param day date of the DayLog that held the entry
+     * @param m   the entry's totals
+     */
+    void remove(LocalDate day, Macros m) {
+        update(day, m, -1, -1);
+    }
+
+    /**
+     * Adds a whole day's totals at once, as saved with the shard for a month that is not loaded.
+     *
+     * @param day     date of the totals
+     * @param totals  summed totals of the day's entries
+     * @param entries number of entries the totals cover
+     */
+    void addDay(LocalDate day, Macros totals, int entries) {
+        if (entries > 0) update(day, totals, 1, entries);
+    }
+
+    /**
+     * Resets every day between two dates (inclusive) to no entries.
+     *
+     * @param from first date of the range
+     * @param to   last date of the range
+     */
+    void clear(LocalDate from, LocalDate to) {
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            int n = count(d);
+            if (n > 0) update(d, get(d), -1, -n);
+        }
+    }
+
+    /**
+     * Returns the number of entries logged on a day.
+     *
+     * @param day date of interest
+     * @return entry count (0 if nothing is logged)
+     */
+    int count(LocalDate day) {
+        double[] outlier = outliers.get(day.toEpochDay());
+        if (outlier != null) return (int) outlier[NUTRIENTS];
+        long i = day.toEpochDay() - origin;
+        return i < 0 || i >= capacity ? 0 : counts[(int) i];
+    }
+
+    /**
+     * Returns the earliest day with anything logged.
+     *
+     * @return first logged day, or null if nothing is logged
+     */
+    LocalDate firstDay() {
+        Long first = outliers.isEmpty() ? null : outliers.firstKey();
+        for (int i = 0; i < capacity; i++) {
+            if (counts[i] == 0) continue;
+            if (first == null || origin + i < first) first = origin + i;
+            break;
+        }
+        return first == null ? null : LocalDate.ofEpochDay(first);
+    }
+
+    /**
+     * Returns one day's totals.
+     *
+     * @param day date of interest
+     * @return the day's totals, or {@link Macros#ZERO} if nothing is logged on it
+     */
+    public Macros get(LocalDate day) {
+        double[] outlier = outliers.get(day.toEpochDay());
+        if (outlier != null) return new Macros(outlier[0], outlier[1], outlier[2], outlier[3]);
+        long i = day.toEpochDay() - origin;
+        if (i < 0 || i >= capacity || counts[(int) i] == 0) return Macros.ZERO;
+        int at = (int) i * NUTRIENTS;
+        return new Macros(values[at], values[at + 1], values[at + 2], values[at + 3]);
+    }
+
+    /**
+     * Returns the totals of every day between two dates (inclusive).
+     *
+     * @param from first date of the range
+     * @param to   last date of the range
+     * @return summed totals ({@link Macros#ZERO} for an empty range)
+     */
+    public Macros sum(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) return Macros.ZERO;
+        double[] hi = prefix(to.toEpochDay() - origin + 1);
+        double[] lo = prefix(from.toEpochDay() - origin);
+        for (int k = 0; k < NUTRIENTS; k++) hi[k] -= lo[k];
+        for (double[] outlier : outliers.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values()) {
+            for (int k = 0; k < NUTRIENTS; k++) hi[k] += outlier[k];
+        }
+        return new Macros(hi[0], hi[1], hi[2], hi[3]);
+    }
+
+    /**
+     * Returns the average daily totals between two dates (inclusive), counting days with nothing
+     * logged as zero.
+     *
+     * @param from first date of the range
+     * @param to   last date of the range
+     * @return average per calendar day ({@link Macros#ZERO} for an empty range)
+     */
+    public Macros average(LocalDate from, LocalDate to) {
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        return days <= 0 ? Macros.ZERO : sum(from, to).scale(1.0 / days);
+    }
+
+    /**
+     * Applies totals to a day, growing the window or rebuilding the trees as needed.
+     *
+     * @param day     date of the DayLog
+     * @param m       the totals
+     * @param sign    {@code 1} to add the totals, {@code -1} to subtract them
+     * @param entries change in the day's number of entries
+     */
+    private void update(LocalDate day, Macros m, int sign, int entries) {
+        if (day == null || m == null) return;
+        long epochDay = day.toEpochDay();
+        if (outliers.containsKey(epochDay)) {
+            updateOutlier(epochDay, m, sign, entries);
+            return;
+        }
+        if (sign < 0 && (epochDay < origin || epochDay >= origin + capacity)) return;
+        if (!cover(epochDay)) {
+            updateOutlier(epochDay, m, sign, entries);
+            return;
+        }
+
+        int i = (int) (epochDay - origin);
+        int at = i * NUTRIENTS;
+        double[] delta = {sign * m.getCalories(), sign * m.getProteinG(), sign * m.getCarbsG(), sign * m.getFatG()};
+        counts[i] = Math.max(0, counts[i] + entries);
+        if (counts[i] == 0) {
+            // Last entry of the day: clear it exactly rather than leave rounding error behind.
+            for (int k = 0; k < NUTRIENTS; k++) delta[k] = -values[at + k];
+        }
+        for (int k = 0; k < NUTRIENTS; k++) values[at + k] += delta[k];
+
+        if (++updatesSinceRebuild >= REBUILD_INTERVAL) {
+            rebuild();
+            return;
+        }
+        for (int node = i + 1; node <= capacity; node += node & -node) {
+            int n = node * NUTRIENTS;
+            for (int k = 0; k < NUTRIENTS; k++) tree[n + k] += delta[k];
+        }
+    }
+
+    /**
+     * Applies totals to a day kept outside the window, dropping the day once its last entry is
+     * removed.
+     *
+     * @param epochDay day of the DayLog
+     * @param m        the totals
+     * @param sign     {@code 1} to add the totals, {@code -1} to subtract them
+     * @param entries  change in the day's number of entries
+     */
+    private void updateOutlier(long epochDay, Macros m, int sign, int entries) {
+        double[] v = outliers.get(epochDay);
+        if (v == null) {
+            if (sign < 0) return;
+            v = new double[NUTRIENTS + 1];
+            outliers.put(epochDay, v);
+        }
+        v[NUTRIENTS] += entries;
+        if (v[NUTRIENTS] <= 0) {
+            outliers.remove(epochDay);
+            return;
+        }
+        v[0] += sign * m.getCalories();
+        v[1] += sign * m.getProteinG();
+        v[2] += sign * m.getCarbsG();
+        v[3] += sign * m.getFatG();
+    }
+
+    /**
+     * Returns the sums of the first {@code length} days of the window.
+     *
+     * @param length number of days from the start of the window (clamped to the window)
+     * @return calories, protein, carbs and fat summed over those days
+     */
+    private double[] prefix(long length) {
+        double[] out = new double[NUTRIENTS];
+        for (int node = (int) Math.max(0, Math.min(length, capacity)); node > 0; node -= node & -node) {
+            int n = node * NUTRIENTS;
+            for (int k = 0; k < NUTRIENTS; k++) out[k] += tree[n + k];
+        }
+        return out;
+    }
+
+    /**
+     * Grows the window, if needed, so that it contains a day. The window is not grown past
+     * {@value #MAX_WINDOW_DAYS} days.
+     *
+     * @param epochDay day that should be inside the window
+     * @return true if the day is inside the window, false if it is too far from the days already
+     *         in it and must be kept as an outlier
+     */
+    private boolean cover(long epochDay) {
+        if (capacity == 0) {
+            capacity = INITIAL_CAPACITY;
+            origin = epochDay - capacity / 2;
+            values = new double[capacity * NUTRIENTS];
+            counts = new int[capacity];
+            rebuild();
+            return true;
+        }
+        if (epochDay >= origin && epochDay < origin + capacity) return true;
+
+        long lo = Math.min(origin, epochDay);
+        long hi = Math.max(origin + capacity - 1, epochDay);
+        long span = hi - lo + 1;
+        if (span > MAX_WINDOW_DAYS) return false;
+        int newCapacity = capacity;
+        while (newCapacity < MAX_WINDOW_DAYS && newCapacity < 2 * span) newCapacity *= 2;
+        long newOrigin = lo - (newCapacity - span) / 2;
+
+        int shift = (int) (origin - newOrigin);
+        double[] newValues = new double[newCapacity * NUTRIENTS];
+        System.arraycopy(values, 0, newValues, shift * NUTRIENTS, values.length);
+        int[] newCounts = new int[newCapacity];
+        System.arraycopy(counts, 0, newCounts, shift, counts.length);
+
+        origin = newOrigin;
+        capacity = newCapacity;
+        values = newValues;
+        counts = newCounts;
+        rebuild();
+        return true;
+    }
+
+    /** Rebuilds the trees from the per-day values in O(n). */
+    private void rebuild() {
+        tree = new double[(capacity + 1) * NUTRIENTS];
+        System.arraycopy(values, 0, tree, NUTRIENTS, values.length);
+        for (int node = 1; node <= capacity; node++) {
+            int parent = node + (node & -node);
+            if (parent > capacity) continue;
+            for (int k = 0; k < NUTRIENTS; k++) tree[parent * NUTRIENTS + k] += tree[node * NUTRIENTS + k];
+        }
+        updatesSinceRebuild = 0;
+    }
+}
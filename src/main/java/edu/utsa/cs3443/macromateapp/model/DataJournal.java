@@ -0,0 +1,212 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal stored next to the {@code macromate.dat} snapshot.
+ * Every model mutation is appended as one small, length-prefixed {@link JournalEntry},
+ * so persisting a single change no longer requires rewriting the full snapshot.
+ *
+ * <p>On startup {@link DataManager} replays the journal on top of the last snapshot.
+ * Once the journal grows past a size threshold, a fresh snapshot is written and the
+ * journal is cleared (compaction).</p>
+ *
+ * <p>Each record is framed by its length and a CRC-32 of its bytes, and is forced to disk before
+ * {@link #append(byte[])} returns. Records appended before checksums were added carry only the
+ * length and are still read.</p>
+ */
+public class DataJournal {
+
+    /** Upper bound for a single record; anything larger is treated as corruption. */
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Bit set in a record's length word when a CRC-32 of the record follows it. It lies above
+     * {@link #MAX_RECORD_BYTES}, so length words written before checksums never have it set.
+     */
+    private static final int CHECKSUM_FLAG = 0x4000_0000;
+
+    /** Path to the journal file. */
+    private final Path file;
+
+    /**
+     * Creates a journal backed by the given file. The file is created on the first append.
+     *
+     * @param file path to the journal file
+     */
+    public DataJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the journal file path.
+     *
+     * @return path to the journal file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Encodes an entry with {@link ModelCodec} into the record bytes stored by {@link #append(byte[])}.
+     * Encoding is kept separate from appending so the model can be captured on the thread that
+     * owns it while the file write happens elsewhere.
+     *
+     * @param entry entry to encode
+     * @return encoded record
+     * @throws IOException if the entry cannot be serialized
+     */
+    public static byte[] encode(JournalEntry entry) throws IOException {
+        return ModelCodec.encodeEntry(entry);
+    }
+
+    /**
+     * Returns how many bytes a record takes in the journal file: the record plus its length and
+     * checksum words.
+     *
+     * @param record bytes produced by {@link #encode(JournalEntry)}
+     * @return size of the record's frame
+     */
+    public static int frameSize(byte[] record) {
+        return 2 * Integer.BYTES + record.length;
+    }
+
+    /**
+     * Appends one encoded record to the end of the journal and forces it to disk, so the change
+     * survives a crash or power failure once this method returns.
+     *
+     * @param record bytes produced by {@link #encode(JournalEntry)}
+     * @throws IOException if the record cannot be written
+     */
+    public void append(byte[] record) throws IOException {
+        Path dir = file.getParent();
+        if (dir != null) Files.createDirectories(dir);
+        boolean created = !Files.exists(file);
+
+        ByteBuffer frame = ByteBuffer.allocate(frameSize(record));
+        frame.putInt(record.length | CHECKSUM_FLAG).putInt(checksum(record)).put(record).flip();
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (frame.hasRemaining()) ch.write(frame);
+            ch.force(true);
+        }
+        if (created && dir != null) syncDirectory(dir);
+    }
+
+    /**
+     * Reads every complete entry in the journal, in the order they were appended.
+     * A torn trailing record (short, or failing its checksum, for example from a crash
+     * mid-append) ends the replay and is cut off so that later appends are not hidden behind it.
+     * An intact record that this version cannot decode, such as one written by a newer version,
+     * is never cut off: the read fails instead and the file is left as it is.
+     *
+     * @return list of journal entries (empty if the journal does not exist)
+     * @throws IOException if the journal file cannot be read, or holds an intact record this version cannot read
+     */
+    public List<JournalEntry> readAll() throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        if (!Files.exists(file)) return entries;
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int word;
+                try {
+                    word = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                boolean checked = (word & CHECKSUM_FLAG) != 0;
+                int len = word & ~CHECKSUM_FLAG;
+                if (len <= 0 || len > MAX_RECORD_BYTES) break;
+
+                int crc = 0;
+                byte[] b = new byte[len];
+                try {
+                    if (checked) crc = in.readInt();
+                    in.readFully(b);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (checked && crc != checksum(b)) break;
+
+                try {
+                    entries.add(ModelCodec.decodeEntry(b));
+                } catch (Exception e) {
+                    // Without a checksum, an undecodable record of a known version is taken to be damaged.
+                    if (checked || ModelCodec.isNewerVersion(b)) {
+                        throw new IOException("Journal record at offset " + validLength + " of " + file
+                                + " cannot be read by this version", e);
+                    }
+                    break;
+                }
+                validLength += (checked ? 2 : 1) * Integer.BYTES + len;
+            }
+        }
+
+        if (validLength < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(validLength);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the current size of the journal on disk.
+     *
+     * @return journal size in bytes, or 0 if it does not exist
+     */
+    public long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of a record.
+     *
+     * @param record record bytes
+     * @return checksum, truncated to an int
+     */
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Forces a directory entry change (a newly created journal) to disk where the platform supports it.
+     *
+     * @param dir directory holding the journal
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+            // Not supported on every platform (e.g. Windows); the record itself is already synced.
+        }
+    }
+
+    /**
+     * Discards all journal entries. Called after their effects have been folded into a new snapshot.
+     *
+     * @throws IOException if the journal file cannot be deleted
+     */
+    public void clear() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
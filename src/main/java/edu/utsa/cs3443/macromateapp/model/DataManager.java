@@ -1,9 +1,10 @@
 package edu.utsa.cs3443.macromateapp.model;
 
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -11,7 +12,18 @@ import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Central data manager responsible for loading, saving, and accessing all
@@ -25,44 +37,139 @@ import java.util.*;
  *     <li>Active goals and progress tracking</li>
  * </ul>
  *
- * <p>All data is serialized to a single file inside a user-specific data directory.
- * The manager also provides helper methods for computing hashed passwords, seeding
- * defaults, updating logs, and associating entries with the active user.</p>
+ * <p>Data is split across files inside a user-specific data directory: a small global snapshot
+ * holds accounts, credentials and the food catalog, and each user has a {@link UserShard} under
+ * {@code users/} holding their goals and custom foods, with their DayLogs in one segment file per
+ * month under {@code days/}. A user's shard is loaded only when they log in or register, and only
+ * the most recent months are read at that point; older months are paged in when a lookup reaches
+ * them. {@link #loadAllDataAsync()}, {@link #loadActiveUserAsync()} and
+ * {@link #loadDaysAsync(LocalDate, LocalDate)} do their reads on the background
+ * {@link PersistenceService} and apply the results through the callback executor, so screens can
+ * have the data in memory before they ask for it. Only shards and months with changes are written
+ * back. A large read-only food database can be installed as {@code foods.catalog}; it is
+ * memory-mapped through {@link FoodCatalog} rather than loaded. Individual mutations (food logs,
+ * custom foods, goals, account changes) are appended to the {@link DataJournal} of the file they
+ * belong to instead of rewriting it; journals are replayed on load and folded back into a fresh
+ * snapshot once they grow too large. All file writes run on a background
+ * {@link PersistenceService}, so callers on the JavaFX Application Thread never block on disk I/O.
+ * The manager also provides helper methods for computing hashed passwords, seeding defaults,
+ * updating logs, and associating entries with the active user.</p>
  */
 public class DataManager implements Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /** File name of the global data snapshot. */
+    private static final String SNAPSHOT_FILE = "macromate.dat";
+
+    /** File name of the append-only journal stored beside the global snapshot. */
+    private static final String JOURNAL_FILE = "macromate.journal";
+
+    /** File name of the optional read-only food database, memory-mapped by {@link FoodCatalog}. */
+    private static final String CATALOG_FILE = "foods.catalog";
+
+    /** Name of the directory (inside the data directory) that holds one subdirectory per user. */
+    private static final String USERS_DIRECTORY = "users";
+
+    /** File name of a user's shard snapshot. */
+    private static final String SHARD_SNAPSHOT_FILE = "user.dat";
+
+    /** File name of a user's shard journal. */
+    private static final String SHARD_JOURNAL_FILE = "user.journal";
+
+    /** Name of the directory (inside a user's directory) that holds the monthly DayLog segments. */
+    private static final String SEGMENT_DIRECTORY = "days";
+
+    /** File name suffix of a DayLog segment; the name itself is the month ({@code yyyy-MM}). */
+    private static final String SEGMENT_FILE_SUFFIX = ".dat";
+
+    /** Matches segment files and their older generations, capturing the month. */
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("(\\d{4}-\\d{2})\\.dat(\\.\\d+)?");
+
+    /** Number of generations kept per DayLog segment. */
+    private static final int SEGMENT_GENERATIONS = 2;
+
+    /** Number of months (including the current one) whose DayLogs are loaded with a user's shard. */
+    private static final int RECENT_SEGMENT_MONTHS = 2;
+
+    /** Number of snapshot generations kept on disk, including the current one. */
+    private static final int SNAPSHOT_GENERATIONS = 3;
+
+    /** Journal size (bytes) after which it is compacted into a fresh snapshot. */
+    private static final long JOURNAL_COMPACT_BYTES = 256 * 1024;
+
+    /** Maximum time to wait for pending writes when flushing or shutting down. */
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    /** ID prefix of the Food item generated for each CustomFood. */
+    private static final String CUSTOM_FOOD_ITEM_PREFIX = "cf_item_";
+
+    /** Maximum number of results returned by a food search. */
+    private static final int SEARCH_RESULT_LIMIT = 500;
+
+    /** Maximum number of results returned when a search falls back to spelling-tolerant matching. */
+    private static final int FUZZY_RESULT_LIMIT = 50;
+
+    /** Time a spelling-tolerant search may take before it returns the best matches found so far. */
+    private static final long FUZZY_TIME_BUDGET_MILLIS = 10;
+
     /** Currently authenticated user (or null if no user is logged in). */
     private User activeUser;
 
-    /** List of stored user goals. */
-    private List<Goal> goals;
-
-    /** Global list of standard food items. */
+    /** Global list of standard food items kept on the heap (defaults and foods added at runtime). */
     private List<Food> foods;
 
-    /** List of custom foods created by all users. */
-    private List<CustomFood> customFoods;
+    /** Memory-mapped read-only food database, or null if none is installed. */
+    private transient FoodCatalog catalog;
+
+    /** Lookup table of foods by ID: heap foods, plus catalog foods once they have been resolved. */
+    private transient Map<String, Food> foodIndex;
 
-    /** List of all recorded DayLogs for all users. */
-    private List<DayLog> dayLogs;
+    /** Lookup table of the custom foods of all loaded shards by ID. */
+    private transient Map<String, CustomFood> customFoodIndex;
 
-    /** Fast lookup table for DayLog entries: (userId | date) -> DayLog. */
-    private transient Map<String, DayLog> dayLogIndex;
+    /** Word index over the catalog, heap foods and generated custom food items, used by food search. */
+    private transient FoodSearchIndex searchIndex;
+
+    /** Generated Food items of the custom foods of each loaded user, by user ID. */
+    private transient Map<String, List<Food>> customFoodItemsByUser;
+
+    /** Cached food list visible to each user; dropped when that user's custom foods change. */
+    private transient Map<String, List<Food>> visibleFoodsByUser;
+
+    /** Loaded user shards by user ID; a shard is added the first time its user is needed. */
+    private transient Map<String, UserShard> shards;
 
     /** Path to the directory containing serialized app data. */
     private Path dataDirectory;
 
-    /** Map of email -> User object. */
-    private Map<String, User> usersByEmail;
+    /** Map of user ID -> User object. */
+    private Map<String, User> usersById;
+
+    /** Map of (normalized) email -> user ID; each email belongs to at most one account. */
+    private transient Map<String, String> userIdByEmail;
 
-    /** Map of email -> password salt. */
-    private Map<String, String> passwordSaltByEmail;
+    /** Map of user ID -> password salt. */
+    private Map<String, String> passwordSaltById;
 
-    /** Map of email -> hashed password. */
-    private Map<String, String> passwordHashByEmail;
+    /** Map of user ID -> hashed password. */
+    private Map<String, String> passwordHashById;
+
+    /** Snapshot and journal of the global data (accounts, credentials, food catalog). */
+    private transient JournaledStore globalStore;
+
+    /** Single background writer that performs all journal and snapshot I/O. */
+    private transient PersistenceService persistence;
+
+    /** Runs the last step of each asynchronous load, which applies its results to the model. */
+    private transient Executor callbackExecutor;
+
+    /** Single background thread that builds the catalog part of the search index. */
+    private transient ExecutorService indexWorker;
+
+    /** Newest search index whose catalog part has not been built yet, or null. */
+    private transient AtomicReference<FoodSearchIndex> unpreparedIndex;
 
     /**
      * Constructs a new DataManager using the provided data directory.
@@ -73,14 +180,38 @@ public class DataManager implements Serializable {
      */
     public DataManager(Path dataDirectory) {
         this.dataDirectory = dataDirectory;
-        this.goals = new ArrayList<>();
         this.foods = new ArrayList<>();
-        this.customFoods = new ArrayList<>();
-        this.dayLogs = new ArrayList<>();
-        this.usersByEmail = new HashMap<>();
-        this.passwordSaltByEmail = new HashMap<>();
-        this.passwordHashByEmail = new HashMap<>();
-        this.dayLogIndex = new HashMap<>();
+        this.shards = new HashMap<>();
+        this.usersById = new HashMap<>();
+        this.userIdByEmail = new HashMap<>();
+        this.passwordSaltById = new HashMap<>();
+        this.passwordHashById = new HashMap<>();
+        this.foodIndex = new HashMap<>();
+        this.customFoodIndex = new HashMap<>();
+        this.searchIndex = new FoodSearchIndex(null);
+        this.customFoodItemsByUser = new HashMap<>();
+        this.visibleFoodsByUser = new HashMap<>();
+        this.globalStore = new JournaledStore(dataDirectory, SNAPSHOT_FILE, JOURNAL_FILE, SNAPSHOT_GENERATIONS);
+        this.persistence = new PersistenceService();
+        this.callbackExecutor = Runnable::run;
+        this.indexWorker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "macromate-search-index");
+            t.setDaemon(true);
+            return t;
+        });
+        this.unpreparedIndex = new AtomicReference<>();
+    }
+
+    /**
+     * Sets the executor that hands the results of asynchronous loads back to the thread that owns
+     * the model. The application passes {@code Platform::runLater}. By default results are applied
+     * on the background thread itself, which only suits callers that wait for the returned future
+     * before touching the model again.
+     *
+     * @param executor executor running on the model's thread
+     */
+    public void setCallbackExecutor(Executor executor) {
+        this.callbackExecutor = executor == null ? Runnable::run : executor;
     }
 
     /**
@@ -93,21 +224,24 @@ public class DataManager implements Serializable {
     }
 
     /**
-     * Sets the currently active user.
+     * Sets the currently active user and records the change in the journal. Their shard is loaded
+     * by {@link #loadActiveUserAsync()}, or on first use if that has not finished.
      *
-     * @param activeUser the user to authenticate as
+     * @param activeUser the user to authenticate as, or null to log out
      */
     public void setActiveUser(User activeUser) {
         this.activeUser = activeUser;
+        appendToJournal(JournalEntry.activeUserChanged(activeUser == null ? null : activeUser.getId()));
     }
 
     /**
-     * Returns list of goals.
+     * Returns the active user's goals.
      *
-     * @return list of all goals
+     * @return list of the active user's goals (empty if no user is logged in)
      */
     public List<Goal> getGoals() {
-        return goals;
+        UserShard shard = activeShard();
+        return shard == null ? List.of() : shard.getGoals();
     }
 
     /**
@@ -119,156 +253,1006 @@ public class DataManager implements Serializable {
         return foods;
     }
 
+    /**
+     * Returns the memory-mapped food database.
+     *
+     * @return installed catalog, or null if there is none
+     */
+    public FoodCatalog getCatalog() {
+        return catalog;
+    }
+
     /**
      * Returns all food items visible to the currently active user.
      * This includes:
      * <ul>
+     *     <li>Catalog foods, created lazily as the list is read</li>
      *     <li>Global foods</li>
      *     <li>User's own generated Food entries based on CustomFood</li>
      * </ul>
      *
-     * @return visible food list for the active user
+     * <p>The list is composed once per user and reused until that user's custom foods change,
+     * so screen loads and searches do not walk the food lists again.</p>
+     *
+     * @return visible, read-only food list for the active user
      */
     public List<Food> getFoodsForActiveUser() {
         if (foods == null) return List.of();
 
-        if (activeUser == null || activeUser.getId() == null) {
-            return new ArrayList<>(foods);
+        UserShard shard = activeShard();
+        String userId = shard == null ? "" : shard.getUserId();
+        return visibleFoodsByUser.computeIfAbsent(userId, this::composeVisibleFoods);
+    }
+
+    /**
+     * Builds the food list visible to a user: the catalog (read lazily), then the heap foods,
+     * then the user's generated custom food items.
+     *
+     * @param userId user ID, or an empty string for no user
+     * @return read-only food list
+     */
+    private List<Food> composeVisibleFoods(String userId) {
+        List<Food> items = customFoodItemsByUser.getOrDefault(userId, List.of());
+        List<Food> tail = new ArrayList<>(foods.size() + items.size());
+        for (Food f : foods) {
+            if (f != null) tail.add(f);
         }
+        tail.addAll(items);
 
-        String uid = activeUser.getId();
+        return catalog == null ? Collections.unmodifiableList(tail) : catalog.viewWith(Collections.unmodifiableList(tail));
+    }
 
-        Set<String> allowedCustomFoodItemIds = new HashSet<>();
-        if (customFoods != null) {
-            for (CustomFood cf : customFoods) {
-                if (cf == null) continue;
-                if (uid.equalsIgnoreCase(cf.getUserId())) {
-                    allowedCustomFoodItemIds.add("cf_item_" + cf.getId());
-                }
+    /**
+     * Returns the active user's custom foods.
+     *
+     * @return list of the active user's custom foods (empty if no user is logged in)
+     */
+    public List<CustomFood> getCustomFoods() {
+        UserShard shard = activeShard();
+        return shard == null ? List.of() : shard.getCustomFoods();
+    }
+
+    /**
+     * Returns all of the active user's day logs, oldest first. Every stored month is paged in
+     * first, so prefer {@link #getDayLogs(LocalDate, LocalDate)} when only a range is needed.
+     *
+     * @return list of the active user's day logs (empty if no user is logged in)
+     */
+    public List<DayLog> getDayLogs() {
+        UserShard shard = activeShard();
+        if (shard == null) return List.of();
+        ensureMonthsLoaded(shard, shard.getStoredMonths());
+        return new ArrayList<>(shard.getDayLogs());
+    }
+
+    /**
+     * Returns the active user's day logs between two dates (inclusive), oldest first.
+     * Only the monthly segments covering the range are paged in.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return day logs in the range (empty if no user is logged in or the range is empty)
+     */
+    public List<DayLog> getDayLogs(LocalDate from, LocalDate to) {
+        UserShard shard = activeShard();
+        if (shard == null || from == null || to == null || to.isBefore(from)) return List.of();
+        ensureMonthsLoaded(shard, shard.getStoredMonths().subSet(YearMonth.from(from), true, YearMonth.from(to), true));
+        return new ArrayList<>(shard.getDayLogs(from, to));
+    }
+
+    /**
+     * Returns the active user's totals for each day between two dates (inclusive), read from the
+     * user's {@link DailyRollup} without visiting DayLog or FoodLog objects. The per-day totals
+     * are saved with the shard, so no segment is paged in except months last written before that.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return one entry per day, oldest first, {@link Macros#ZERO} for days without entries
+     *         (empty if no user is logged in or the range is empty)
+     */
+    public List<Macros> getDailyTotals(LocalDate from, LocalDate to) {
+        DailyRollup rollup = rollupFor(from, to);
+        if (rollup == null) return List.of();
+        List<Macros> out = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) out.add(rollup.get(d));
+        return out;
+    }
+
+    /**
+     * Returns the active user's totals summed over a date range (inclusive), in O(log n).
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return summed totals ({@link Macros#ZERO} if no user is logged in or the range is empty)
+     */
+    public Macros getTotals(LocalDate from, LocalDate to) {
+        DailyRollup rollup = rollupFor(from, to);
+        return rollup == null ? Macros.ZERO : rollup.sum(from, to);
+    }
+
+    /**
+     * Returns the active user's average daily totals over a date range (inclusive), counting days
+     * with nothing logged as zero.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return average per day ({@link Macros#ZERO} if no user is logged in or the range is empty)
+     */
+    public Macros getAverageTotals(LocalDate from, LocalDate to) {
+        DailyRollup rollup = rollupFor(from, to);
+        return rollup == null ? Macros.ZERO : rollup.average(from, to);
+    }
+
+    /**
+     * Returns the active user's average daily totals from their first logged day through today.
+     * Read from the saved per-day totals, like {@link #getTotals}.
+     *
+     * @return average per day ({@link Macros#ZERO} if no user is logged in or nothing is logged)
+     */
+    public Macros getAllTimeAverageTotals() {
+        UserShard shard = activeShard();
+        if (shard == null) return Macros.ZERO;
+        ensureMonthsLoaded(shard, shard.getUntotaledMonths());
+        LocalDate first = shard.getRollup().firstDay();
+        if (first == null) return Macros.ZERO;
+        LocalDate today = LocalDate.now();
+        return shard.getRollup().average(first, first.isAfter(today) ? first : today);
+    }
+
+    /**
+     * Returns the active user's rollup after paging in any months of a date range whose per-day
+     * totals were not saved with the shard.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return the rollup, or null if no user is logged in or the range is empty
+     */
+    private DailyRollup rollupFor(LocalDate from, LocalDate to) {
+        UserShard shard = activeShard();
+        if (shard == null || from == null || to == null || to.isBefore(from)) return null;
+        ensureMonthsLoaded(shard, shard.getUntotaledMonths().subSet(YearMonth.from(from), true, YearMonth.from(to), true));
+        return shard.getRollup();
+    }
+
+    /**
+     * Loads the newest valid global snapshot from disk into memory and replays the global journal
+     * on top of it. If the current snapshot is damaged, the newest intact older generation is used
+     * instead. Data saved before per-user shards existed is split into shards here and written back
+     * in the new layout. If no data file exists, default foods are seeded before replaying.
+     * The active user's shard is not read here; see {@link #loadActiveUserAsync()}.
+     *
+     * <p>If saved data exists but cannot be loaded (no generation is intact, it was written by a
+     * newer version, or the journal cannot be read), nothing is loaded and the global files are
+     * kept exactly as they are: no snapshot is written over them. The caller must not go on with
+     * the empty model.</p>
+     *
+     * @throws IOException if the saved data exists but cannot be loaded
+     */
+    public void loadAllData() throws IOException {
+        persistence.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        clearModel();
+        installGlobalFiles(readGlobalFiles());
+    }
+
+    /**
+     * Does the same as {@link #loadAllData()}, but reads the files on the background thread and
+     * builds the model from them on the callback executor. The read is queued behind every write
+     * submitted so far, so no flush is needed first.
+     *
+     * @return future completed on the callback executor once the global data is in memory, or
+     *         completed exceptionally with the {@link IOException} that {@link #loadAllData()}
+     *         would throw
+     */
+    public CompletableFuture<Void> loadAllDataAsync() {
+        clearModel();
+        CompletableFuture<Void> loaded = new CompletableFuture<>();
+        persistence.read(this::readGlobalFiles).whenCompleteAsync((read, error) -> {
+            if (error != null) {
+                loaded.completeExceptionally(error);
+                return;
             }
-        }
+            try {
+                installGlobalFiles(read);
+                loaded.complete(null);
+            } catch (IOException e) {
+                loaded.completeExceptionally(e);
+            }
+        }, callbackExecutor);
+        return loaded;
+    }
 
-        List<Food> out = new ArrayList<>();
-        for (Food f : foods) {
-            if (f == null) continue;
-            String id = f.getId();
+    /**
+     * Drops every loaded account, food and shard, leaving the empty model a failed load ends with.
+     */
+    private void clearModel() {
+        shards.clear();
+        activeUser = null;
+        foods = new ArrayList<>();
+        usersById = new HashMap<>();
+        passwordSaltById = new HashMap<>();
+        passwordHashById = new HashMap<>();
+    }
 
-            if (id != null && id.startsWith("cf_item_")) {
-                if (allowedCustomFoodItemIds.contains(id)) out.add(f);
-            } else {
-                out.add(f);
+    /**
+     * Reads the global snapshot and journal. Only the global store is touched, so this may run on
+     * the background thread.
+     *
+     * @return the snapshot (null if there is none) and the journal entries still to be applied
+     * @throws IOException if the saved data exists but cannot be read
+     */
+    private Map.Entry<ModelCodec.Snapshot, List<JournalEntry>> readGlobalFiles() throws IOException {
+        Files.createDirectories(dataDirectory);
+        ModelCodec.Snapshot snapshot = globalStore.readSnapshot(ModelCodec::readSnapshot);
+        return new AbstractMap.SimpleEntry<>(snapshot, globalStore.readJournal());
+    }
+
+    /**
+     * Builds the model from the files read by {@link #readGlobalFiles}: opens the food catalog
+     * (only its header is read), installs the accounts and foods, splits older data into shards
+     * and replays the journal.
+     *
+     * @param read snapshot and journal entries returned by {@link #readGlobalFiles}
+     * @throws IOException if the data cannot be applied; the journal is then kept
+     */
+    private void installGlobalFiles(Map.Entry<ModelCodec.Snapshot, List<JournalEntry>> read) throws IOException {
+        ModelCodec.Snapshot snapshot = read.getKey();
+        catalog = openCatalog();
+        try {
+            if (snapshot != null) {
+                activeUser = snapshot.activeUser;
+                foods = snapshot.foods;
+                usersById = snapshot.usersById;
+                passwordSaltById = snapshot.passwordSaltById;
+                passwordHashById = snapshot.passwordHashById;
             }
+            rebuildEmailIndex();
+
+            boolean migrated = snapshot != null && migrateToShards(snapshot);
+            seedDefaultsIfNeeded();
+            rebuildFoodIndexes();
+            replayJournal(read.getValue(), migrated);
+        } catch (RuntimeException e) {
+            globalStore.keepJournal();
+            throw new IOException("Saved data in " + dataDirectory + " could not be loaded", e);
         }
+    }
 
-        return out;
+    /**
+     * Rebuilds the email index from the loaded accounts. Accounts stored before users had
+     * surrogate IDs were keyed by their email, so an account without an email uses its ID.
+     */
+    private void rebuildEmailIndex() {
+        userIdByEmail = new HashMap<>();
+        for (Map.Entry<String, User> e : usersById.entrySet()) {
+            User u = e.getValue();
+            if (u.getEmail() == null) u.setEmail(e.getKey());
+            userIdByEmail.put(normalizeEmail(u.getEmail()), e.getKey());
+        }
     }
 
     /**
-     * Returns list of custom foods.
+     * Resolves a user reference to a user ID. Journal entries and data written before users had
+     * surrogate IDs refer to accounts by email, so a reference that is not a known ID is looked
+     * up as an email.
      *
-     * @return list of all custom foods
+     * @param idOrEmail user ID, or a legacy email reference
+     * @return matching user ID, or {@code idOrEmail} itself if no account matches
      */
-    public List<CustomFood> getCustomFoods() {
-        return customFoods;
+    private String resolveUserId(String idOrEmail) {
+        if (idOrEmail == null || usersById.containsKey(idOrEmail)) return idOrEmail;
+        return userIdByEmail.getOrDefault(normalizeEmail(idOrEmail), idOrEmail);
     }
 
     /**
-     * Returns list of day logs.
+     * Memory-maps the installed food database, if there is one. A missing or unreadable catalog
+     * simply leaves the heap food list as the only source of foods.
      *
-     * @return list of all day logs
+     * @return opened catalog, or null
      */
-    public List<DayLog> getDayLogs() {
-        return dayLogs;
+    private FoodCatalog openCatalog() {
+        Path file = dataDirectory.resolve(CATALOG_FILE);
+        if (!Files.exists(file)) return null;
+        try {
+            return FoodCatalog.open(file);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
-     * Builds a unique key for (userId, date) lookup in {@link #dayLogIndex}.
+     * Splits the goals, custom foods and DayLogs of a snapshot written before per-user shards into
+     * one shard per user. Goals used to be shared, so every account receives a copy of them.
+     * The migrated shards and the global file are marked dirty so they are rewritten in the new layout.
      *
-     * @param userId user identifier
-     * @param date date of the log
-     * @return string key formatted as "userId|yyyy-mm-dd"
+     * @param snapshot global snapshot that may still carry per-user data
+     * @return true if any data was migrated
      */
-    private static String dayKey(String userId, LocalDate date) {
-        String u = (userId == null) ? "" : userId;
-        String d = (date == null) ? "" : date.toString();
-        return u + "|" + d;
+    private boolean migrateToShards(ModelCodec.Snapshot snapshot) {
+        if (snapshot.goals.isEmpty() && snapshot.customFoods.isEmpty() && snapshot.dayLogs.isEmpty()) return false;
+
+        for (String userId : usersById.keySet()) {
+            for (Goal g : snapshot.goals) migratedShard(userId).addGoal(g);
+        }
+        for (CustomFood cf : snapshot.customFoods) {
+            if (cf == null) continue;
+            String userId = resolveUserId(normalizeEmail(cf.getUserId()));
+            if (!userId.isEmpty()) migratedShard(userId).getCustomFoods().add(cf);
+        }
+        for (DayLog dl : snapshot.dayLogs) {
+            if (dl == null || dl.getDate() == null || dl.getFoodLogs().isEmpty()) continue;
+            String userId = resolveUserId(normalizeEmail(dl.getUserId()));
+            if (!userId.isEmpty()) migratedShard(userId).putDayLog(dl);
+        }
+
+        foods.removeIf(f -> f != null && f.getId() != null && f.getId().startsWith(CUSTOM_FOOD_ITEM_PREFIX));
+        for (UserShard shard : shards.values()) {
+            shard.reassignTo(shard.getUserId());
+            shard.markLoadedMonthsDirty();
+        }
+        globalStore.markDirty();
+        return true;
     }
 
     /**
-     * Loads all serialized data from disk into memory. If no data file exists, default foods are seeded.
-     * If loading fails, the system resets to empty collections and seeds default foods.
+     * Returns the shard a user's migrated data is collected into, creating an empty one if needed.
+     *
+     * @param userId owner of the data
+     * @return shard registered for that user
      */
-    public void loadAllData() {
+    private UserShard migratedShard(String userId) {
+        UserShard shard = shards.get(userId);
+        if (shard == null) {
+            shard = new UserShard(userId);
+            shard.setStore(shardStore(userId));
+            shard.getStore().markDirty();
+            shards.put(userId, shard);
+        }
+        return shard;
+    }
+
+    /**
+     * Re-applies every global journal entry written since the last snapshot, then compacts the
+     * journal if it has grown past its threshold. Entries for user data found here were written
+     * before per-user shards existed; they are routed to their shards and the global file is
+     * rewritten so they are not replayed again.
+     *
+     * @param journal entries read from the global journal
+     * @param migrated whether older data was just split into shards and still needs to be written
+     */
+    private void replayJournal(List<JournalEntry> journal, boolean migrated) {
+        boolean legacyEntries = false;
+        for (JournalEntry e : journal) {
+            try {
+                apply(e);
+                if (e.getType() != null && e.getType().isUserScoped()) legacyEntries = true;
+            } catch (RuntimeException ignored) {
+            }
+        }
+        if (migrated || legacyEntries) {
+            if (legacyEntries) globalStore.markDirty();
+            saveAllData();
+        } else if (globalStore.getJournalBytes() > JOURNAL_COMPACT_BYTES) {
+            saveGlobal();
+        }
+    }
+
+    /**
+     * Returns the shard of the active user, loading it if needed.
+     *
+     * @return active user's shard, or null if no user is logged in
+     */
+    private UserShard activeShard() {
+        return activeUser == null ? null : shardFor(activeUser.getId());
+    }
+
+    /**
+     * Returns a user's shard, loading it from disk the first time it is needed. The files are read
+     * on the calling thread; screens avoid that by calling {@link #loadActiveUserAsync()} first.
+     *
+     * <p>No flush is needed before reading: a shard stays in memory from its first load until
+     * {@link #loadAllData()}, which flushes, so no write to a shard that is not loaded can still be
+     * queued.</p>
+     *
+     * @param userId owner of the shard
+     * @return loaded shard, or null if {@code userId} is null
+     */
+    private UserShard shardFor(String userId) {
+        if (userId == null) return null;
+        UserShard shard = shards.get(userId);
+        if (shard != null) return shard;
+
+        User owner = usersById.get(userId);
+        return installShard(userId, readShardFiles(userId, owner == null ? null : owner.getEmail()));
+    }
+
+    /**
+     * Starts loading the active user's shard, and its most recent months, on the background
+     * thread. The loaded shard is added to the model on the callback executor.
+     *
+     * @return future completed on the callback executor once the shard is in memory (already
+     *         complete if it is, or if no user is logged in); a failed read is left to the next
+     *         synchronous access and still completes the future normally
+     */
+    public CompletableFuture<Void> loadActiveUserAsync() {
+        if (activeUser == null || shards.containsKey(activeUser.getId())) return CompletableFuture.completedFuture(null);
+        String userId = activeUser.getId();
+        String email = activeUser.getEmail();
+        return persistence.read(() -> readShardFiles(userId, email))
+                .handleAsync((read, error) -> {
+                    if (read != null) installShard(userId, read);
+                    return null;
+                }, callbackExecutor);
+    }
+
+    /**
+     * Reads a user's shard files: the shard snapshot, the list of stored months, the most recent
+     * months and any month its journal refers to, and the journal itself. Only files and objects
+     * that are not yet shared with the model are touched, so this may run on the background thread.
+     * Custom food ingredients are left unbound; {@link #installShard} binds them.
+     *
+     * @param userId owner of the shard
+     * @param email owner's current email, whose directory is adopted if the shard is still filed under it
+     * @return the shard and the journal entries still to be applied to it
+     */
+    private Map.Entry<UserShard, List<JournalEntry>> readShardFiles(String userId, String email) {
+        if (email != null && !email.equals(userId)) {
+            adoptDirectory(shardDirectory(email), shardDirectory(userId));
+        }
+
+        JournaledStore store = shardStore(userId);
+        UserShard shard;
         try {
-            Files.createDirectories(dataDirectory);
-            Path file = dataDirectory.resolve("macromate.dat");
-            if (!Files.exists(file)) {
-                seedDefaultsIfNeeded();
-                return;
+            shard = store.readSnapshot(in -> ModelCodec.readShard(in, id -> null));
+        } catch (IOException e) {
+            return unreadableShard(userId, store);
+        }
+        if (shard == null) shard = new UserShard(userId);
+        shard.setStore(store);
+        if (!shard.getDayLogs().isEmpty()) {
+            // Shard written before monthly segments: move its DayLogs out into segments,
+            // leaving out days that were created empty by older versions.
+            shard.markLoadedMonthsDirty();
+            shard.getDayLogs().removeIf(dl -> dl.getFoodLogs().isEmpty());
+            store.markDirty();
+        }
+        if (shard.reassignTo(userId)) store.markDirty();
+        scanSegments(shard);
+
+        Set<YearMonth> months = new TreeSet<>();
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i < RECENT_SEGMENT_MONTHS; i++) months.add(current.minusMonths(i));
+
+        List<JournalEntry> journal;
+        try {
+            journal = store.readJournal();
+        } catch (IOException e) {
+            return unreadableShard(userId, store);
+        }
+        for (JournalEntry e : journal) {
+            if (e != null && e.getDate() != null) months.add(YearMonth.from(e.getDate()));
+        }
+        for (YearMonth month : months) {
+            if (shard.isMonthLoaded(month)) continue;
+            try {
+                putMonth(shard, month, readMonth(segmentStore(shard, month)));
+            } catch (IOException e) {
+                shard.markMonthUnreadable(month);
+            }
+        }
+        return new AbstractMap.SimpleEntry<>(shard, journal);
+    }
+
+    /**
+     * Returns an empty, read-only stand-in for a shard whose snapshot or journal could not be read.
+     * Its journal is kept and its snapshot is never written, and every change to it is refused (see
+     * {@link #isActiveUserReadOnly()}), so the files on disk stay exactly as they are.
+     *
+     * @param userId owner of the shard
+     * @param store the shard's files
+     * @return the stand-in shard, with no journal entries to apply
+     */
+    private Map.Entry<UserShard, List<JournalEntry>> unreadableShard(String userId, JournaledStore store) {
+        store.keepJournal();
+        UserShard shard = new UserShard(userId);
+        shard.setStore(store);
+        shard.markUnreadable();
+        return new AbstractMap.SimpleEntry<>(shard, List.of());
+    }
+
+    /**
+     * Adds a shard read by {@link #readShardFiles} to the model and replays its journal. If the
+     * user's shard was loaded in the meantime, that one is kept and the read is discarded.
+     *
+     * @param userId owner of the shard
+     * @param read shard and journal entries returned by {@link #readShardFiles}
+     * @return the user's loaded shard
+     */
+    private UserShard installShard(String userId, Map.Entry<UserShard, List<JournalEntry>> read) {
+        UserShard loaded = shards.get(userId);
+        if (loaded != null) return loaded;
+
+        UserShard shard = read.getKey();
+        shards.put(userId, shard);
+        for (CustomFood cf : shard.getCustomFoods()) indexCustomFood(cf);
+        for (JournalEntry e : read.getValue()) {
+            try {
+                apply(shard, e);
+            } catch (RuntimeException ignored) {
             }
+        }
+        if (shard.getStore().getJournalBytes() > JOURNAL_COMPACT_BYTES) saveShard(shard);
+        return shard;
+    }
 
-            try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(file))) {
-                activeUser = (User) in.readObject();
-                goals = castList(in.readObject());
-                foods = castList(in.readObject());
-                customFoods = castList(in.readObject());
-                dayLogs = castList(in.readObject());
-                usersByEmail = castMap(in.readObject());
-                passwordSaltByEmail = castMap(in.readObject());
-                passwordHashByEmail = castMap(in.readObject());
+    /**
+     * Records which months have a DayLog segment in a shard's directory.
+     *
+     * @param shard shard being loaded
+     */
+    private void scanSegments(UserShard shard) {
+        Path dir = segmentDirectory(shard.getUserId());
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(file -> {
+                    Matcher m = SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString());
+                    if (m.matches()) shard.getStoredMonths().add(YearMonth.parse(m.group(1)));
+                });
+            } catch (IOException ignored) {
             }
+        }
+        shard.dropUnstoredTotals();
+    }
 
-            if (goals == null) goals = new ArrayList<>();
-            if (foods == null) foods = new ArrayList<>();
-            if (customFoods == null) customFoods = new ArrayList<>();
-            if (dayLogs == null) dayLogs = new ArrayList<>();
-            if (usersByEmail == null) usersByEmail = new HashMap<>();
-            if (passwordSaltByEmail == null) passwordSaltByEmail = new HashMap<>();
-            if (passwordHashByEmail == null) passwordHashByEmail = new HashMap<>();
-            rebuildDayLogIndex();
+    /**
+     * Pages in one month of a shard's DayLogs if it is not in memory yet. The segment is read on
+     * the calling thread; {@link #loadDaysAsync(LocalDate, LocalDate)} reads ahead in the background.
+     * No flush is needed first: a segment is only written from a loaded month, so a month that is
+     * not loaded has no write queued. If the segment cannot be read, the month is left unloaded
+     * and read-only (see {@link #getUnreadableMonths()}), and the read is tried again on the next
+     * access.
+     *
+     * @param shard shard owning the month
+     * @param month month to load
+     * @return true if the month is in memory, false if its segment could not be read
+     */
+    private boolean ensureMonthLoaded(UserShard shard, YearMonth month) {
+        if (shard.isMonthLoaded(month)) return true;
+        if (shard.isUnreadable()) return false;
+        try {
+            putMonth(shard, month, readMonth(segmentStore(shard, month)));
+            return true;
+        } catch (IOException e) {
+            shard.markMonthUnreadable(month);
+            return false;
+        }
+    }
 
-            seedDefaultsIfNeeded();
-        } catch (Exception e) {
-            activeUser = null;
-            goals = new ArrayList<>();
-            foods = new ArrayList<>();
-            customFoods = new ArrayList<>();
-            dayLogs = new ArrayList<>();
-            usersByEmail = new HashMap<>();
-            passwordSaltByEmail = new HashMap<>();
-            passwordHashByEmail = new HashMap<>();
-            seedDefaultsIfNeeded();
-            rebuildDayLogIndex();
+    /**
+     * Returns the active user's months whose saved DayLogs could not be read. Their days are
+     * missing from every list and total, and changes to them are refused, until a later read
+     * succeeds.
+     *
+     * @return unreadable months (empty if there are none or no user is logged in)
+     */
+    public Set<YearMonth> getUnreadableMonths() {
+        UserShard shard = activeShard();
+        return shard == null ? Set.of() : shard.getUnreadableMonths();
+    }
+
+    /**
+     * Returns whether the active user's saved data could not be read at all. Nothing of theirs is
+     * shown, and every change to their diary, custom foods and goals is refused.
+     *
+     * @return true if the active user's shard is read-only
+     */
+    public boolean isActiveUserReadOnly() {
+        UserShard shard = activeShard();
+        return shard != null && shard.isUnreadable();
+    }
+
+    /**
+     * Starts paging in the active user's months covering a date range on the background thread.
+     * The DayLogs read are added to the shard on the callback executor.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return future completed on the callback executor once the range is in memory (already
+     *         complete if it is, or if no user is logged in)
+     */
+    public CompletableFuture<Void> loadDaysAsync(LocalDate from, LocalDate to) {
+        if (activeUser == null || from == null || to == null || to.isBefore(from)) return CompletableFuture.completedFuture(null);
+        UserShard shard = shards.get(activeUser.getId());
+        if (shard == null) return loadActiveUserAsync().thenCompose(v -> loadDaysAsync(from, to));
+
+        Map<YearMonth, SnapshotStore> missing = new TreeMap<>();
+        for (YearMonth m : shard.getStoredMonths().subSet(YearMonth.from(from), true, YearMonth.from(to), true)) {
+            if (!shard.isMonthLoaded(m)) missing.put(m, segmentStore(shard, m));
+        }
+        if (missing.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        return persistence.read(() -> {
+            // A month whose segment cannot be read maps to null.
+            Map<YearMonth, List<DayLog>> read = new TreeMap<>();
+            missing.forEach((m, store) -> {
+                try {
+                    List<DayLog> logs = readMonth(store);
+                    read.put(m, logs == null ? List.of() : logs);
+                } catch (IOException e) {
+                    read.put(m, null);
+                }
+            });
+            return read;
+        }).handleAsync((read, error) -> {
+            if (read == null || shards.get(shard.getUserId()) != shard) return null;
+            read.forEach((m, logs) -> {
+                if (shard.isMonthLoaded(m)) return;
+                if (logs == null) shard.markMonthUnreadable(m);
+                else putMonth(shard, m, logs);
+            });
+            return null;
+        }, callbackExecutor);
+    }
+
+    /**
+     * Reads one month's DayLog segment.
+     *
+     * @param segment store of the segment
+     * @return the segment's DayLogs, or null if it does not exist
+     * @throws IOException if the segment exists but no generation of it can be read
+     */
+    private static List<DayLog> readMonth(SnapshotStore segment) throws IOException {
+        return segment.read(ModelCodec::readSegment);
+    }
+
+    /**
+     * Adds one month's DayLogs to a shard and marks the month loaded. Days stored empty, or under
+     * an email the account no longer uses, are fixed and the month is marked for rewriting.
+     *
+     * @param shard shard owning the month
+     * @param month month the DayLogs belong to
+     * @param logs DayLogs read from the segment (null for none)
+     */
+    private static void putMonth(UserShard shard, YearMonth month, List<DayLog> logs) {
+        // A month saved before per-day totals were kept: rewrite the shard so they are saved.
+        if (shard.markMonthLoaded(month)) shard.getStore().markDirty();
+        if (logs == null) return;
+
+        for (DayLog dl : logs) {
+            if (dl == null || dl.getDate() == null) continue;
+            if (dl.getFoodLogs().isEmpty()) {
+                // Empty day stored by an older version, which created a DayLog on every read:
+                // drop it and rewrite the segment without it.
+                shard.markMonthDirty(month);
+                shard.getStore().markDirty();
+                continue;
+            }
+            if (!shard.getUserId().equals(dl.getUserId())) {
+                // Segment written before an email change.
+                dl.setUserId(shard.getUserId());
+                shard.markMonthDirty(month);
+                shard.getStore().markDirty();
+            }
+            shard.putDayLog(dl);
+        }
+    }
+
+    /**
+     * Pages in several months of a shard's DayLogs.
+     *
+     * @param shard shard owning the months
+     * @param months months to load
+     * @return true if every month is in memory, false if a segment could not be read
+     */
+    private boolean ensureMonthsLoaded(UserShard shard, Collection<YearMonth> months) {
+        boolean loaded = true;
+        for (YearMonth month : new ArrayList<>(months)) loaded &= ensureMonthLoaded(shard, month);
+        return loaded;
+    }
+
+    /**
+     * Pages in every month of a shard that a user-scoped journal entry changes: the month of a
+     * FoodLog added or removed, or the months using a deleted custom food.
+     *
+     * @param shard shard the entry applies to
+     * @param e journal entry
+     * @return true if all of those months are in memory, false if one could not be read or the
+     *         shard itself is read-only, in which case the entry must not be applied
+     */
+    private boolean loadMonthsOf(UserShard shard, JournalEntry e) {
+        if (shard.isUnreadable()) return false;
+        return switch (e.getType()) {
+            case FOOD_LOG_ADDED, FOOD_LOG_REMOVED -> e.getDate() == null || ensureMonthLoaded(shard, YearMonth.from(e.getDate()));
+            case CUSTOM_FOOD_DELETED -> e.getTargetId() == null
+                    || ensureMonthsLoaded(shard, shard.getMonthsUsing(e.getTargetId()))
+                    & ensureMonthsLoaded(shard, shard.getMonthsUsing(CUSTOM_FOOD_ITEM_PREFIX + e.getTargetId()));
+            default -> true;
+        };
+    }
+
+    /**
+     * Returns the store for one month of a shard's DayLogs.
+     *
+     * @param shard shard owning the month
+     * @param month month of the segment
+     * @return segment store
+     */
+    private SnapshotStore segmentStore(UserShard shard, YearMonth month) {
+        return shard.getSegmentStores().computeIfAbsent(month, m ->
+                new SnapshotStore(segmentDirectory(shard.getUserId()), m + SEGMENT_FILE_SUFFIX, SEGMENT_GENERATIONS));
+    }
+
+    /**
+     * Returns the directory holding a user's monthly DayLog segments.
+     *
+     * @param userId owner of the shard
+     * @return path of the segment directory
+     */
+    private Path segmentDirectory(String userId) {
+        return shardDirectory(userId).resolve(SEGMENT_DIRECTORY);
+    }
+
+    /**
+     * Creates the store for a user's shard files.
+     *
+     * @param userId owner of the shard
+     * @return store rooted in that user's directory
+     */
+    private JournaledStore shardStore(String userId) {
+        return new JournaledStore(shardDirectory(userId), SHARD_SNAPSHOT_FILE, SHARD_JOURNAL_FILE, SNAPSHOT_GENERATIONS);
+    }
+
+    /**
+     * Returns the directory holding a user's shard files. The user ID is URL-encoded so that any
+     * email maps to a single, safe directory name.
+     *
+     * @param userId owner of the shard
+     * @return path of the user's directory
+     */
+    private Path shardDirectory(String userId) {
+        String name = URLEncoder.encode(userId, StandardCharsets.UTF_8);
+        if (name.startsWith(".")) name = "%2E" + name.substring(1);
+        return dataDirectory.resolve(USERS_DIRECTORY).resolve(name);
+    }
+
+    /**
+     * Requests a snapshot of every file with unsaved changes: each dirty user shard and, if it
+     * changed, the global file. Clean shards are not touched. Each file is encoded in memory on
+     * the calling thread, so its snapshot is consistent with the model, and the disk writes happen
+     * on the background writer. Requests made before the writer gets to them are merged into one
+     * write of the latest state per file. Once a snapshot is safely in place its journal is
+     * cleared; on failure the previous snapshot and the journal are left intact.
+     *
+     * @return true if every dirty file was encoded and queued, false if one could not be serialized
+     */
+    public boolean saveAllData() {
+        boolean ok = true;
+        for (UserShard shard : shards.values()) {
+            if (shard.getStore().isDirty()) ok &= saveShard(shard);
+        }
+        if (globalStore.isDirty()) ok &= saveGlobal();
+        return ok;
+    }
+
+    /**
+     * Encodes and queues a snapshot of the global file.
+     *
+     * @return true if the snapshot was queued, false if the model could not be serialized
+     */
+    private boolean saveGlobal() {
+        ModelCodec.Snapshot s = new ModelCodec.Snapshot();
+        s.activeUser = activeUser;
+        s.foods = foods;
+        s.usersById = usersById;
+        s.passwordSaltById = passwordSaltById;
+        s.passwordHashById = passwordHashById;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ModelCodec.writeSnapshot(bytes, s);
+        } catch (IOException e) {
+            return false;
         }
+        globalStore.writeSnapshot(persistence, bytes.toByteArray());
+        return true;
     }
 
     /**
-     * Saves all persistent data to disk. Serialization suppresses errors to avoid interrupting application flow.
+     * Encodes and queues a snapshot of one user shard together with its changed DayLog segments.
+     * Months that did not change are not rewritten.
+     *
+     * @param shard shard to write
+     * @return true if the snapshot was queued, false if the shard could not be serialized
      */
-    public void saveAllData() {
+    private boolean saveShard(UserShard shard) {
+        Set<YearMonth> months = shard.takeDirtyMonths();
+        Map<YearMonth, List<DayLog>> byMonth = new HashMap<>();
+        for (YearMonth m : months) byMonth.put(m, new ArrayList<>(shard.getDayLogs(m.atDay(1), m.atEndOfMonth())));
+
+        Map<SnapshotStore, byte[]> segments = new HashMap<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try {
-            Files.createDirectories(dataDirectory);
-            Path file = dataDirectory.resolve("macromate.dat");
-            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
-                out.writeObject(activeUser);
-                out.writeObject(goals);
-                out.writeObject(foods);
-                out.writeObject(customFoods);
-                out.writeObject(dayLogs);
-                out.writeObject(usersByEmail);
-                out.writeObject(passwordSaltByEmail);
-                out.writeObject(passwordHashByEmail);
+            for (Map.Entry<YearMonth, List<DayLog>> e : byMonth.entrySet()) {
+                ByteArrayOutputStream segment = new ByteArrayOutputStream();
+                ModelCodec.writeSegment(segment, e.getValue());
+                segments.put(segmentStore(shard, e.getKey()), segment.toByteArray());
             }
-        } catch (Exception ignored) {
+            ModelCodec.writeShard(bytes, shard, this::findStoredFood);
+        } catch (IOException e) {
+            months.forEach(shard::markMonthDirty);
+            return false;
         }
+        shard.getStore().writeSnapshot(persistence, bytes.toByteArray(), segments);
+        return true;
+    }
+
+    /**
+     * Waits for all queued journal appends and snapshot writes to reach the disk.
+     *
+     * @return true if everything was written before the timeout
+     */
+    public boolean flush() {
+        return persistence.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS) && !persistence.takeFailure();
     }
 
     /**
-     * Registers a new user by email, hashing and salting the password before saving.
+     * Flushes outstanding writes and stops the background writer and index builder. Called when
+     * the application exits.
+     *
+     * @return true if everything was written before the timeout
+     */
+    public boolean shutdown() {
+        indexWorker.shutdownNow();
+        return persistence.shutdown(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS) && !persistence.takeFailure();
+    }
+
+    /**
+     * Queues a mutation for appending to the journal of the file it belongs to (the owning user's
+     * shard, or the global file), compacting that file into a new snapshot once its journal grows
+     * too large. If the entry cannot be encoded, or an earlier background write failed, every
+     * loaded file is marked dirty and saved instead so no change is lost.
+     *
+     * @param entry mutation to persist
+     */
+    private void appendToJournal(JournalEntry entry) {
+        UserShard shard = entry.getType().isUserScoped() ? shardFor(entry.getUserId()) : null;
+        JournaledStore store = (shard == null) ? globalStore : shard.getStore();
+
+        if (!store.append(persistence, entry) || persistence.takeFailure()) {
+            globalStore.markDirty();
+            for (UserShard s : shards.values()) {
+                s.getStore().markDirty();
+                s.markLoadedMonthsDirty();
+            }
+            saveAllData();
+        } else if (store.getJournalBytes() > JOURNAL_COMPACT_BYTES) {
+            if (shard == null) saveGlobal();
+            else saveShard(shard);
+        }
+    }
+
+    /**
+     * Applies a journal entry to the in-memory model. User-scoped entries are applied to the owning
+     * user's shard; entries from before per-user shards that carry no user ID are applied to the
+     * shard of every account. Every entry is idempotent, so replaying an entry that is already
+     * reflected in the snapshot leaves the model unchanged.
+     *
+     * @param e entry to apply
+     */
+    private void apply(JournalEntry e) {
+        if (e == null || e.getType() == null) return;
+
+        if (e.getType().isUserScoped()) {
+            if (e.getUserId() != null) {
+                UserShard shard = shardFor(resolveUserId(e.getUserId()));
+                apply(shard, e);
+                shard.getStore().markDirty();
+            } else {
+                for (String userId : new ArrayList<>(usersById.keySet())) {
+                    UserShard shard = shardFor(userId);
+                    apply(shard, e);
+                    shard.getStore().markDirty();
+                }
+            }
+            return;
+        }
+
+        switch (e.getType()) {
+            case ACCOUNT_SAVED -> {
+                if (!(e.getPayload() instanceof User u)) return;
+                if (u.getEmail() == null) u.setEmail(u.getId());
+                String email = normalizeEmail(u.getEmail());
+                String owner = userIdByEmail.get(email);
+                // An entry from before surrogate IDs, keyed by an email that a replayed email
+                // change has already given to an existing account, belongs to that account.
+                if (owner != null && !owner.equals(u.getId()) && !usersById.containsKey(u.getId())) u.setId(owner);
+
+                User previous = usersById.put(u.getId(), u);
+                if (previous != null && previous.getEmail() != null) userIdByEmail.remove(normalizeEmail(previous.getEmail()), u.getId());
+                userIdByEmail.put(email, u.getId());
+                passwordSaltById.put(u.getId(), e.getPasswordSalt());
+                passwordHashById.put(u.getId(), e.getPasswordHash());
+                if (activeUser != null && u.getId().equals(activeUser.getId())) activeUser = u;
+            }
+            case ACCOUNT_EMAIL_CHANGED -> changeEmail(resolveUserId(e.getUserId()), e.getTargetId());
+            case ACTIVE_USER_CHANGED -> activeUser = (e.getUserId() == null) ? null : usersById.get(resolveUserId(e.getUserId()));
+            default -> {
+                // User-scoped types are handled above.
+            }
+        }
+    }
+
+    /**
+     * Applies a user-scoped journal entry to a shard.
+     *
+     * @param shard shard owning the data
+     * @param e entry to apply
+     */
+    private void apply(UserShard shard, JournalEntry e) {
+        if (!loadMonthsOf(shard, e)) {
+            // The entry changes a month that could not be read: keep it in the journal so it is
+            // applied on a later start, rather than saving the month without it.
+            shard.getStore().keepJournal();
+            return;
+        }
+        switch (e.getType()) {
+            case FOOD_LOG_ADDED -> {
+                if (!(e.getPayload() instanceof FoodLog log)) return;
+                DayLog day = getOrCreateDayLog(shard, e.getDate());
+                for (FoodLog existing : day.getFoodLogs()) {
+                    if (existing != null && log.getId() != null && log.getId().equals(existing.getId())) return;
+                }
+                shard.addFoodLog(day, log);
+                shard.markMonthDirty(YearMonth.from(e.getDate()));
+            }
+            case FOOD_LOG_REMOVED -> {
+                if (e.getDate() == null) return;
+                ensureMonthLoaded(shard, YearMonth.from(e.getDate()));
+                DayLog day = shard.getDayLog(e.getDate());
+                if (day == null) return;
+                for (FoodLog existing : day.getFoodLogs()) {
+                    if (existing != null && e.getTargetId() != null && e.getTargetId().equals(existing.getId())) {
+                        shard.removeFoodLog(day, existing);
+                        if (day.isEmpty()) shard.removeDayLog(e.getDate());
+                        shard.markMonthDirty(YearMonth.from(e.getDate()));
+                        return;
+                    }
+                }
+            }
+            case CUSTOM_FOOD_CREATED -> {
+                if (!(e.getPayload() instanceof CustomFood cf)) return;
+                if (customFoodIndex.containsKey(cf.getId())) return;
+                cf.setUserId(shard.getUserId());
+                shard.getCustomFoods().add(cf);
+                shard.getRecipes().put(cf);
+                indexCustomFood(cf);
+            }
+            case CUSTOM_FOOD_DELETED -> removeCustomFood(shard, e.getTargetId());
+            case CUSTOM_FOOD_COMPONENT_ADDED -> {
+                if (!(e.getPayload() instanceof Map.Entry<?, ?> c)) return;
+                if (c.getKey() instanceof String childId && c.getValue() instanceof Double servings) {
+                    shard.getRecipes().addComponent(e.getTargetId(), childId, servings);
+                }
+            }
+            case CUSTOM_FOOD_COMPONENT_REMOVED -> {
+                if (e.getPayload() instanceof String childId) shard.getRecipes().removeComponent(e.getTargetId(), childId);
+            }
+            case GOALS_REPLACED -> shard.setGoals(castList(e.getPayload()));
+            case GOAL_ADDED -> {
+                if (e.getPayload() instanceof Goal g) shard.addGoal(g);
+            }
+            default -> {
+                // Global types are handled by apply(JournalEntry).
+            }
+        }
+    }
+
+    /**
+     * Registers a new user by email, hashing and salting the password before journaling the account.
+     * The account gets a new random ID; the email is only its login and can be changed later.
      * Automatically logs the new user in.
      *
      * @param fullName the user's full name
-     * @param email    user email (used as ID)
+     * @param email    user email (must not belong to another account)
      * @param password plaintext password to hash
      * @return true if registration succeeded, false if email exists or invalid input
      */
@@ -276,20 +1260,18 @@ public class DataManager implements Serializable {
         String e = normalizeEmail(email);
         if (e.isEmpty()) return false;
         if (password == null || password.isBlank()) return false;
-        if (usersByEmail.containsKey(e)) return false;
+        if (userIdByEmail.containsKey(e)) return false;
 
         User u = new User();
-        u.setId(e);
+        u.setId(IdDictionary.newId());
+        u.setEmail(e);
         u.setName(fullName == null ? "" : fullName.trim());
-        usersByEmail.put(e, u);
 
         String salt = randomSaltHex(16);
         String hash = sha256Hex((salt + password).getBytes(StandardCharsets.UTF_8));
-        passwordSaltByEmail.put(e, salt);
-        passwordHashByEmail.put(e, hash);
 
-        activeUser = u;
-        saveAllData();
+        record(JournalEntry.accountSaved(u, salt, hash));
+        setActiveUser(u);
         return true;
     }
 
@@ -301,19 +1283,32 @@ public class DataManager implements Serializable {
      * @return the authenticated {@link User}, or null on failure
      */
     public User authenticate(String email, String password) {
-        String e = normalizeEmail(email);
-        if (!usersByEmail.containsKey(e)) return null;
-        String salt = passwordSaltByEmail.getOrDefault(e, "");
-        String expected = passwordHashByEmail.getOrDefault(e, "");
+        String id = userIdByEmail.get(normalizeEmail(email));
+        if (id == null || !usersById.containsKey(id)) return null;
+        String salt = passwordSaltById.getOrDefault(id, "");
+        String expected = passwordHashById.getOrDefault(id, "");
         String actual = sha256Hex((salt + (password == null ? "" : password)).getBytes(StandardCharsets.UTF_8));
         if (!expected.equals(actual)) return null;
 
-        activeUser = usersByEmail.get(e);
+        setActiveUser(usersById.get(id));
         return activeUser;
     }
 
     /**
-     * Updates a user's account email, migrating all relevant data and credentials.
+     * Updates the active user's display name and journals the updated account.
+     *
+     * @param name new display name
+     */
+    public void updateActiveUserName(String name) {
+        if (activeUser == null || name == null || name.isBlank()) return;
+        activeUser.setName(name.trim());
+        String id = activeUser.getId();
+        record(JournalEntry.accountSaved(activeUser, passwordSaltById.get(id), passwordHashById.get(id)));
+    }
+
+    /**
+     * Updates a user's account email. Only the login changes: the account keeps its ID, so its
+     * DayLogs, custom foods and saved files stay where they are.
      *
      * @param oldEmail current email
      * @param newEmail desired new email
@@ -323,112 +1318,330 @@ public class DataManager implements Serializable {
         String oldE = normalizeEmail(oldEmail);
         String newE = normalizeEmail(newEmail);
         if (oldE.isEmpty() || newE.isEmpty()) return false;
-        if (!usersByEmail.containsKey(oldE)) return false;
-        if (usersByEmail.containsKey(newE)) return false;
-
-        User u = usersByEmail.remove(oldE);
-        String salt = passwordSaltByEmail.remove(oldE);
-        String hash = passwordHashByEmail.remove(oldE);
-
-        u.setId(newE);
+        String id = userIdByEmail.get(oldE);
+        if (id == null || !usersById.containsKey(id)) return false;
+        if (userIdByEmail.containsKey(newE)) return false;
 
-        usersByEmail.put(newE, u);
-        passwordSaltByEmail.put(newE, salt);
-        passwordHashByEmail.put(newE, hash);
-
-        if (activeUser != null && oldE.equalsIgnoreCase(activeUser.getId())) activeUser = u;
-
-        for (CustomFood cf : customFoods) {
-            if (cf != null && oldE.equalsIgnoreCase(cf.getUserId())) cf.setUserId(newE);
-        }
-
-        saveAllData();
+        record(JournalEntry.accountEmailChanged(id, newE));
         return true;
     }
 
     /**
-     * Rebuilds the day log index for fast (userId, date) lookups.
+     * Points an account's login at a new email by updating the email index. Nothing keyed by the
+     * user's ID is touched.
+     *
+     * @param userId account ID
+     * @param newE   new (normalized) email
      */
-    private void rebuildDayLogIndex() {
-        if (dayLogIndex == null) dayLogIndex = new HashMap<>();
-        dayLogIndex.clear();
-
-        if (dayLogs == null) dayLogs = new ArrayList<>();
+    private void changeEmail(String userId, String newE) {
+        User u = (userId == null) ? null : usersById.get(userId);
+        if (u == null || newE == null) return;
+        String owner = userIdByEmail.get(newE);
+        if (owner != null && !owner.equals(userId)) return;
+
+        if (u.getEmail() != null) userIdByEmail.remove(normalizeEmail(u.getEmail()), userId);
+        userIdByEmail.put(newE, userId);
+        u.setEmail(newE);
+    }
 
-        for (DayLog dl : dayLogs) {
-            if (dl == null) continue;
-            if (dl.getDate() == null) continue;
-            String key = dayKey(dl.getUserId(), dl.getDate());
-            dayLogIndex.putIfAbsent(key, dl);
+    /**
+     * Moves a shard directory written under a user's email to the user's ID. Older versions kept
+     * shards under the email and moved them on every email change, so an account whose ID is an
+     * old email may find its shard under its current email instead.
+     *
+     * @param from directory named after the email
+     * @param to   directory named after the ID
+     */
+    private static void adoptDirectory(Path from, Path to) {
+        if (!Files.isDirectory(from) || Files.exists(to)) return;
+        try {
+            Files.move(from, to);
+        } catch (IOException ignored) {
         }
     }
 
     /**
-     * Retrieves the user's log for the given date, creating one if it does not exist.
+     * Retrieves the user's log for the given date without creating one. If nothing was logged
+     * that day, an empty DayLog that is not stored is returned, so screens can show zero totals
+     * without adding empty days to the saved data. DayLogs are only created by writes.
      *
      * @param date date of interest
-     * @return existing or newly created DayLog
+     * @return stored DayLog, or an empty unsaved one (null if no user is logged in)
      */
     public DayLog getDayLog(LocalDate date) {
         LocalDate d = (date == null) ? LocalDate.now() : date;
 
         if (activeUser == null) return null;
-        String userId = activeUser.getId();
+        return findDayLog(d).orElseGet(() -> new DayLog("", activeUser.getId(), d));
+    }
+
+    /**
+     * Looks up the user's stored log for the given date. The month containing the date is paged
+     * in if needed, but nothing is created.
+     *
+     * @param date date of interest
+     * @return the stored DayLog, or empty if there is none (or no user is logged in)
+     */
+    public Optional<DayLog> findDayLog(LocalDate date) {
+        UserShard shard = activeShard();
+        if (shard == null || date == null) return Optional.empty();
 
-        if (dayLogIndex == null) rebuildDayLogIndex();
+        ensureMonthLoaded(shard, YearMonth.from(date));
+        return Optional.ofNullable(shard.getDayLog(date));
+    }
 
-        String key = dayKey(userId, d);
-        DayLog existing = dayLogIndex.get(key);
-        if (existing != null) return existing;
+    /**
+     * Retrieves a user's log for the given date, creating one if it does not exist.
+     * The month containing the date is paged in first if it is not loaded yet.
+     *
+     * @param shard shard of the log's owner
+     * @param d date of interest
+     * @return existing or newly created DayLog
+     */
+    private DayLog getOrCreateDayLog(UserShard shard, LocalDate d) {
+        ensureMonthLoaded(shard, YearMonth.from(d));
 
-        if (dayLogs == null) dayLogs = new ArrayList<>();
+        DayLog existing = shard.getDayLog(d);
+        if (existing != null) return existing;
 
-        DayLog created = new DayLog(UUID.randomUUID().toString(), userId, d);
-        dayLogs.add(created);
-        dayLogIndex.put(key, created);
+        DayLog created = shard.putDayLog(new DayLog(IdDictionary.newId(), shard.getUserId(), d));
+        shard.markMonthDirty(YearMonth.from(d));
         return created;
     }
 
     /**
-     * Adds a food log entry to the specified date.
+     * Adds a food log entry to the active user's log for the specified date and journals the change.
      *
      * @param date date to attach the log to
      * @param log  food log entry
+     * @return false if nothing was added: no user is logged in, or the saved DayLogs of that
+     *         month could not be read
      */
-    public void addFoodLog(LocalDate date, FoodLog log) {
-        if (log == null) return;
-        DayLog day = getDayLog(date);
-        day.addFoodLog(log);
+    public boolean addFoodLog(LocalDate date, FoodLog log) {
+        if (log == null || activeUser == null) return false;
+        LocalDate d = (date == null) ? LocalDate.now() : date;
+        return record(JournalEntry.foodLogAdded(activeUser.getId(), d, log));
     }
 
     /**
-     * Returns the goal that is active today.
+     * Removes a food log entry from the active user's log for the specified date and journals the change.
+     *
+     * @param date date the log is attached to
+     * @param log  food log entry to remove
+     * @return false if nothing was changed: no user is logged in, or the saved DayLogs of that
+     *         month could not be read
+     */
+    public boolean removeFoodLog(LocalDate date, FoodLog log) {
+        if (log == null || activeUser == null) return false;
+        LocalDate d = (date == null) ? LocalDate.now() : date;
+        return record(JournalEntry.foodLogRemoved(activeUser.getId(), d, log.getId()));
+    }
+
+    /**
+     * Adds a goal to the active user's goal history and journals the change. The goal applies
+     * from its start date on; earlier goals are kept for the days they applied to.
+     *
+     * @param goal the new goal
+     * @return false if nothing was added: no user is logged in, or their saved data could not be
+     *         read
+     */
+    public boolean addGoal(Goal goal) {
+        if (activeUser == null || goal == null) return false;
+        return record(JournalEntry.goalAdded(activeUser.getId(), goal));
+    }
+
+    /**
+     * Returns the active user's goal that is active today.
      *
      * @return currently active goal, or null if none are active
      */
     public Goal getActiveGoal() {
-        LocalDate today = LocalDate.now();
-        for (Goal g : goals) {
-            if (g != null && g.isActive(today)) return g;
+        return getGoalOn(LocalDate.now());
+    }
+
+    /**
+     * Returns the active user's goal that applied on a date, looked up in the user's
+     * {@link GoalHistory} in O(log n).
+     *
+     * @param date date of interest
+     * @return the goal that applied that day, or null if none did
+     */
+    public Goal getGoalOn(LocalDate date) {
+        UserShard shard = activeShard();
+        return shard == null ? null : shard.getGoalHistory().goalOn(date);
+    }
+
+    /**
+     * Returns how many times the active user has logged a food. For a custom food, entries logged
+     * through its generated Food item are included. Answered from the shard's usage counts; only
+     * months stored before counts were kept are read from disk, and only once.
+     *
+     * @param foodOrCustomFoodId food or custom food ID
+     * @return number of FoodLogs referencing the food
+     */
+    public int countFoodLogs(String foodOrCustomFoodId) {
+        UserShard shard = activeShard();
+        if (shard == null || foodOrCustomFoodId == null) return 0;
+        ensureMonthsLoaded(shard, shard.getUncountedMonths());
+        int n = shard.countFoodLogs(foodOrCustomFoodId);
+        if (customFoodIndex.containsKey(foodOrCustomFoodId)) {
+            n += shard.countFoodLogs(CUSTOM_FOOD_ITEM_PREFIX + foodOrCustomFoodId);
         }
-        return null;
+        return n;
     }
 
     /**
-     * Resolves the display name of a food or custom food by ID.
+     * Resolves the display name of a catalog food, or of one of the active user's custom foods
+     * or their generated Food items, by ID. Each step is a hash lookup, so resolving every FoodLog
+     * of a day does not depend on the size of the catalog.
      *
      * @param foodOrCustomFoodId ID of the food entry
      * @return matching name, or empty string if not found
      */
     public String resolveFoodNameById(String foodOrCustomFoodId) {
         if (foodOrCustomFoodId == null) return "";
+
+        Food f = findFoodById(foodOrCustomFoodId);
+        if (f != null) return f.getName();
+
+        CustomFood c = findCustomFoodById(foodOrCustomFoodId);
+        if (c != null) return c.getName();
+
+        if (foodOrCustomFoodId.startsWith(CUSTOM_FOOD_ITEM_PREFIX)) {
+            Food generated = generatedFood(findCustomFoodById(foodOrCustomFoodId.substring(CUSTOM_FOOD_ITEM_PREFIX.length())));
+            if (generated != null) return generated.getName();
+        }
+        return "";
+    }
+
+    /**
+     * Finds a heap or catalog food by ID. Catalog foods are remembered once resolved, so foods
+     * that appear in the user's logs are only decoded from the catalog once.
+     *
+     * @param id food ID
+     * @return matching food, or null if not found
+     */
+    public Food findFoodById(String id) {
+        if (id == null) return null;
+        Food f = foodIndex.get(id);
+        if (f == null && catalog != null) {
+            f = catalog.findById(id);
+            if (f != null) foodIndex.put(id, f);
+        }
+        return f;
+    }
+
+    /**
+     * Finds a food that is saved with the global data file. Foods from the installed catalog are
+     * left out: the catalog may be missing on a later start, so custom foods store a full copy of
+     * those ingredients rather than a reference to them.
+     *
+     * @param id food ID
+     * @return matching stored food, or null if none exists or it comes from the catalog
+     */
+    private Food findStoredFood(String id) {
+        if (id == null || (catalog != null && catalog.indexOf(id) >= 0)) return null;
+        return foodIndex.get(id);
+    }
+
+    /**
+     * Finds one of the active user's custom foods by ID.
+     *
+     * @param id custom food ID
+     * @return matching custom food, or null if not found or owned by another user
+     */
+    public CustomFood findCustomFoodById(String id) {
+        if (id == null || activeUser == null) return null;
+        CustomFood c = customFoodIndex.get(id);
+        return (c != null && activeUser.getId().equals(c.getUserId())) ? c : null;
+    }
+
+    /**
+     * Rebuilds the food, custom food and search indexes (and drops every cached visible food list)
+     * from the catalog, the heap food list and the loaded shards. The catalog part of the search
+     * index is built on the index worker so the first search does not have to wait for it. Only
+     * the newest index is built there; one replaced before the worker gets to it is skipped.
+     */
+    private void rebuildFoodIndexes() {
+        foodIndex.clear();
+        customFoodIndex.clear();
+        customFoodItemsByUser.clear();
+        visibleFoodsByUser.clear();
+        searchIndex = new FoodSearchIndex(catalog);
         for (Food f : foods) {
-            if (f != null && foodOrCustomFoodId.equals(f.getId())) return f.getName();
+            if (f == null || f.getId() == null) continue;
+            foodIndex.putIfAbsent(f.getId(), f);
+            searchIndex.add(f);
         }
-        for (CustomFood c : customFoods) {
-            if (c != null && foodOrCustomFoodId.equals(c.getId())) return c.getName();
+        for (UserShard shard : shards.values()) {
+            for (CustomFood cf : shard.getCustomFoods()) indexCustomFood(cf);
         }
-        return "";
+
+        if (catalog != null && catalog.size() > 0) {
+            unpreparedIndex.set(searchIndex);
+            indexWorker.execute(() -> {
+                FoodSearchIndex index = unpreparedIndex.getAndSet(null);
+                if (index != null) index.prepare();
+            });
+        }
+    }
+
+    /**
+     * Adds a loaded custom food, and its generated Food item, to the lookup and search indexes
+     * and to its owner's food items. Its ingredients are pointed at the shared foods of the
+     * food index.
+     *
+     * @param cf custom food
+     */
+    private void indexCustomFood(CustomFood cf) {
+        if (cf == null || cf.getId() == null) return;
+        customFoodIndex.put(cf.getId(), cf);
+        cf.bindFoods(this::findFoodById);
+
+        Food generated = generatedFood(cf);
+        if (generated == null) return;
+        searchIndex.add(generated);
+        String owner = cf.getUserId() == null ? "" : cf.getUserId();
+        customFoodItemsByUser.computeIfAbsent(owner, k -> new ArrayList<>()).add(generated);
+        visibleFoodsByUser.remove(owner);
+    }
+
+    /**
+     * Searches the foods visible to the active user. Every word of the query is matched as a
+     * word prefix against name, brand and category, and all words must match; results are ranked
+     * best first. If nothing matches (typically a misspelling such as "brocoli"), the closest
+     * foods by spelling are returned instead. A blank query returns every visible food.
+     *
+     * @param query search text
+     * @return matching foods, best first
+     */
+    public List<Food> searchFoodsForActiveUser(String query) {
+        if (query == null || query.isBlank()) return getFoodsForActiveUser();
+
+        Predicate<Food> visible = f -> {
+            String id = f.getId();
+            return !id.startsWith(CUSTOM_FOOD_ITEM_PREFIX) || findCustomFoodById(id.substring(CUSTOM_FOOD_ITEM_PREFIX.length())) != null;
+        };
+        List<Food> found = searchIndex.search(query, SEARCH_RESULT_LIMIT, visible);
+        if (!found.isEmpty()) return found;
+        return searchIndex.searchFuzzy(query, FUZZY_RESULT_LIMIT, TimeUnit.MILLISECONDS.toNanos(FUZZY_TIME_BUDGET_MILLIS), visible);
+    }
+
+    /**
+     * Returns the Food item generated for a CustomFood, which lets it be searched and logged
+     * like any other food.
+     *
+     * @param cf custom food
+     * @return its generated Food ingredient, or null if it has none
+     */
+    private static Food generatedFood(CustomFood cf) {
+        if (cf == null) return null;
+        String generatedFoodId = CUSTOM_FOOD_ITEM_PREFIX + cf.getId();
+        for (var ingredient : cf.getIngredients()) {
+            Food f = ingredient == null ? null : ingredient.getKey();
+            if (f != null && generatedFoodId.equals(f.getId())) return f;
+        }
+        return null;
     }
 
     /**
@@ -446,9 +1659,12 @@ public class DataManager implements Serializable {
     public FoodLog createFoodLogFromFood(String id, Food food, FoodLog.MealType mealType, double servings, LocalDateTime timestamp, String notes) {
         FoodLog log = new FoodLog(id, food == null ? "" : food.getId(), mealType, servings, timestamp, notes);
         if (food != null) {
-            double calories = food.getCaloriesForServings(servings);
-            Map<String, Double> m = food.getMacrosForServings(servings);
-            log.setComputedTotals(calories, m.getOrDefault("proteinG", 0.0), m.getOrDefault("carbsG", 0.0), m.getOrDefault("fatG", 0.0));
+            CustomFood recipe = (food.getId() != null && food.getId().startsWith(CUSTOM_FOOD_ITEM_PREFIX))
+                    ? findCustomFoodById(food.getId().substring(CUSTOM_FOOD_ITEM_PREFIX.length()))
+                    : null;
+            log.setComputedTotals(recipe == null
+                    ? food.getNutrientsForServings(servings)
+                    : recipeNutrients(recipe).scale(Math.max(0.0, servings)));
         }
         return log;
     }
@@ -468,41 +1684,178 @@ public class DataManager implements Serializable {
     public FoodLog createFoodLogFromCustomFood(String id, CustomFood customFood, FoodLog.MealType mealType, double servings, LocalDateTime timestamp, String notes) {
         FoodLog log = new FoodLog(id, customFood == null ? "" : customFood.getId(), mealType, servings, timestamp, notes);
         if (customFood != null) {
-            double calories = customFood.computerCalories() * Math.max(0.0, servings);
-            Map<String, Double> m = customFood.computerMacros();
-            double s = Math.max(0.0, servings);
-            log.setComputedTotals(
-                    calories,
-                    m.getOrDefault("proteinG", 0.0) * s,
-                    m.getOrDefault("carbsG", 0.0) * s,
-                    m.getOrDefault("fatG", 0.0) * s
-            );
+            log.setComputedTotals(recipeNutrients(customFood).scale(Math.max(0.0, servings)));
         }
         return log;
     }
 
     /**
-     * Deletes a CustomFood by ID and removes all associated generated Food items
-     * and FoodLog references.
+     * Returns a custom food's per-serving totals, including the custom foods it uses, from its
+     * owner's recipe graph when the owner's shard is loaded.
+     *
+     * @param cf custom food
+     * @return per-serving totals
+     */
+    private Macros recipeNutrients(CustomFood cf) {
+        UserShard shard = cf.getUserId() == null ? null : shards.get(cf.getUserId());
+        if (shard == null || !shard.getRecipes().contains(cf.getId())) return cf.computeNutrients();
+        return shard.getRecipes().getNutrients(cf.getId());
+    }
+
+    /**
+     * Returns the per-serving totals of every custom food of the active user, including the
+     * custom foods each one uses. Totals are memoized in the user's {@link RecipeGraph}, so only
+     * recipes affected by an edit since the last call are recomputed.
+     *
+     * @return totals by custom food ID (empty if no user is logged in)
+     */
+    public Map<String, Macros> getCustomFoodNutrients() {
+        UserShard shard = activeShard();
+        return shard == null ? Map.of() : shard.getRecipes().getAllNutrients();
+    }
+
+    /**
+     * Returns whether one of the active user's custom foods can be used in another, that is,
+     * whether both exist and the recipe would not end up containing itself.
+     *
+     * @param customFoodId ID of the recipe to extend
+     * @param componentId  ID of the custom food to use in it
+     * @return true if {@link #addCustomFoodComponent} would accept the pair
+     */
+    public boolean canAddCustomFoodComponent(String customFoodId, String componentId) {
+        UserShard shard = activeShard();
+        return shard != null && shard.getRecipes().canAddComponent(customFoodId, componentId);
+    }
+
+    /**
+     * Adds servings of one of the active user's custom foods to another of their custom foods,
+     * and journals the change.
+     *
+     * @param customFoodId ID of the recipe to extend
+     * @param componentId  ID of the custom food to use in it
+     * @param servings     number of servings (must be positive)
+     * @return false if either food is unknown, servings is not positive, or the recipe would
+     *         end up containing itself, or the user's saved data could not be read
+     */
+    public boolean addCustomFoodComponent(String customFoodId, String componentId, double servings) {
+        UserShard shard = activeShard();
+        if (shard == null || !(servings > 0)) return false;
+        if (!canAddCustomFoodComponent(customFoodId, componentId)) return false;
+
+        return record(JournalEntry.customFoodComponentAdded(shard.getUserId(), customFoodId, componentId, servings));
+    }
+
+    /**
+     * Removes a custom food from one of the active user's recipes and journals the change.
+     *
+     * @param customFoodId ID of the recipe
+     * @param componentId  ID of the component to remove
+     * @return true if the recipe used that component and the change was made
+     */
+    public boolean removeCustomFoodComponent(String customFoodId, String componentId) {
+        UserShard shard = activeShard();
+        CustomFood cf = findCustomFoodById(customFoodId);
+        if (shard == null || cf == null || componentId == null) return false;
+        if (cf.getComponents().stream().noneMatch(c -> c != null && componentId.equals(c.getKey()))) return false;
+
+        return record(JournalEntry.customFoodComponentRemoved(shard.getUserId(), customFoodId, componentId));
+    }
+
+    /**
+     * Creates a single-serving CustomFood for the active user, together with the generated
+     * {@link Food} item that lets it be searched and logged like any other food, and journals it.
+     *
+     * @param name     display name
+     * @param calories calories per serving
+     * @param proteinG protein (g) per serving
+     * @param carbsG   carbohydrates (g) per serving
+     * @param fatG     fat (g) per serving
+     * @return the created custom food, or null if no user is logged in or their saved data
+     *         could not be read
+     */
+    public CustomFood createCustomFood(String name, double calories, double proteinG, double carbsG, double fatG) {
+        if (activeUser == null) return null;
+
+        String cfId = IdDictionary.newId();
+        CustomFood cf = new CustomFood(cfId, activeUser.getId(), name, "");
+        Food perServing = new Food(CUSTOM_FOOD_ITEM_PREFIX + cfId, name, "Custom", "Custom", 1.0, calories, proteinG, carbsG, fatG);
+        cf.addIngredient(perServing, 1.0);
+
+        return record(JournalEntry.customFoodCreated(cf)) ? cf : null;
+    }
+
+    /**
+     * Deletes one of the active user's CustomFoods by ID, together with its generated Food item
+     * and all FoodLog references.
      *
      * @param customFoodId ID of the custom food to delete
-     * @return true if any data was removed
+     * @return true if any data was removed; false if nothing matched, or a month with logs
+     *         referencing it could not be read
      */
     public boolean deleteCustomFoodById(String customFoodId) {
         if (customFoodId == null || customFoodId.isBlank()) return false;
+        UserShard shard = activeShard();
+        if (shard == null) return false;
+
+        JournalEntry entry = JournalEntry.customFoodDeleted(shard.getUserId(), customFoodId);
+        if (!loadMonthsOf(shard, entry)) return false;
+        boolean removed = removeCustomFood(shard, customFoodId);
+        if (removed) appendToJournal(entry);
+        return removed;
+    }
 
-        String generatedFoodId = "cf_item_" + customFoodId;
-
-        boolean removedCustom = customFoods.removeIf(cf -> cf != null && customFoodId.equals(cf.getId()));
-        boolean removedGeneratedFood = foods.removeIf(f -> f != null && generatedFoodId.equals(f.getId()));
+    /**
+     * Removes a CustomFood (and with it its generated Food item) from a shard, along with any
+     * FoodLogs in that shard referencing either. Recipes that used it as a component lose it.
+     * Only the months whose usage counts include one of the two IDs are paged in, and only the
+     * referencing entries are visited.
+     *
+     * @param shard shard owning the custom food
+     * @param customFoodId ID of the custom food to remove
+     * @return true if the custom food was removed
+     */
+    private boolean removeCustomFood(UserShard shard, String customFoodId) {
+        if (customFoodId == null) return false;
+
+        String generatedFoodId = CUSTOM_FOOD_ITEM_PREFIX + customFoodId;
+
+        boolean removedCustom = shard.getCustomFoods().removeIf(cf -> cf != null && customFoodId.equals(cf.getId()));
+        if (removedCustom) {
+            shard.getRecipes().remove(customFoodId);
+            customFoodIndex.remove(customFoodId);
+            searchIndex.remove(generatedFoodId);
+            List<Food> items = customFoodItemsByUser.get(shard.getUserId());
+            if (items != null) items.removeIf(f -> generatedFoodId.equals(f.getId()));
+            visibleFoodsByUser.remove(shard.getUserId());
+        }
 
-        for (DayLog dl : dayLogs) {
-            if (dl == null) continue;
-            dl.getFoodLogs().removeIf(fl -> fl != null && (customFoodId.equals(fl.getCustomFoodId()) || generatedFoodId.equals(fl.getCustomFoodId())));
+        for (String foodId : List.of(customFoodId, generatedFoodId)) {
+            ensureMonthsLoaded(shard, shard.getMonthsUsing(foodId));
+            for (Map.Entry<FoodLog, DayLog> e : new ArrayList<>(shard.getFoodLogsOf(foodId).entrySet())) {
+                DayLog dl = e.getValue();
+                shard.removeFoodLog(dl, e.getKey());
+                if (dl.isEmpty()) shard.removeDayLog(dl.getDate());
+                shard.markMonthDirty(YearMonth.from(dl.getDate()));
+            }
         }
 
-        saveAllData();
-        return removedCustom || removedGeneratedFood;
+        return removedCustom;
+    }
+
+    /**
+     * Applies a mutation to the in-memory model and appends it to the journal. A change to a
+     * month whose saved DayLogs could not be read, or to a shard that could not be read at all, is
+     * refused, so the saved data stays as it is.
+     *
+     * @param entry mutation to apply and persist
+     * @return true if the mutation was applied, false if it was refused
+     */
+    private boolean record(JournalEntry entry) {
+        if (entry.getType().isUserScoped() && entry.getUserId() != null
+                && !loadMonthsOf(shardFor(resolveUserId(entry.getUserId())), entry)) return false;
+        apply(entry);
+        appendToJournal(entry);
+        return true;
     }
 
     /** Safely casts an object to a List. */
@@ -512,19 +1865,14 @@ public class DataManager implements Serializable {
         return new ArrayList<>();
     }
 
-    /** Safely casts an object to a Map. */
-    @SuppressWarnings("unchecked")
-    private static <K, V> Map<K, V> castMap(Object o) {
-        if (o instanceof Map<?, ?> m) return (Map<K, V>) m;
-        return new HashMap<>();
-    }
-
     /**
-     * Seeds initial default foods if the food list is empty. Ensures that first-time users have data to interact with.
+     * Seeds initial default foods if the food list is empty and no food catalog is installed.
+     * Ensures that first-time users have data to interact with.
      */
     private void seedDefaultsIfNeeded() {
         if (foods == null) foods = new ArrayList<>();
         if (!foods.isEmpty()) return;
+        if (catalog != null && catalog.size() > 0) return;
 
         foods.add(new Food("f1", "Chicken Breast", "Generic", "Protein", 1.0, 165, 31, 0, 3.6));
         foods.add(new Food("f2", "Brown Rice", "Generic", "Carb", 1.0, 218, 4.5, 45.8, 1.6));
@@ -560,6 +1908,3 @@ public class DataManager implements Serializable {
         return sb.toString();
     }
 }
-
-
-
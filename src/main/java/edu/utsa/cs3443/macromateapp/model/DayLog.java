@@ -1,18 +1,40 @@
 package edu.utsa.cs3443.macromateapp.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * Represents a daily nutrition log for a specific user and date.
  * A {@code DayLog} stores all {@link FoodLog} entries recorded on that date
  * and computes aggregate totals such as calories, protein, carbs, and fat.
  *
+ * <p>Entries are kept in one bucket per {@link FoodLog.MealType}, each ordered by timestamp, so
+ * a meal's entries are read directly with {@link #getFoodLogs(FoodLog.MealType)} without
+ * regrouping the day. Entries with no meal type are filed (and totaled) as
+ * {@link FoodLog.MealType#SNACK}.</p>
+ *
+ * <p>Totals are kept up to date as entries are added and removed: each change applies
+ * its difference to running sums for the day and for the entry's {@link FoodLog.MealType}, so
+ * reading totals never walks the entries. To keep floating-point drift from building up, the
+ * sums are recomputed exactly every {@value #RESUM_INTERVAL} changes and whenever the day
+ * becomes empty.</p>
+ *
  * <p>This class is stored persistently through {@link DataManager} and is
  * automatically created whenever a user logs food for a new date.</p>
  */
@@ -21,14 +43,48 @@ public class DayLog implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /** Number of incremental updates after which the running totals are recomputed exactly. */
+    private static final int RESUM_INTERVAL = 64;
+
+    /** Values tracked per row of {@link #running}: calories, protein, carbs, fat. */
+    private static final int NUTRIENTS = 4;
+
+    /** Row of {@link #running} holding the whole-day totals (after one row per meal type). */
+    private static final int DAY_ROW = FoodLog.MealType.values().length;
+
+    /**
+     * Order of entries within a meal bucket: by timestamp, entries without one last. Compares the
+     * stored timestamp columns directly, so inserting does not build {@code LocalDateTime} values.
+     */
+    private static final Comparator<FoodLog> BY_TIME = FoodLog::compareTimestamp;
+
+    /**
+     * Serialized form, unchanged from when entries were held in a single list, so days written
+     * by older versions can still be read.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("date", LocalDate.class),
+            new ObjectStreamField("foodLogs", List.class),
+            new ObjectStreamField("userId", String.class),
+            new ObjectStreamField("totalCalories", int.class),
+            new ObjectStreamField("totalProteinG", double.class),
+            new ObjectStreamField("totalCarbsG", double.class),
+            new ObjectStreamField("totalFatG", double.class),
+    };
+
     /** Unique identifier for this DayLog. */
     private String id;
 
     /** The date associated with this log. */
     private LocalDate date;
 
-    /** List of all food entries consumed on this date. */
-    private List<FoodLog> foodLogs;
+    /** Food entries consumed on this date, one timestamp-ordered list per meal type. */
+    private EnumMap<FoodLog.MealType, List<FoodLog>> meals;
+
+    /** Number of entries across all meal buckets. */
+    private int size;
 
     /** ID of the user this log belongs to. */
     private String userId;
@@ -45,6 +101,12 @@ public class DayLog implements Serializable {
     /** Computed total fats (grams) for the day. */
     private double totalFatG;
 
+    /** Unrounded running totals, {@link #NUTRIENTS} values per meal type followed by the day row. */
+    private double[] running;
+
+    /** Incremental updates applied since the running totals were last recomputed exactly. */
+    private int updatesSinceResum;
+
     /**
      * Default constructor used for serialization. Creates a log for the current date with no user assigned.
      */
@@ -73,7 +135,18 @@ public class DayLog implements Serializable {
         this.id = id;
         this.userId = (userId == null) ? "" : userId;
         this.date = date;
-        this.foodLogs = new ArrayList<>();
+        initMeals();
+    }
+
+    /**
+     * Creates empty meal buckets and zeroed totals.
+     */
+    private void initMeals() {
+        meals = new EnumMap<>(FoodLog.MealType.class);
+        for (FoodLog.MealType mt : FoodLog.MealType.values()) meals.put(mt, new ArrayList<>());
+        size = 0;
+        running = new double[(DAY_ROW + 1) * NUTRIENTS];
+        updatesSinceResum = 0;
     }
 
     /**
@@ -95,12 +168,57 @@ public class DayLog implements Serializable {
     }
 
     /**
-     * Returns list of food entries by date.
+     * Returns list of food entries by date, grouped by meal type and ordered by time within each
+     * meal. The list is a read-only view; entries are added and removed through
+     * {@link DataManager}, which keeps the buckets, the totals and the shard's indexes current.
      *
      * @return list of all food entries for this date
      */
     public List<FoodLog> getFoodLogs() {
-        return foodLogs;
+        return new AllFoodLogs();
+    }
+
+    /**
+     * Returns the entries of one meal, ordered by timestamp. Entries without a meal type are
+     * listed under snacks.
+     *
+     * @param mealType meal to list
+     * @return read-only view of that meal's entries
+     */
+    public List<FoodLog> getFoodLogs(FoodLog.MealType mealType) {
+        return Collections.unmodifiableList(bucket(mealType));
+    }
+
+    /**
+     * Returns the entries whose time of day falls in {@code [from, to)}, across all meals and in
+     * timestamp order. Entries without a timestamp are never included.
+     *
+     * @param from start time (inclusive)
+     * @param to end time (exclusive)
+     * @return matching entries
+     */
+    public List<FoodLog> getFoodLogsBetween(LocalTime from, LocalTime to) {
+        List<FoodLog> out = new ArrayList<>();
+        if (from == null || to == null || !from.isBefore(to)) return out;
+        for (List<FoodLog> b : meals.values()) {
+            for (FoodLog log : b) {
+                LocalDateTime ts = log.getTimestamp();
+                if (ts == null) break;
+                LocalTime t = ts.toLocalTime();
+                if (!t.isBefore(from) && t.isBefore(to)) out.add(log);
+            }
+        }
+        out.sort(BY_TIME);
+        return out;
+    }
+
+    /**
+     * Returns whether this day has no entries.
+     *
+     * @return true if no food has been logged
+     */
+    public boolean isEmpty() {
+        return size == 0;
     }
 
     /**
@@ -172,46 +290,192 @@ public class DayLog implements Serializable {
     public void setUserId(String userId) { this.userId = (userId == null) ? "" : userId; }
 
     /**
-     * Adds a food entry to this day and recomputes aggregate totals.
+     * Adds a food entry to its meal bucket, in timestamp order, and adds its nutrients to the
+     * running totals. Only {@link UserShard} and the codec call this, so the shard's indexes
+     * always see the change.
      *
      * @param log the food entry to add
      */
-    public void addFoodLog(FoodLog log) {
+    void addFoodLog(FoodLog log) {
         if (log == null) return;
-        foodLogs.add(log);
-        computeTotals();
+        insert(log);
+        applyDelta(log, 1.0);
     }
 
     /**
-     * Removes a food entry from this day and recomputes totals.
+     * Removes a food entry from this day and subtracts its nutrients from the running totals.
+     * Only {@link UserShard} calls this, so the shard's indexes always see the change.
      *
      * @param log food entry to remove
      */
-    public void removeFoodLog(FoodLog log) {
+    void removeFoodLog(FoodLog log) {
         if (log == null) return;
-        foodLogs.remove(log);
-        computeTotals();
+        if (bucket(log.getMealType()).remove(log) || removeFromAnyBucket(log)) {
+            size--;
+            applyDelta(log, -1.0);
+        }
+    }
+
+    /**
+     * Recalculates daily and per-meal totals exactly from all tracked {@link FoodLog} entries,
+     * re-filing any entry whose meal type or timestamp was changed in place. The buckets and
+     * totals are already kept current as entries are added and removed, so this is only needed
+     * after a FoodLog held by this day has been modified directly.
+     */
+    void computeTotals() {
+        List<FoodLog> all = new ArrayList<>(getFoodLogs());
+        initMeals();
+        for (FoodLog log : all) {
+            insert(log);
+            add(running, row(log), log, 1.0);
+            add(running, DAY_ROW, log, 1.0);
+        }
+        syncDayTotals();
+    }
+
+    /**
+     * Recomputes the running totals exactly from the buckets.
+     */
+    private void resum() {
+        double[] r = new double[(DAY_ROW + 1) * NUTRIENTS];
+        for (FoodLog.MealType mt : FoodLog.MealType.values()) {
+            for (FoodLog log : meals.get(mt)) {
+                add(r, mt.ordinal(), log, 1.0);
+                add(r, DAY_ROW, log, 1.0);
+            }
+        }
+        running = r;
+        updatesSinceResum = 0;
+        syncDayTotals();
     }
 
     /**
-     * Recalculates daily totals (calories, protein, carbs, fat) based on all tracked {@link FoodLog} entries.
+     * Returns the bucket holding a meal type's entries.
+     *
+     * @param mealType meal type (null means snack)
+     * @return mutable bucket
      */
-    public void computeTotals() {
-        double cals = 0.0, p = 0.0, c = 0.0, f = 0.0;
+    private List<FoodLog> bucket(FoodLog.MealType mealType) {
+        return meals.get(mealType == null ? FoodLog.MealType.SNACK : mealType);
+    }
 
-        for (FoodLog log : foodLogs) {
-            if (log == null) continue;
-            cals += log.gtCalories();
-            Map<String, Double> m = log.getMacros();
-            p += m.getOrDefault("proteinG", 0.0);
-            c += m.getOrDefault("carbsG", 0.0);
-            f += m.getOrDefault("fatG", 0.0);
+    /**
+     * Inserts an entry into its bucket after any entries with the same or an earlier timestamp.
+     *
+     * @param log entry to insert
+     */
+    private void insert(FoodLog log) {
+        List<FoodLog> b = bucket(log.getMealType());
+        int lo = 0;
+        int hi = b.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (BY_TIME.compare(b.get(mid), log) <= 0) lo = mid + 1;
+            else hi = mid;
         }
+        b.add(lo, log);
+        size++;
+    }
 
-        totalCalories = (int) Math.round(cals);
-        totalProteinG = p;
-        totalCarbsG = c;
-        totalFatG = f;
+    /**
+     * Removes an entry that is no longer in the bucket for its meal type, which happens when its
+     * meal type was changed in place.
+     *
+     * @param log entry to remove
+     * @return true if the entry was found
+     */
+    private boolean removeFromAnyBucket(FoodLog log) {
+        for (List<FoodLog> b : meals.values()) {
+            if (b.remove(log)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds (or with a negative sign, subtracts) one entry's nutrients to the running totals, and
+     * recomputes exactly when the day empties or enough updates have accumulated.
+     *
+     * @param log entry that was added or removed
+     * @param sign {@code 1.0} for an addition, {@code -1.0} for a removal
+     */
+    private void applyDelta(FoodLog log, double sign) {
+        if (size == 0 || ++updatesSinceResum >= RESUM_INTERVAL) {
+            resum();
+            return;
+        }
+        add(running, row(log), log, sign);
+        add(running, DAY_ROW, log, sign);
+        syncDayTotals();
+    }
+
+    /**
+     * Adds an entry's nutrients, multiplied by a sign, to one row of a totals array.
+     *
+     * @param r totals array
+     * @param row row to update
+     * @param log entry whose nutrients are added
+     * @param sign multiplier for the entry's nutrients
+     */
+    private static void add(double[] r, int row, FoodLog log, double sign) {
+        Macros m = log.getNutrients();
+        int at = row * NUTRIENTS;
+        r[at] += sign * m.getCalories();
+        r[at + 1] += sign * m.getProteinG();
+        r[at + 2] += sign * m.getCarbsG();
+        r[at + 3] += sign * m.getFatG();
+    }
+
+    /**
+     * Returns the totals row an entry counts toward.
+     *
+     * @param log entry
+     * @return row index of the entry's meal type
+     */
+    private static int row(FoodLog log) {
+        FoodLog.MealType mt = log.getMealType();
+        return (mt == null ? FoodLog.MealType.SNACK : mt).ordinal();
+    }
+
+    /**
+     * Copies the running day row into the stored total fields.
+     */
+    private void syncDayTotals() {
+        int at = DAY_ROW * NUTRIENTS;
+        totalCalories = (int) Math.round(running[at]);
+        totalProteinG = running[at + 1];
+        totalCarbsG = running[at + 2];
+        totalFatG = running[at + 3];
+    }
+
+    /**
+     * Returns one row of the running totals as a nutrient vector.
+     *
+     * @param row row index
+     * @return totals for that row
+     */
+    private Macros rowTotals(int row) {
+        int at = row * NUTRIENTS;
+        return new Macros(running[at], running[at + 1], running[at + 2], running[at + 3]);
+    }
+
+    /**
+     * Returns the totals for one meal of the day. Entries without a meal type count as snacks.
+     *
+     * @param mealType meal to total
+     * @return nutrient totals for that meal
+     */
+    public Macros getMealTotals(FoodLog.MealType mealType) {
+        return rowTotals((mealType == null ? FoodLog.MealType.SNACK : mealType).ordinal());
+    }
+
+    /**
+     * Returns the daily totals as a nutrient vector. Unlike {@link #getTotalCalories()},
+     * calories are not rounded.
+     *
+     * @return daily nutrient totals
+     */
+    public Macros getTotalNutrients() {
+        return rowTotals(DAY_ROW);
     }
 
     /**
@@ -236,5 +500,69 @@ public class DayLog implements Serializable {
         out.put("fatG", totalFatG);
         return out;
     }
-}
 
+    /**
+     * Writes this day in its original serialized form, with all entries in a single list.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", id);
+        f.put("date", date);
+        f.put("foodLogs", new ArrayList<>(getFoodLogs()));
+        f.put("userId", userId);
+        f.put("totalCalories", totalCalories);
+        f.put("totalProteinG", totalProteinG);
+        f.put("totalCarbsG", totalCarbsG);
+        f.put("totalFatG", totalFatG);
+        out.writeFields();
+    }
+
+    /**
+     * Reads a day written in the serialized form, filing its entries into meal buckets and
+     * recomputing its totals.
+     *
+     * @param in stream to read from
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a stored class cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        id = (String) f.get("id", null);
+        date = (LocalDate) f.get("date", null);
+        String uid = (String) f.get("userId", null);
+        userId = uid == null ? "" : uid;
+        initMeals();
+        if (f.get("foodLogs", null) instanceof List<?> logs) {
+            for (Object o : logs) {
+                if (o instanceof FoodLog log) insert(log);
+            }
+        }
+        resum();
+    }
+
+    /**
+     * Read-only view of every entry, meal by meal.
+     */
+    private class AllFoodLogs extends AbstractList<FoodLog> implements RandomAccess {
+
+        @Override
+        public FoodLog get(int index) {
+            int i = index;
+            for (List<FoodLog> b : meals.values()) {
+                if (i < b.size()) return b.get(i);
+                i -= b.size();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package edu.utsa.cs3443.macromateapp.model;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a standard food item in the MacroMate database. A {@code Food}
@@ -46,6 +48,12 @@ public class Food implements Serializable {
     /** Fat in grams per serving. */
     private double fatG;
 
+    /** Number of edits to the serving size or nutrient values, used to detect stale totals that include this food. */
+    private transient int revision;
+
+    /** Custom foods in a {@link RecipeGraph} that use this food, told when it is edited (null until there is one). */
+    private transient Set<CustomFood> usedIn;
+
     /**
      * Default constructor for serialization.
      */
@@ -201,6 +209,7 @@ public class Food implements Serializable {
      */
     public void setServingSize(double servingSize) {
         this.servingSize = servingSize;
+        edited();
     }
 
     /**
@@ -210,6 +219,7 @@ public class Food implements Serializable {
      */
     public void setCalories(double calories) {
         this.calories = calories;
+        edited();
     }
 
     /**
@@ -219,6 +229,7 @@ public class Food implements Serializable {
      */
     public void setProteinG(double proteinG) {
         this.proteinG = proteinG;
+        edited();
     }
 
     /**
@@ -228,6 +239,7 @@ public class Food implements Serializable {
      */
     public void setCarbsG(double carbsG) {
         this.carbsG = carbsG;
+        edited();
     }
 
     /**
@@ -237,6 +249,47 @@ public class Food implements Serializable {
      */
     public void setFatG(double fatG) {
         this.fatG = fatG;
+        edited();
+    }
+
+    /**
+     * Returns a counter that changes whenever the serving size or a nutrient value is edited.
+     * Totals computed from this food (such as a {@link CustomFood}'s) compare it to know when
+     * they must be recomputed.
+     *
+     * @return edit counter (starts at 0 for a newly created or loaded food)
+     */
+    int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Registers a custom food to be told when this food is edited.
+     *
+     * @param cf custom food using this food as an ingredient
+     */
+    void addUser(CustomFood cf) {
+        if (usedIn == null) usedIn = new HashSet<>();
+        usedIn.add(cf);
+    }
+
+    /**
+     * Stops telling a custom food about edits to this food.
+     *
+     * @param cf custom food that no longer uses this food
+     */
+    void removeUser(CustomFood cf) {
+        if (usedIn != null) usedIn.remove(cf);
+    }
+
+    /**
+     * Records an edit to the serving size or a nutrient value and tells the custom foods using
+     * this food, so the totals that include it are dropped right away.
+     */
+    private void edited() {
+        revision++;
+        if (usedIn == null) return;
+        for (CustomFood cf : List.copyOf(usedIn)) cf.ingredientEdited();
     }
 
     /**
@@ -249,6 +302,17 @@ public class Food implements Serializable {
         return calories * Math.max(0.0, servings);
     }
 
+    /**
+     * Computes calories and macronutrients for the specified number of servings.
+     *
+     * @param servings number of servings consumed (negative values count as zero)
+     * @return nutrient amounts for the given serving amount
+     */
+    public Macros getNutrientsForServings(double servings) {
+        double s = Math.max(0.0, servings);
+        return new Macros(calories * s, proteinG * s, carbsG * s, fatG * s);
+    }
+
     /**
      * Computes macronutrients for the specified number of servings.
      *
@@ -256,12 +320,7 @@ public class Food implements Serializable {
      * @return map containing "proteinG", "carbsG", and "fatG"
      */
     public Map<String, Double> getMacrosForServings(double servings) {
-        double s = Math.max(0.0, servings);
-        Map<String, Double> out = new LinkedHashMap<>();
-        out.put("proteinG", proteinG * s);
-        out.put("carbsG", carbsG * s);
-        out.put("fatG", fatG * s);
-        return out;
+        return getNutrientsForServings(servings).toMap();
     }
 
     /**
@@ -277,6 +336,17 @@ public class Food implements Serializable {
         return getCaloriesForServings(servings);
     }
 
+    /**
+     * Computes calories and macronutrients for a given gram amount. Converts grams -> servings -> totals.
+     *
+     * @param grams weight in grams
+     * @return nutrient amounts for the given weight, or {@link Macros#ZERO} if the serving size is not positive
+     */
+    public Macros getNutrientsForGrams(double grams) {
+        if (servingSize <= 0.0) return Macros.ZERO;
+        return getNutrientsForServings(grams / servingSize);
+    }
+
     /**
      * Computes macronutrients for a given gram amount. Converts grams -> servings -> macro totals.
      *
@@ -284,16 +354,7 @@ public class Food implements Serializable {
      * @return map containing "proteinG", "carbsG", and "fatG"
      */
     public Map<String, Double> getMacrosForGrams(Double grams) {
-        double g = grams == null ? 0.0 : grams;
-        if (servingSize <= 0.0) {
-            Map<String, Double> out = new LinkedHashMap<>();
-            out.put("proteinG", 0.0);
-            out.put("carbsG", 0.0);
-            out.put("fatG", 0.0);
-            return out;
-        }
-        double servings = g / servingSize;
-        return getMacrosForServings(servings);
+        return getNutrientsForGrams(grams == null ? 0.0 : grams).toMap();
     }
 
     /**
@@ -0,0 +1,355 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only food database stored in a compact binary file and memory-mapped with
+ * {@link FileChannel#map}. Opening a catalog costs the same no matter how many items it holds:
+ * nothing is parsed up front, and a {@link Food} object is only created when an item is actually
+ * requested (for example a visible list cell or a food being logged).
+ *
+ * <p>File layout (big-endian):</p>
+ * <ul>
+ *     <li>Header: magic ({@code "MMFC"}), version, item count, offset of the record table,
+ *     and offset of the string table.</li>
+ *     <li>Record table: one fixed-width record per item, sorted by ID, holding offsets of the
+ *     item's ID, name, brand and category strings followed by serving size, calories, protein,
+ *     carbs and fat as 32-bit floats.</li>
+ *     <li>String table: each distinct string once, as an unsigned 16-bit length and its UTF-8 bytes.</li>
+ * </ul>
+ *
+ * <p>Because records are sorted by ID, lookups by ID are a binary search over the mapping.
+ * A single mapping is limited to 2 GiB, which is far more than a full nutrition database needs.</p>
+ */
+public class FoodCatalog {
+
+    /** Magic number identifying a catalog file ("MMFC"). */
+    private static final int MAGIC = 0x4D4D4643;
+
+    /** Catalog format version written by this class. */
+    private static final int VERSION = 1;
+
+    /** Header size: magic, version, reserved, count, reserved, records offset, strings offset. */
+    private static final int HEADER_BYTES = 32;
+
+    /** Size of one item record. */
+    private static final int RECORD_BYTES = 36;
+
+    /** String offset stored for a null string. */
+    private static final int NULL_STRING = -1;
+
+    /** Longest string that fits the 16-bit length prefix. */
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    /** Mapped contents of the catalog file. */
+    private final ByteBuffer data;
+
+    /** Number of items in the catalog. */
+    private final int size;
+
+    /** Offset of the first record. */
+    private final int recordsOffset;
+
+    /** Offset of the string table. */
+    private final int stringsOffset;
+
+    /**
+     * Creates a catalog over already validated contents.
+     *
+     * @param data catalog contents
+     * @param size number of items
+     * @param recordsOffset offset of the record table
+     * @param stringsOffset offset of the string table
+     */
+    private FoodCatalog(ByteBuffer data, int size, int recordsOffset, int stringsOffset) {
+        this.data = data;
+        this.size = size;
+        this.recordsOffset = recordsOffset;
+        this.stringsOffset = stringsOffset;
+    }
+
+    /**
+     * Memory-maps a catalog file. Only the header is read; items are decoded when requested.
+     *
+     * @param file catalog file
+     * @return opened catalog
+     * @throws IOException if the file cannot be mapped or is not a valid catalog
+     */
+    public static FoodCatalog open(Path file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) throw new IOException("Invalid food catalog size: " + file);
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        map.order(ByteOrder.BIG_ENDIAN);
+
+        if (map.getInt(0) != MAGIC) throw new IOException("Not a MacroMate food catalog: " + file);
+        int version = map.getShort(4) & 0xFFFF;
+        if (version != VERSION) throw new IOException("Unsupported food catalog version " + version);
+
+        int count = map.getInt(8);
+        long records = map.getLong(16);
+        long strings = map.getLong(24);
+        if (count < 0 || records < HEADER_BYTES || records + (long) count * RECORD_BYTES > strings || strings > map.capacity()) {
+            throw new IOException("Corrupt food catalog header: " + file);
+        }
+        return new FoodCatalog(map, count, (int) records, (int) strings);
+    }
+
+    /**
+     * Writes a catalog file containing the given foods, replacing any existing file atomically.
+     * Items are sorted by ID and repeated strings (brands, categories) are stored once.
+     *
+     * @param file destination file
+     * @param foods items to store (null items and items without an ID are skipped)
+     * @throws IOException if the file cannot be written or a string is too long
+     */
+    public static void write(Path file, Collection<Food> foods) throws IOException {
+        List<Food> items = new ArrayList<>();
+        for (Food f : foods) {
+            if (f != null && f.getId() != null) items.add(f);
+        }
+        items.sort(Comparator.comparing(Food::getId));
+
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] stringBytes = {0};
+        ByteBuffer records = ByteBuffer.allocate(items.size() * RECORD_BYTES);
+        for (Food f : items) {
+            records.putInt(intern(f.getId(), stringOffsets, strings, stringBytes));
+            records.putInt(intern(f.getName(), stringOffsets, strings, stringBytes));
+            records.putInt(intern(f.getBrand(), stringOffsets, strings, stringBytes));
+            records.putInt(intern(f.getCategory(), stringOffsets, strings, stringBytes));
+            records.putFloat((float) f.getServingSize());
+            records.putFloat((float) f.getCalories());
+            records.putFloat((float) f.getProteinG());
+            records.putFloat((float) f.getCarbsG());
+            records.putFloat((float) f.getFatG());
+        }
+
+        long recordsOffset = HEADER_BYTES;
+        long stringsOffset = recordsOffset + records.capacity();
+        if (stringsOffset + stringBytes[0] > Integer.MAX_VALUE) throw new IOException("Food catalog too large");
+
+        ByteBuffer out = ByteBuffer.allocate((int) (stringsOffset + stringBytes[0]));
+        out.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0).putInt(items.size()).putInt(0)
+                .putLong(recordsOffset).putLong(stringsOffset);
+        out.put(records.array());
+        for (byte[] s : strings) out.putShort((short) s.length).put(s);
+
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, out.array());
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Adds a string to the string table being built, reusing an earlier copy if there is one.
+     *
+     * @param s string to store
+     * @param offsets offsets of strings stored so far
+     * @param strings encoded strings in table order
+     * @param size running size of the string table (single-element array)
+     * @return offset of the string within the string table, or {@link #NULL_STRING}
+     * @throws IOException if the string is too long for the format
+     */
+    private static int intern(String s, Map<String, Integer> offsets, List<byte[]> strings, int[] size) throws IOException {
+        if (s == null) return NULL_STRING;
+        Integer existing = offsets.get(s);
+        if (existing != null) return existing;
+
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length > MAX_STRING_BYTES) throw new IOException("Catalog string too long: " + s.substring(0, 32) + "...");
+        int offset = size[0];
+        offsets.put(s, offset);
+        strings.add(b);
+        size[0] += Short.BYTES + b.length;
+        return offset;
+    }
+
+    /**
+     * Returns the number of items in the catalog.
+     *
+     * @return item count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a {@link Food} for one item.
+     *
+     * @param index item position (items are ordered by ID)
+     * @return a new Food holding the item's data
+     */
+    public Food get(int index) {
+        int r = record(index);
+        return new Food(
+                string(data.getInt(r)),
+                string(data.getInt(r + 4)),
+                string(data.getInt(r + 8)),
+                string(data.getInt(r + 12)),
+                data.getFloat(r + 16),
+                data.getFloat(r + 20),
+                data.getFloat(r + 24),
+                data.getFloat(r + 28),
+                data.getFloat(r + 32));
+    }
+
+    /**
+     * Returns the ID of one item without creating a Food.
+     *
+     * @param index item position
+     * @return item ID
+     */
+    public String idAt(int index) {
+        return string(data.getInt(record(index)));
+    }
+
+    /**
+     * Returns the name of one item without creating a Food.
+     *
+     * @param index item position
+     * @return item name
+     */
+    public String nameAt(int index) {
+        return string(data.getInt(record(index) + 4));
+    }
+
+    /**
+     * Returns the brand of one item without creating a Food.
+     *
+     * @param index item position
+     * @return item brand
+     */
+    public String brandAt(int index) {
+        return string(data.getInt(record(index) + 8));
+    }
+
+    /**
+     * Returns the category of one item without creating a Food.
+     *
+     * @param index item position
+     * @return item category
+     */
+    public String categoryAt(int index) {
+        return string(data.getInt(record(index) + 12));
+    }
+
+    /**
+     * Finds an item by ID with a binary search over the sorted records.
+     *
+     * @param id item ID
+     * @return item position, or -1 if no item has that ID
+     */
+    public int indexOf(String id) {
+        if (id == null) return -1;
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Objects.requireNonNullElse(idAt(mid), "").compareTo(id);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds an item by ID and creates a {@link Food} for it.
+     *
+     * @param id item ID
+     * @return matching food, or null if the catalog has no item with that ID
+     */
+    public Food findById(String id) {
+        int i = indexOf(id);
+        return i < 0 ? null : get(i);
+    }
+
+    /**
+     * Returns a read-only list of every catalog item followed by the given foods. Catalog items
+     * are created only when the list's {@code get} reaches them, so the list can be handed to a
+     * virtualized view (such as a {@code ListView}) without decoding the whole catalog.
+     *
+     * @param tail foods listed after the catalog items
+     * @return combined read-only view
+     */
+    public List<Food> viewWith(List<Food> tail) {
+        return new CatalogView(tail);
+    }
+
+    /**
+     * Returns the absolute offset of a record.
+     *
+     * @param index item position
+     * @return offset of the record
+     */
+    private int record(int index) {
+        Objects.checkIndex(index, size);
+        return recordsOffset + index * RECORD_BYTES;
+    }
+
+    /**
+     * Decodes a string from the string table.
+     *
+     * @param offset offset within the string table, or {@link #NULL_STRING}
+     * @return decoded string, or null
+     */
+    private String string(int offset) {
+        if (offset == NULL_STRING) return null;
+        int at = stringsOffset + offset;
+        int len = data.getShort(at) & 0xFFFF;
+        byte[] b = new byte[len];
+        data.get(at + Short.BYTES, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read-only list of the catalog items followed by a list of extra foods.
+     */
+    private class CatalogView extends AbstractList<Food> implements RandomAccess {
+
+        /** Foods listed after the catalog items. */
+        private final List<Food> tail;
+
+        CatalogView(List<Food> tail) {
+            this.tail = tail;
+        }
+
+        @Override
+        public Food get(int index) {
+            return index < size ? FoodCatalog.this.get(index) : tail.get(index - size);
+        }
+
+        @Override
+        public int size() {
+            return size + tail.size();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package edu.utsa.cs3443.macromateapp.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -16,44 +19,52 @@ import java.util.Map;
  * <p>Calorie and macronutrient totals are calculated externally by
  * {@link DataManager} when creating logs from {@link Food} or {@link CustomFood},
  * and stored using {@link #setComputedTotals(double, double, double, double)}.</p>
+ *
+ * <p>An entry filed in a {@link UserShard} does not hold its fields itself: it names one row of
+ * that user's {@link FoodLogTable}. Any other entry (a new one, or one read from disk before it
+ * is filed) is detached and keeps its fields in a small object of its own, which is copied into
+ * a table row when the entry is filed.</p>
+ *
+ * <p>A filed entry cannot be changed in place: its DayLog's meal buckets and running totals, the
+ * shard's daily rollup and its food index are all kept from the entry's fields, and none of them
+ * would see the change. Its setters throw instead; to change an entry, remove it and add an
+ * edited copy.</p>
  */
 public class FoodLog implements Serializable {
 
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /** Unique identifier for the log entry. */
-    private String id;
-
-    /** ID of the associated food item (standard Food or CustomFood). */
-    private String CustomFoodId;
-
-    /** Type of meal this entry belongs to (breakfast, lunch, dinner, snack). */
-    private MealType mealType;
-
-    /** Number of servings consumed. */
-    private double servings;
-
-    /** Timestamp of when the food was consumed. */
-    private LocalDateTime timestamp;
-
-    /** Optional user-entered notes about the meal. */
-    private String notes;
-
-    /** Total calories for this log entry. */
-    private double calories;
-
-    /** Total protein in grams. */
-    private double proteinG;
-
-    /** Total carbohydrates in grams. */
-    private double carbsG;
-
-    /** Total fat in grams. */
-    private double fatG;
+    /**
+     * Serialized form, unchanged from when each entry held its own fields, so entries written by
+     * older versions can still be read.
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("CustomFoodId", String.class),
+            new ObjectStreamField("mealType", MealType.class),
+            new ObjectStreamField("servings", double.class),
+            new ObjectStreamField("timestamp", LocalDateTime.class),
+            new ObjectStreamField("notes", String.class),
+            new ObjectStreamField("calories", double.class),
+            new ObjectStreamField("proteinG", double.class),
+            new ObjectStreamField("carbsG", double.class),
+            new ObjectStreamField("fatG", double.class),
+    };
+
+    /** Table holding this entry's fields, or null while the entry is detached. */
+    private FoodLogTable table;
+
+    /** Row of {@link #table} holding this entry's fields. */
+    private int row;
+
+    /** Fields of a detached entry, or null while the entry is in a table. */
+    private Fields fields;
 
     /** Default constructor for serialization. */
     public FoodLog() {
+        fields = new Fields();
     }
 
     /**
@@ -67,12 +78,99 @@ public class FoodLog implements Serializable {
      * @param notes optional notes
      */
     public FoodLog(String id, String foodId, MealType mealType, double servings, LocalDateTime timestamp, String notes) {
-        this.id = id;
-        this.CustomFoodId = foodId;
-        this.mealType = mealType;
-        this.servings = servings;
-        this.timestamp = timestamp;
-        this.notes = notes;
+        this();
+        fields.id = id;
+        fields.foodId = foodId;
+        fields.mealType = mealType;
+        fields.servings = servings;
+        fields.timestamp = timestamp;
+        fields.notes = notes;
+    }
+
+    /**
+     * Moves this entry's fields into a new row of a table, freeing its current row or dropping
+     * its detached fields. Used by {@link UserShard} when the entry is filed into one of its
+     * DayLogs.
+     *
+     * @param target table to move into
+     */
+    void moveTo(FoodLogTable target) {
+        if (target == table) return;
+        int r;
+        if (table != null) {
+            r = target.copyRow(table, row);
+            table.free(row);
+        } else {
+            r = target.addRow();
+            target.setId(r, fields.id);
+            target.setFoodId(r, fields.foodId);
+            target.setMealType(r, fields.mealType);
+            target.setServings(r, fields.servings);
+            target.setTimestamp(r, fields.timestamp);
+            target.setNotes(r, fields.notes);
+            target.setTotals(r, fields.calories, fields.proteinG, fields.carbsG, fields.fatG);
+            fields = null;
+        }
+        table = target;
+        row = r;
+    }
+
+    /**
+     * Moves this entry's fields out of its table into detached fields of its own, freeing its
+     * row. Used when the entry leaves a {@link UserShard}.
+     */
+    void detach() {
+        if (table == null) return;
+        Fields f = new Fields();
+        f.id = table.getId(row);
+        f.foodId = table.getFoodId(row);
+        f.mealType = table.getMealType(row);
+        f.servings = table.getServings(row);
+        f.timestamp = table.getTimestamp(row);
+        f.notes = table.getNotes(row);
+        Macros m = table.getNutrients(row);
+        f.calories = m.getCalories();
+        f.proteinG = m.getProteinG();
+        f.carbsG = m.getCarbsG();
+        f.fatG = m.getFatG();
+        table.free(row);
+        table = null;
+        fields = f;
+    }
+
+    /**
+     * Refuses a change to an entry that is filed in a table.
+     *
+     * @throws IllegalStateException if the entry is filed
+     */
+    private void requireDetached() {
+        if (table != null) throw new IllegalStateException("FoodLog " + getId() + " is filed in a DayLog; remove it and add an edited copy");
+    }
+
+    /**
+     * Returns the key of this entry's food ID in the dictionary of the table holding it. For an
+     * entry filed in a {@link UserShard}, that is the shard's food ID dictionary.
+     *
+     * @return food key, or {@link IdDictionary#NONE} if the entry has no food ID or is detached
+     */
+    long getFoodKey() {
+        return table == null ? IdDictionary.NONE : table.getFoodKey(row);
+    }
+
+    /**
+     * Compares the timestamps of two entries. Entries in tables are compared on the stored
+     * timestamp columns, without building {@link LocalDateTime} values.
+     *
+     * @param other entry to compare with
+     * @return negative, zero or positive as this entry is earlier, at the same time, or later;
+     *         entries without a timestamp sort last
+     */
+    int compareTimestamp(FoodLog other) {
+        if (table != null && other.table != null) return table.compareTimestamps(row, other.table, other.row);
+        LocalDateTime a = getTimestamp();
+        LocalDateTime b = other.getTimestamp();
+        if (a == null || b == null) return a == b ? 0 : (a == null ? 1 : -1);
+        return a.compareTo(b);
     }
 
     /**
@@ -81,7 +179,7 @@ public class FoodLog implements Serializable {
      * @return unique ID for this food log
      */
     public String getId() {
-        return id;
+        return table != null ? table.getId(row) : fields.id;
     }
 
     /**
@@ -90,7 +188,7 @@ public class FoodLog implements Serializable {
      * @return ID of the associated food or custom food
      */
     public String getCustomFoodId() {
-        return CustomFoodId;
+        return table != null ? table.getFoodId(row) : fields.foodId;
     }
 
     /**
@@ -99,7 +197,7 @@ public class FoodLog implements Serializable {
      * @return meal type for this entry
      */
     public MealType getMealType() {
-        return mealType;
+        return table != null ? table.getMealType(row) : fields.mealType;
     }
 
     /**
@@ -108,7 +206,7 @@ public class FoodLog implements Serializable {
      * @return number of servings
      */
     public double getServings() {
-        return servings;
+        return table != null ? table.getServings(row) : fields.servings;
     }
 
     /**
@@ -117,7 +215,7 @@ public class FoodLog implements Serializable {
      * @return timestamp of the consumed entry
      */
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return table != null ? table.getTimestamp(row) : fields.timestamp;
     }
 
     /**
@@ -126,61 +224,73 @@ public class FoodLog implements Serializable {
      * @return user notes associated with the entry
      */
     public String getNotes() {
-        return notes;
+        return table != null ? table.getNotes(row) : fields.notes;
     }
 
     /**
      * Sets log ID.
      *
      * @param id set log ID
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setId(String id) {
-        this.id = id;
+        requireDetached();
+        fields.id = id;
     }
 
     /**
      * Sets associated food ID.
      *
      * @param foodId set food ID
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setCustomFoodId(String foodId) {
-        this.CustomFoodId = foodId;
+        requireDetached();
+        fields.foodId = foodId;
     }
 
     /**
      * Sets meal type.
      *
      * @param mealType set meal type
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setMealType(MealType mealType) {
-        this.mealType = mealType;
+        requireDetached();
+        fields.mealType = mealType;
     }
 
     /**
      * Sets serving count.
      *
      * @param servings set serving count
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setServings(double servings) {
-        this.servings = servings;
+        requireDetached();
+        fields.servings = servings;
     }
 
     /**
      * Sets timestamp.
      *
      * @param timestamp set timestamp.
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setTimestamp(LocalDateTime timestamp) {
-        this.timestamp = timestamp;
+        requireDetached();
+        fields.timestamp = timestamp;
     }
 
     /**
      * Sets user notes.
      *
      * @param notes set user notes.
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     public void setNotes(String notes) {
-        this.notes = notes;
+        requireDetached();
+        fields.notes = notes;
     }
 
     /**
@@ -191,12 +301,24 @@ public class FoodLog implements Serializable {
      * @param proteinG total protein (g)
      * @param carbsG total carbs (g)
      * @param fatG total fat (g)
+     * @throws IllegalStateException if the entry is filed in a user's DayLogs
      */
     void setComputedTotals(double calories, double proteinG, double carbsG, double fatG) {
-        this.calories = calories;
-        this.proteinG = proteinG;
-        this.carbsG = carbsG;
-        this.fatG = fatG;
+        requireDetached();
+        fields.calories = calories;
+        fields.proteinG = proteinG;
+        fields.carbsG = carbsG;
+        fields.fatG = fatG;
+    }
+
+    /**
+     * Stores precomputed nutrient totals for this entry.
+     *
+     * @param totals total calories and macronutrients (null stores zeros)
+     */
+    void setComputedTotals(Macros totals) {
+        Macros m = totals == null ? Macros.ZERO : totals;
+        setComputedTotals(m.getCalories(), m.getProteinG(), m.getCarbsG(), m.getFatG());
     }
 
     /**
@@ -205,7 +327,16 @@ public class FoodLog implements Serializable {
      * @return total calories logged for this entry
      */
     public double gtCalories() {
-        return calories;
+        return table != null ? table.getCalories(row) : fields.calories;
+    }
+
+    /**
+     * Returns this entry's calories and macronutrients.
+     *
+     * @return nutrient totals for this food log
+     */
+    public Macros getNutrients() {
+        return table != null ? table.getNutrients(row) : new Macros(fields.calories, fields.proteinG, fields.carbsG, fields.fatG);
     }
 
     /**
@@ -221,11 +352,7 @@ public class FoodLog implements Serializable {
      * @return map of macros for this food log
      */
     public Map<String, Double> getMacros() {
-        Map<String, Double> out = new LinkedHashMap<>();
-        out.put("proteinG", proteinG);
-        out.put("carbsG", carbsG);
-        out.put("fatG", fatG);
-        return out;
+        return getNutrients().toMap();
     }
 
     /**
@@ -234,6 +361,7 @@ public class FoodLog implements Serializable {
      * @return formatted time or empty string if timestamp is null
      */
     public String getFormattedTime() {
+        LocalDateTime timestamp = getTimestamp();
         if (timestamp == null) return "";
         return timestamp.format(DateTimeFormatter.ofPattern("h:mm a"));
     }
@@ -246,8 +374,88 @@ public class FoodLog implements Serializable {
     @Override
     public String toString() {
         String time = getFormattedTime();
+        MealType mealType = getMealType();
         String meal = mealType == null ? "" : mealType.name();
-        return "%s  %s  %.0f kcal".formatted(meal, time, calories);
+        return "%s  %s  %.0f kcal".formatted(meal, time, gtCalories());
+    }
+
+    /**
+     * Writes this entry in the serialized form.
+     *
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        Macros m = getNutrients();
+        f.put("id", getId());
+        f.put("CustomFoodId", getCustomFoodId());
+        f.put("mealType", getMealType());
+        f.put("servings", getServings());
+        f.put("timestamp", getTimestamp());
+        f.put("notes", getNotes());
+        f.put("calories", m.getCalories());
+        f.put("proteinG", m.getProteinG());
+        f.put("carbsG", m.getCarbsG());
+        f.put("fatG", m.getFatG());
+        out.writeFields();
+    }
+
+    /**
+     * Reads an entry written in the serialized form as a detached entry.
+     *
+     * @param in stream to read from
+     * @throws IOException if reading fails
+     * @throws ClassNotFoundException if a stored class cannot be found
+     */
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        fields = new Fields();
+        setId((String) f.get("id", null));
+        setCustomFoodId((String) f.get("CustomFoodId", null));
+        setMealType((MealType) f.get("mealType", null));
+        setServings(f.get("servings", 0.0));
+        setTimestamp((LocalDateTime) f.get("timestamp", null));
+        setNotes((String) f.get("notes", null));
+        setComputedTotals(f.get("calories", 0.0), f.get("proteinG", 0.0), f.get("carbsG", 0.0), f.get("fatG", 0.0));
+    }
+
+    /**
+     * Fields of a detached entry, held directly until it is filed into a {@link FoodLogTable}.
+     */
+    private static final class Fields {
+
+        /** Log ID. */
+        private String id;
+
+        /** ID of the food or custom food. */
+        private String foodId;
+
+        /** Meal category. */
+        private MealType mealType;
+
+        /** Number of servings. */
+        private double servings;
+
+        /** Time of consumption. */
+        private LocalDateTime timestamp;
+
+        /** User notes. */
+        private String notes;
+
+        /** Total calories. */
+        private double calories;
+
+        /** Total protein (g). */
+        private double proteinG;
+
+        /** Total carbohydrates (g). */
+        private double carbsG;
+
+        /** Total fat (g). */
+        private double fatG;
     }
 
     /**
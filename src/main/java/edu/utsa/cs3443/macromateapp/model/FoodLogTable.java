@@ -0,0 +1,402 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Columnar storage for {@link FoodLog} entries: one row per entry, with each field kept in its
+ * own primitive array instead of in a separate object per entry. Each {@link UserShard} holds one
+ * table for the FoodLogs of its loaded months, and every {@link FoodLog} is a small handle naming
+ * a row of some table.
+ *
+ * <p>Timestamps are stored as epoch seconds plus nanoseconds (the local date-time read as UTC),
+ * meal types as ordinal bytes, and food IDs as keys of an {@link IdDictionary}, so the same food
+ * logged a thousand times stores its ID once. Log IDs in the compact format are stored as their
+ * 64-bit value; any other log ID (one created before that format) is kept as a string in a
+ * column that is only allocated once such an ID appears. Missing values use sentinels:
+ * {@link #NO_TIMESTAMP}, {@link IdDictionary#NONE} for the food and log ID, and {@code -1} for
+ * the meal type.</p>
+ *
+ * <p>Rows given back with {@link #free(int)} are reused by later entries, so a row number stays
+ * valid for as long as its entry is in the table. Per-day sums are kept separately, by
+ * {@link DailyRollup}.</p>
+ */
+public final class FoodLogTable {
+
+    /** Timestamp column value for entries without a timestamp. */
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /** Meal types by stored ordinal. */
+    private static final FoodLog.MealType[] MEAL_TYPES = FoodLog.MealType.values();
+
+    /** Number of rows ever handed out (live rows plus free ones). */
+    private int rows;
+
+    /** Rows that were freed and can be reused, used as a stack. */
+    private int[] freeRows = new int[0];
+
+    /** Number of entries in {@link #freeRows}. */
+    private int freeCount;
+
+    /** Compact log ID value per row, or {@link IdDictionary#NONE}. */
+    private long[] ids;
+
+    /** Log IDs that are not in the compact format, by row (null until one is stored). */
+    private String[] otherIds;
+
+    /** Timestamp per row, in epoch seconds, or {@link #NO_TIMESTAMP}. */
+    private long[] epochSeconds;
+
+    /** Nanosecond part of the timestamp per row. */
+    private int[] nanos;
+
+    /** Food ID key per row, or {@link IdDictionary#NONE}. Keys are small, so an int holds them. */
+    private int[] foods;
+
+    /** Meal type ordinal per row, or {@code -1}. */
+    private byte[] mealTypes;
+
+    /** Servings per row. */
+    private double[] servings;
+
+    /** Calories per row. */
+    private double[] calories;
+
+    /** Protein (g) per row. */
+    private double[] proteinG;
+
+    /** Carbohydrates (g) per row. */
+    private double[] carbsG;
+
+    /** Fat (g) per row. */
+    private double[] fatG;
+
+    /** Notes per row. */
+    private String[] notes;
+
+    /** Dictionary giving the keys in {@link #foods}. */
+    private final IdDictionary foodKeys;
+
+    /**
+     * Creates an empty table with a food ID dictionary of its own.
+     *
+     * @param capacity number of rows to allocate up front
+     */
+    public FoodLogTable(int capacity) {
+        this(capacity, new IdDictionary());
+    }
+
+    /**
+     * Creates an empty table whose food IDs are keyed by a shared dictionary.
+     *
+     * @param capacity number of rows to allocate up front
+     * @param foodKeys dictionary for food IDs
+     */
+    public FoodLogTable(int capacity, IdDictionary foodKeys) {
+        this.foodKeys = foodKeys;
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * Returns the number of live rows.
+     *
+     * @return rows in use
+     */
+    public int size() {
+        return rows - freeCount;
+    }
+
+    /**
+     * Takes a free row, reusing a freed one if there is one, and clears it.
+     *
+     * @return row number
+     */
+    int addRow() {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            if (rows == ids.length) allocate(rows * 2);
+            row = rows++;
+        }
+        ids[row] = IdDictionary.NONE;
+        if (otherIds != null) otherIds[row] = null;
+        epochSeconds[row] = NO_TIMESTAMP;
+        nanos[row] = 0;
+        foods[row] = (int) IdDictionary.NONE;
+        mealTypes[row] = -1;
+        servings[row] = 0.0;
+        calories[row] = 0.0;
+        proteinG[row] = 0.0;
+        carbsG[row] = 0.0;
+        fatG[row] = 0.0;
+        notes[row] = null;
+        return row;
+    }
+
+    /**
+     * Copies a row of another table into a new row of this one.
+     *
+     * @param source table holding the row
+     * @param row    row number in {@code source}
+     * @return row number in this table
+     */
+    int copyRow(FoodLogTable source, int row) {
+        int r = addRow();
+        ids[r] = source.ids[row];
+        if (source.otherIds != null && source.otherIds[row] != null) setId(r, source.otherIds[row]);
+        epochSeconds[r] = source.epochSeconds[row];
+        nanos[r] = source.nanos[row];
+        foods[r] = source.foodKeys == foodKeys ? source.foods[row] : (int) foodKeys.keyOf(source.getFoodId(row));
+        mealTypes[r] = source.mealTypes[row];
+        servings[r] = source.servings[row];
+        calories[r] = source.calories[row];
+        proteinG[r] = source.proteinG[row];
+        carbsG[r] = source.carbsG[row];
+        fatG[r] = source.fatG[row];
+        notes[r] = source.notes[row];
+        return r;
+    }
+
+    /**
+     * Gives a row back for reuse. Its string references are cleared so they can be collected.
+     *
+     * @param row row number
+     */
+    void free(int row) {
+        if (otherIds != null) otherIds[row] = null;
+        notes[row] = null;
+        if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, Math.max(8, freeCount * 2));
+        freeRows[freeCount++] = row;
+    }
+
+    /**
+     * Returns a row's log ID.
+     *
+     * @param row row number
+     * @return log ID
+     */
+    String getId(int row) {
+        if (ids[row] != IdDictionary.NONE) return IdDictionary.formatCompact(ids[row]);
+        return otherIds == null ? null : otherIds[row];
+    }
+
+    /**
+     * Sets a row's log ID.
+     *
+     * @param row row number
+     * @param id  log ID
+     */
+    void setId(int row, String id) {
+        ids[row] = IdDictionary.parseCompact(id);
+        if (ids[row] == IdDictionary.NONE && id != null) {
+            if (otherIds == null) otherIds = new String[ids.length];
+            otherIds[row] = id;
+        } else if (otherIds != null) {
+            otherIds[row] = null;
+        }
+    }
+
+    /**
+     * Returns a row's food ID.
+     *
+     * @param row row number
+     * @return food ID, or null
+     */
+    String getFoodId(int row) {
+        return foodKeys.nameOf(foods[row]);
+    }
+
+    /**
+     * Returns a row's food ID key in this table's dictionary.
+     *
+     * @param row row number
+     * @return food key, or {@link IdDictionary#NONE}
+     */
+    long getFoodKey(int row) {
+        return foods[row];
+    }
+
+    /**
+     * Sets a row's food ID.
+     *
+     * @param row    row number
+     * @param foodId food ID, or null
+     */
+    void setFoodId(int row, String foodId) {
+        foods[row] = (int) foodKeys.keyOf(foodId);
+    }
+
+    /**
+     * Returns a row's meal type.
+     *
+     * @param row row number
+     * @return meal type, or null
+     */
+    FoodLog.MealType getMealType(int row) {
+        byte ordinal = mealTypes[row];
+        return ordinal < 0 ? null : MEAL_TYPES[ordinal];
+    }
+
+    /**
+     * Sets a row's meal type.
+     *
+     * @param row      row number
+     * @param mealType meal type, or null
+     */
+    void setMealType(int row, FoodLog.MealType mealType) {
+        mealTypes[row] = mealType == null ? -1 : (byte) mealType.ordinal();
+    }
+
+    /**
+     * Returns a row's servings.
+     *
+     * @param row row number
+     * @return servings
+     */
+    double getServings(int row) {
+        return servings[row];
+    }
+
+    /**
+     * Sets a row's servings.
+     *
+     * @param row   row number
+     * @param value servings
+     */
+    void setServings(int row, double value) {
+        servings[row] = value;
+    }
+
+    /**
+     * Returns a row's timestamp.
+     *
+     * @param row row number
+     * @return timestamp, or null
+     */
+    LocalDateTime getTimestamp(int row) {
+        long s = epochSeconds[row];
+        return s == NO_TIMESTAMP ? null : LocalDateTime.ofEpochSecond(s, nanos[row], ZoneOffset.UTC);
+    }
+
+    /**
+     * Sets a row's timestamp.
+     *
+     * @param row       row number
+     * @param timestamp timestamp, or null
+     */
+    void setTimestamp(int row, LocalDateTime timestamp) {
+        epochSeconds[row] = timestamp == null ? NO_TIMESTAMP : timestamp.toEpochSecond(ZoneOffset.UTC);
+        nanos[row] = timestamp == null ? 0 : timestamp.getNano();
+    }
+
+    /**
+     * Compares the timestamps of two rows, rows without a timestamp last.
+     *
+     * @param row   row number in this table
+     * @param other table holding the other row
+     * @param otherRow row number in {@code other}
+     * @return negative, zero or positive as this row's timestamp is earlier, equal or later
+     */
+    int compareTimestamps(int row, FoodLogTable other, int otherRow) {
+        long a = epochSeconds[row];
+        long b = other.epochSeconds[otherRow];
+        if (a != b) {
+            if (a == NO_TIMESTAMP) return 1;
+            if (b == NO_TIMESTAMP) return -1;
+            return Long.compare(a, b);
+        }
+        return Integer.compare(nanos[row], other.nanos[otherRow]);
+    }
+
+    /**
+     * Returns a row's notes.
+     *
+     * @param row row number
+     * @return notes, or null
+     */
+    String getNotes(int row) {
+        return notes[row];
+    }
+
+    /**
+     * Sets a row's notes. Empty notes, by far the most common, share one string.
+     *
+     * @param row   row number
+     * @param value notes, or null
+     */
+    void setNotes(int row, String value) {
+        notes[row] = value != null && value.isEmpty() ? "" : value;
+    }
+
+    /**
+     * Returns a row's calories.
+     *
+     * @param row row number
+     * @return calories
+     */
+    double getCalories(int row) {
+        return calories[row];
+    }
+
+    /**
+     * Returns a row's totals.
+     *
+     * @param row row number
+     * @return calories and macronutrients
+     */
+    Macros getNutrients(int row) {
+        return new Macros(calories[row], proteinG[row], carbsG[row], fatG[row]);
+    }
+
+    /**
+     * Sets a row's totals.
+     *
+     * @param row row number
+     * @param cal calories
+     * @param p   protein (g)
+     * @param c   carbohydrates (g)
+     * @param f   fat (g)
+     */
+    void setTotals(int row, double cal, double p, double c, double f) {
+        calories[row] = cal;
+        proteinG[row] = p;
+        carbsG[row] = c;
+        fatG[row] = f;
+    }
+
+    /**
+     * Grows (or first creates) every column to a capacity.
+     *
+     * @param capacity number of rows
+     */
+    private void allocate(int capacity) {
+        if (ids == null) {
+            ids = new long[capacity];
+            epochSeconds = new long[capacity];
+            nanos = new int[capacity];
+            foods = new int[capacity];
+            mealTypes = new byte[capacity];
+            servings = new double[capacity];
+            calories = new double[capacity];
+            proteinG = new double[capacity];
+            carbsG = new double[capacity];
+            fatG = new double[capacity];
+            notes = new String[capacity];
+            return;
+        }
+        ids = Arrays.copyOf(ids, capacity);
+        if (otherIds != null) otherIds = Arrays.copyOf(otherIds, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+        foods = Arrays.copyOf(foods, capacity);
+        mealTypes = Arrays.copyOf(mealTypes, capacity);
+        servings = Arrays.copyOf(servings, capacity);
+        calories = Arrays.copyOf(calories, capacity);
+        proteinG = Arrays.copyOf(proteinG, capacity);
+        carbsG = Arrays.copyOf(carbsG, capacity);
+        fatG = Arrays.copyOf(fatG, capacity);
+        notes = Arrays.copyOf(notes, capacity);
+    }
+}
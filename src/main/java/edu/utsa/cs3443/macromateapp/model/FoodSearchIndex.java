@@ -0,0 +1,833 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index over the name, brand and category of every searchable food, used by the
+ * Add Food search box.
+ *
+ * <p>Text is split into lower-case tokens of letters and digits. Each token maps to a posting
+ * list of the foods (and the field) it appears in. A query is split the same way; every query
+ * token is treated as a prefix, and a food matches only if every query token matches one of its
+ * tokens. Matches are ranked so that whole-word matches beat prefix matches and name matches beat
+ * brand or category matches, with shorter names first among equals.</p>
+ *
+ * <p>For misspelled queries ("brocoli", "chiken brest") {@link #searchFuzzy} also matches
+ * tokens that share most of their trigrams (three-letter substrings) with a query token. The
+ * trigrams of every indexed token are kept in a second index, so similar tokens are found
+ * without comparing the query against the whole vocabulary. Fuzzy searches run against a
+ * deadline and rank whatever they have found when it passes.</p>
+ *
+ * <p>Catalog items are indexed once, in sorted arrays that are built the first time they are
+ * needed (possibly on a background thread, see {@link #prepare()}). Foods outside the catalog
+ * (the heap foods and generated custom food items) live in a small tree that is updated as
+ * custom foods are created and deleted.</p>
+ */
+public class FoodSearchIndex {
+
+    /** Field code of a food's name. */
+    private static final int FIELD_NAME = 0;
+
+    /** Field code of a food's brand. */
+    private static final int FIELD_BRAND = 1;
+
+    /** Field code of a food's category. */
+    private static final int FIELD_CATEGORY = 2;
+
+    /** Bits of a posting used for the field code; the rest hold the document number. */
+    private static final int FIELD_BITS = 2;
+
+    /** Match weight of a query token equal to an indexed token. */
+    private static final int EXACT_WEIGHT = 100;
+
+    /** Match weight of a query token that is a prefix of an indexed token. */
+    private static final int PREFIX_WEIGHT = 70;
+
+    /** Factor applied to matches in a food's name, so they outrank brand and category matches. */
+    private static final int NAME_FACTOR = 2;
+
+    /** Shortest query token that is also matched by spelling similarity. */
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    /** Lowest trigram similarity (Dice coefficient) for one token to count as a misspelling of another. */
+    private static final double MIN_FUZZY_SIMILARITY = 0.5;
+
+    /** Most similar tokens kept for each query token. */
+    private static final int FUZZY_TERMS_PER_TOKEN = 8;
+
+    /** Postings scored between checks of a search's deadline. */
+    private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
+    /** Deadline of a search that may run to completion. */
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    /** Character that pads a token on both sides before it is split into trigrams. */
+    private static final char TRIGRAM_PAD = '$';
+
+    /** Catalog whose items occupy document numbers {@code 0 .. catalog.size() - 1}, or null. */
+    private final FoodCatalog catalog;
+
+    /** Number of catalog documents. */
+    private final int catalogSize;
+
+    /** Index of the catalog items, built on first use. */
+    private volatile CatalogTerms catalogTerms;
+
+    /** Guards the one-time build of {@link #catalogTerms}. */
+    private final Object catalogLock = new Object();
+
+    /** Postings of foods outside the catalog, by token. */
+    private final NavigableMap<String, IntList> extraTerms = new TreeMap<>();
+
+    /** Foods outside the catalog by document number minus {@link #catalogSize}; removed foods are null. */
+    private final List<Food> extraDocs = new ArrayList<>();
+
+    /** Number of name tokens of each food outside the catalog, used to rank shorter names first. */
+    private final IntList extraNameTokens = new IntList();
+
+    /** Document number of each food outside the catalog, by food ID. */
+    private final Map<String, Integer> extraDocById = new HashMap<>();
+
+    /** Number of query tokens each document has matched so far during a search. */
+    private int[] matched = new int[0];
+
+    /** Running score of each document during a search. */
+    private int[] score = new int[0];
+
+    /** Best weight of the current query token for each document during a search. */
+    private int[] best = new int[0];
+
+    /** Documents that matched the first query token during a search. */
+    private final IntList touched = new IntList();
+
+    /** Trigrams each catalog term shares with the query token during a fuzzy search. */
+    private int[] shared = new int[0];
+
+    /** Catalog terms sharing at least one trigram with the query token during a fuzzy search. */
+    private final IntList sharedTouched = new IntList();
+
+    /**
+     * Creates an index over a catalog. The catalog items are not tokenized until the first search
+     * or until {@link #prepare()} is called.
+     *
+     * @param catalog catalog to index, or null if there is none
+     */
+    public FoodSearchIndex(FoodCatalog catalog) {
+        this.catalog = catalog;
+        this.catalogSize = catalog == null ? 0 : catalog.size();
+    }
+
+    /**
+     * Builds the catalog part of the index if it has not been built yet. Safe to call from a
+     * background thread while foods are added, removed or searched.
+     */
+    public void prepare() {
+        catalogTerms();
+    }
+
+    /**
+     * Adds a food outside the catalog to the index, replacing any earlier food with the same ID.
+     *
+     * @param food food to add (null foods and foods without an ID are ignored)
+     */
+    public synchronized void add(Food food) {
+        if (food == null || food.getId() == null) return;
+        remove(food.getId());
+
+        int doc = catalogSize + extraDocs.size();
+        extraDocs.add(food);
+        extraNameTokens.add(tokenize(food.getName()).size());
+        extraDocById.put(food.getId(), doc);
+        addTokens(food.getName(), FIELD_NAME, doc);
+        addTokens(food.getBrand(), FIELD_BRAND, doc);
+        addTokens(food.getCategory(), FIELD_CATEGORY, doc);
+    }
+
+    /**
+     * Removes a food outside the catalog from the index. Its postings are left in place and
+     * skipped by later searches.
+     *
+     * @param foodId ID of the food to remove
+     */
+    public synchronized void remove(String foodId) {
+        Integer doc = extraDocById.remove(foodId);
+        if (doc != null) extraDocs.set(doc - catalogSize, null);
+    }
+
+    /**
+     * Finds the foods matching every token of a query, best matches first.
+     *
+     * @param query search text; each token is matched as a word prefix
+     * @param limit maximum number of results
+     * @param visible decides which foods outside the catalog may be returned (catalog items always may)
+     * @return matching foods, best first (empty if the query has no tokens)
+     */
+    public synchronized List<Food> search(String query, int limit, Predicate<Food> visible) {
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) return List.of();
+
+        CatalogTerms ct = catalogTerms();
+        List<Expansion> expansions = new ArrayList<>();
+        for (String token : tokens) expansions.add(new Expansion(token, ct));
+        return rank(ct, expansions, limit, visible, NO_DEADLINE);
+    }
+
+    /**
+     * Finds the foods closest to a possibly misspelled query, best matches first. Each query
+     * token matches indexed tokens it is a prefix of, plus the indexed tokens most similar to it
+     * by trigrams. A query token that resembles nothing is ignored rather than failing the search.
+     * When the time budget runs out the search stops early and ranks the matches found so far.
+     *
+     * @param query search text
+     * @param limit maximum number of results
+     * @param timeBudgetNanos time the search may take, in nanoseconds
+     * @param visible decides which foods outside the catalog may be returned (catalog items always may)
+     * @return closest foods, best first
+     */
+    public synchronized List<Food> searchFuzzy(String query, int limit, long timeBudgetNanos, Predicate<Food> visible) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        Set<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) return List.of();
+
+        CatalogTerms ct = catalogTerms();
+        List<Expansion> expansions = new ArrayList<>();
+        for (String token : tokens) {
+            if (expired(deadline)) break;
+            Expansion e = new Expansion(token, ct);
+            if (token.length() >= MIN_FUZZY_LENGTH) addSimilarTerms(e, ct);
+            if (!e.isEmpty() || hasExtraTermStartingWith(token)) expansions.add(e);
+        }
+        return rank(ct, expansions, limit, visible, deadline);
+    }
+
+    /**
+     * Scores every document against the expanded query tokens and returns the best.
+     * Tokens are processed most selective first, so fewer documents become candidates.
+     *
+     * @param ct catalog part of the index
+     * @param expansions indexed tokens matched by each query token
+     * @param limit maximum number of results
+     * @param visible decides which foods outside the catalog may be returned
+     * @param deadline {@link System#nanoTime()} value at which to stop, or {@link #NO_DEADLINE}
+     * @return matching foods, best first
+     */
+    private List<Food> rank(CatalogTerms ct, List<Expansion> expansions, int limit, Predicate<Food> visible, long deadline) {
+        expansions.sort(Comparator.comparingInt(e -> e.postingCount(ct)));
+        ensureScratchCapacity(catalogSize + extraDocs.size());
+
+        int processed = 0;
+        int work = 0;
+        scoring:
+        for (int i = 0; i < expansions.size(); i++) {
+            Expansion e = expansions.get(i);
+
+            for (int t = e.lo; t < e.hi; t++) {
+                int w = (t == e.lo && ct.terms[t].length() == e.token.length()) ? EXACT_WEIGHT : PREFIX_WEIGHT;
+                work += visitAll(ct.postings, ct.offsets[t], ct.offsets[t + 1], w, i);
+                if (work >= DEADLINE_CHECK_INTERVAL) {
+                    work = 0;
+                    if (expired(deadline)) break scoring;
+                }
+            }
+            for (Map.Entry<String, IntList> entry : extraTerms.tailMap(e.token, true).entrySet()) {
+                if (!entry.getKey().startsWith(e.token)) break;
+                int w = entry.getKey().length() == e.token.length() ? EXACT_WEIGHT : PREFIX_WEIGHT;
+                visitAll(entry.getValue().values, 0, entry.getValue().size, w, i);
+            }
+            for (int k = 0; k < e.similarCatalogTerms.size; k++) {
+                int t = e.similarCatalogTerms.values[k];
+                work += visitAll(ct.postings, ct.offsets[t], ct.offsets[t + 1], e.similarCatalogWeights.values[k], i);
+                if (work >= DEADLINE_CHECK_INTERVAL) {
+                    work = 0;
+                    if (expired(deadline)) break scoring;
+                }
+            }
+            for (int k = 0; k < e.similarExtraTerms.size(); k++) {
+                IntList postings = extraTerms.get(e.similarExtraTerms.get(k));
+                visitAll(postings.values, 0, postings.size, e.similarExtraWeights.values[k], i);
+            }
+            processed = i + 1;
+        }
+        // After an early stop, documents that matched every fully processed token still count.
+        int required = Math.max(processed, 1);
+
+        // Bounded heap of the best candidates, worst at the root.
+        int[] heap = new int[Math.min(limit, touched.size)];
+        int heapSize = 0;
+        for (int k = 0; k < touched.size; k++) {
+            int doc = touched.values[k];
+            if (matched[doc] < required) continue;
+            if (heapSize == heap.length && compareRank(doc, heap[0], ct) >= 0) continue;
+            if (doc >= catalogSize) {
+                Food f = extraDocs.get(doc - catalogSize);
+                if (f == null || (visible != null && !visible.test(f))) continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = doc;
+                siftUp(heap, heapSize++, ct);
+            } else {
+                heap[0] = doc;
+                siftDown(heap, heapSize, ct);
+            }
+        }
+
+        for (int k = 0; k < touched.size; k++) {
+            int doc = touched.values[k];
+            matched[doc] = 0;
+            score[doc] = 0;
+            best[doc] = 0;
+        }
+        touched.size = 0;
+
+        Food[] out = new Food[heapSize];
+        while (heapSize > 0) {
+            int doc = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, ct);
+            out[heapSize] = doc < catalogSize ? catalog.get(doc) : extraDocs.get(doc - catalogSize);
+        }
+        return Arrays.asList(out);
+    }
+
+    /**
+     * Scores a run of postings of the {@code i}-th query token.
+     *
+     * @param postings posting array
+     * @param from first posting (inclusive)
+     * @param to last posting (exclusive)
+     * @param weight match weight of the indexed token
+     * @param i position of the query token
+     * @return number of postings scored
+     */
+    private int visitAll(int[] postings, int from, int to, int weight, int i) {
+        for (int p = from; p < to; p++) visit(postings[p], weight, i);
+        return to - from;
+    }
+
+    /**
+     * Scores one posting of the {@code i}-th query token. A document only stays a candidate if it
+     * matched every earlier token; for each token only its best-weighted match counts.
+     *
+     * @param posting document number and field code
+     * @param weight match weight of the indexed token
+     * @param i position of the query token
+     */
+    private void visit(int posting, int weight, int i) {
+        int doc = posting >>> FIELD_BITS;
+        int field = posting & ((1 << FIELD_BITS) - 1);
+        int w = field == FIELD_NAME ? weight * NAME_FACTOR : weight;
+
+        if (matched[doc] == i) {
+            if (i == 0) touched.add(doc);
+            matched[doc] = i + 1;
+            score[doc] += w;
+            best[doc] = w;
+        } else if (matched[doc] == i + 1 && w > best[doc]) {
+            score[doc] += w - best[doc];
+            best[doc] = w;
+        }
+    }
+
+    /**
+     * Adds to an expansion the indexed tokens most similar to its query token. Catalog tokens are
+     * found through the trigram index; the few tokens outside the catalog are compared directly.
+     * Tokens already matched as a prefix are skipped.
+     *
+     * @param e expansion of one query token
+     * @param ct catalog part of the index
+     */
+    private void addSimilarTerms(Expansion e, CatalogTerms ct) {
+        long[] grams = trigrams(e.token);
+        if (shared.length < ct.terms.length) shared = new int[ct.terms.length];
+
+        for (long gram : grams) {
+            int g = Arrays.binarySearch(ct.grams, gram);
+            if (g < 0) continue;
+            for (int p = ct.gramOffsets[g]; p < ct.gramOffsets[g + 1]; p++) {
+                int t = ct.gramTerms[p];
+                if (shared[t]++ == 0) sharedTouched.add(t);
+            }
+        }
+
+        int[] topTerms = new int[FUZZY_TERMS_PER_TOKEN];
+        double[] topSimilarity = new double[FUZZY_TERMS_PER_TOKEN];
+        int topSize = 0;
+        for (int k = 0; k < sharedTouched.size; k++) {
+            int t = sharedTouched.values[k];
+            double similarity = 2.0 * shared[t] / (grams.length + ct.terms[t].length());
+            shared[t] = 0;
+            if (similarity < MIN_FUZZY_SIMILARITY || (t >= e.lo && t < e.hi)) continue;
+            if (topSize == FUZZY_TERMS_PER_TOKEN && similarity <= topSimilarity[topSize - 1]) continue;
+
+            int at = Math.min(topSize, FUZZY_TERMS_PER_TOKEN - 1);
+            while (at > 0 && topSimilarity[at - 1] < similarity) {
+                topTerms[at] = topTerms[at - 1];
+                topSimilarity[at] = topSimilarity[at - 1];
+                at--;
+            }
+            topTerms[at] = t;
+            topSimilarity[at] = similarity;
+            if (topSize < FUZZY_TERMS_PER_TOKEN) topSize++;
+        }
+        sharedTouched.size = 0;
+
+        for (int k = 0; k < topSize; k++) {
+            e.similarCatalogTerms.add(topTerms[k]);
+            e.similarCatalogWeights.add((int) Math.round(topSimilarity[k] * PREFIX_WEIGHT));
+        }
+
+        for (String term : extraTerms.keySet()) {
+            if (term.startsWith(e.token)) continue;
+            double similarity = similarity(grams, trigrams(term));
+            if (similarity >= MIN_FUZZY_SIMILARITY) {
+                e.similarExtraTerms.add(term);
+                e.similarExtraWeights.add((int) Math.round(similarity * PREFIX_WEIGHT));
+            }
+        }
+    }
+
+    /**
+     * Returns whether any token outside the catalog starts with a query token.
+     *
+     * @param token query token
+     * @return true if the token prefixes an indexed token outside the catalog
+     */
+    private boolean hasExtraTermStartingWith(String token) {
+        String next = extraTerms.ceilingKey(token);
+        return next != null && next.startsWith(token);
+    }
+
+    /**
+     * Returns whether a search deadline has passed.
+     *
+     * @param deadline {@link System#nanoTime()} value, or {@link #NO_DEADLINE}
+     * @return true if the search should stop
+     */
+    private static boolean expired(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Orders two candidate documents: higher score first, then fewer name tokens, then document order.
+     *
+     * @param a first document
+     * @param b second document
+     * @param ct catalog part of the index
+     * @return negative if {@code a} ranks ahead of {@code b}
+     */
+    private int compareRank(int a, int b, CatalogTerms ct) {
+        int c = Integer.compare(score[b], score[a]);
+        if (c != 0) return c;
+        c = Integer.compare(nameTokens(a, ct), nameTokens(b, ct));
+        if (c != 0) return c;
+        return Integer.compare(a, b);
+    }
+
+    /**
+     * Moves a newly added heap entry up until its parent ranks ahead of it.
+     *
+     * @param heap heap of documents, worst-ranked at the root
+     * @param i position of the new entry
+     * @param ct catalog part of the index
+     */
+    private void siftUp(int[] heap, int i, CatalogTerms ct) {
+        int doc = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (compareRank(heap[parent], doc, ct) >= 0) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = doc;
+    }
+
+    /**
+     * Moves the root heap entry down until both children rank ahead of it.
+     *
+     * @param heap heap of documents, worst-ranked at the root
+     * @param size number of entries in the heap
+     * @param ct catalog part of the index
+     */
+    private void siftDown(int[] heap, int size, CatalogTerms ct) {
+        if (size == 0) return;
+        int doc = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && compareRank(heap[child + 1], heap[child], ct) > 0) child++;
+            if (compareRank(doc, heap[child], ct) >= 0) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = doc;
+    }
+
+    /**
+     * Returns the number of name tokens of a document.
+     *
+     * @param doc document number
+     * @param ct catalog part of the index
+     * @return name token count
+     */
+    private int nameTokens(int doc, CatalogTerms ct) {
+        return doc < catalogSize ? ct.nameTokens[doc] : extraNameTokens.values[doc - catalogSize];
+    }
+
+    /**
+     * Grows the per-document scratch arrays to cover every document.
+     *
+     * @param docs number of documents
+     */
+    private void ensureScratchCapacity(int docs) {
+        if (matched.length >= docs) return;
+        int capacity = Math.max(docs, matched.length + (matched.length >> 1) + 16);
+        matched = Arrays.copyOf(matched, capacity);
+        score = Arrays.copyOf(score, capacity);
+        best = Arrays.copyOf(best, capacity);
+    }
+
+    /**
+     * Adds postings for every token of one field of a food outside the catalog.
+     *
+     * @param text field text
+     * @param field field code
+     * @param doc document number
+     */
+    private void addTokens(String text, int field, int doc) {
+        for (String token : tokenize(text)) {
+            extraTerms.computeIfAbsent(token, k -> new IntList()).add(doc << FIELD_BITS | field);
+        }
+    }
+
+    /**
+     * Returns the catalog part of the index, building it on first use.
+     *
+     * @return catalog terms
+     */
+    private CatalogTerms catalogTerms() {
+        CatalogTerms ct = catalogTerms;
+        if (ct != null) return ct;
+        synchronized (catalogLock) {
+            if (catalogTerms == null) catalogTerms = buildCatalogTerms();
+            return catalogTerms;
+        }
+    }
+
+    /**
+     * Tokenizes every catalog item into sorted term and posting arrays, and indexes the
+     * trigrams of every term.
+     *
+     * @return catalog terms
+     */
+    private CatalogTerms buildCatalogTerms() {
+        // Postings are first collected as (term number, posting) pairs in item order, then
+        // grouped by term with a counting sort, which avoids a growable list per term.
+        Map<String, Integer> termIds = new HashMap<>();
+        IntList pairTerms = new IntList();
+        IntList pairPostings = new IntList();
+        byte[] nameTokens = new byte[catalogSize];
+        Map<String, Set<String>> tokenCache = new HashMap<>();
+
+        for (int doc = 0; doc < catalogSize; doc++) {
+            Set<String> nameSet = tokenize(catalog.nameAt(doc));
+            nameTokens[doc] = (byte) Math.min(nameSet.size(), Byte.MAX_VALUE);
+            for (String token : nameSet) {
+                addPair(termIds, pairTerms, pairPostings, token, doc << FIELD_BITS | FIELD_NAME);
+            }
+            // Brands and categories repeat across many items, so their tokens are computed once.
+            String brand = catalog.brandAt(doc);
+            if (brand != null) {
+                for (String token : tokenCache.computeIfAbsent(brand, FoodSearchIndex::tokenize)) {
+                    addPair(termIds, pairTerms, pairPostings, token, doc << FIELD_BITS | FIELD_BRAND);
+                }
+            }
+            String category = catalog.categoryAt(doc);
+            if (category != null) {
+                for (String token : tokenCache.computeIfAbsent(category, FoodSearchIndex::tokenize)) {
+                    addPair(termIds, pairTerms, pairPostings, token, doc << FIELD_BITS | FIELD_CATEGORY);
+                }
+            }
+        }
+
+        String[] terms = termIds.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] rank = new int[terms.length];
+        for (int t = 0; t < terms.length; t++) rank[termIds.get(terms[t])] = t;
+
+        int[] offsets = new int[terms.length + 1];
+        for (int k = 0; k < pairTerms.size; k++) offsets[rank[pairTerms.values[k]] + 1]++;
+        for (int t = 0; t < terms.length; t++) offsets[t + 1] += offsets[t];
+
+        int[] next = Arrays.copyOf(offsets, terms.length);
+        int[] postings = new int[pairPostings.size];
+        for (int k = 0; k < pairPostings.size; k++) {
+            postings[next[rank[pairTerms.values[k]]]++] = pairPostings.values[k];
+        }
+
+        // Trigram index over the vocabulary. Pure numbers are left out: a typo in a number
+        // is not a near miss worth suggesting.
+        Map<Long, IntList> termsByGram = new HashMap<>();
+        for (int t = 0; t < terms.length; t++) {
+            if (isNumber(terms[t])) continue;
+            for (long gram : trigrams(terms[t])) termsByGram.computeIfAbsent(gram, k -> new IntList()).add(t);
+        }
+        long[] grams = new long[termsByGram.size()];
+        int g = 0;
+        for (long gram : termsByGram.keySet()) grams[g++] = gram;
+        Arrays.sort(grams);
+        int[] gramOffsets = new int[grams.length + 1];
+        for (g = 0; g < grams.length; g++) gramOffsets[g + 1] = gramOffsets[g] + termsByGram.get(grams[g]).size;
+        int[] gramTerms = new int[gramOffsets[grams.length]];
+        for (g = 0; g < grams.length; g++) {
+            IntList list = termsByGram.get(grams[g]);
+            System.arraycopy(list.values, 0, gramTerms, gramOffsets[g], list.size);
+        }
+
+        return new CatalogTerms(terms, offsets, postings, nameTokens, grams, gramOffsets, gramTerms);
+    }
+
+    /**
+     * Records one catalog posting during the build.
+     *
+     * @param termIds term numbers assigned so far
+     * @param pairTerms term number of each posting
+     * @param pairPostings each posting
+     * @param token token the posting belongs to
+     * @param posting document number and field code
+     */
+    private static void addPair(Map<String, Integer> termIds, IntList pairTerms, IntList pairPostings, String token, int posting) {
+        Integer id = termIds.get(token);
+        if (id == null) {
+            id = termIds.size();
+            termIds.put(token, id);
+        }
+        pairTerms.add(id);
+        pairPostings.add(posting);
+    }
+
+    /**
+     * Splits text into distinct lower-case tokens of letters and digits.
+     *
+     * @param text text to split (null is treated as empty)
+     * @return tokens in order of first appearance
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        if (text == null) return out;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean word = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                out.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the distinct trigrams of a token padded on both sides, each packed into a long,
+     * in ascending order. A token of n characters has up to n trigrams.
+     *
+     * @param token token to split
+     * @return sorted distinct trigrams
+     */
+    static long[] trigrams(String token) {
+        String padded = TRIGRAM_PAD + token + TRIGRAM_PAD;
+        long[] out = new long[padded.length() - 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(out);
+        int n = 0;
+        for (int i = 0; i < out.length; i++) {
+            if (i == 0 || out[i] != out[i - 1]) out[n++] = out[i];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Computes the Dice similarity of two sorted trigram sets.
+     *
+     * @param a trigrams of the first token
+     * @param b trigrams of the second token
+     * @return similarity between 0 (nothing shared) and 1 (identical sets)
+     */
+    static double similarity(long[] a, long[] b) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return a.length + b.length == 0 ? 0 : 2.0 * common / (a.length + b.length);
+    }
+
+    /**
+     * Returns whether a token consists only of digits.
+     *
+     * @param token token to check
+     * @return true for numeric tokens
+     */
+    private static boolean isNumber(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sorted terms, flattened posting lists and the trigram index of the catalog items.
+     */
+    private static final class CatalogTerms {
+
+        /** Distinct tokens in sorted order. */
+        final String[] terms;
+
+        /** Start of each term's postings in {@link #postings}; the last entry is the total count. */
+        final int[] offsets;
+
+        /** Postings of all terms, each a document number shifted left by {@link #FIELD_BITS} plus a field code. */
+        final int[] postings;
+
+        /** Number of name tokens of each catalog item. */
+        final byte[] nameTokens;
+
+        /** Distinct trigrams of all non-numeric terms, in ascending order. */
+        final long[] grams;
+
+        /** Start of each trigram's term list in {@link #gramTerms}; the last entry is the total count. */
+        final int[] gramOffsets;
+
+        /** Term numbers containing each trigram. */
+        final int[] gramTerms;
+
+        CatalogTerms(String[] terms, int[] offsets, int[] postings, byte[] nameTokens,
+                     long[] grams, int[] gramOffsets, int[] gramTerms) {
+            this.terms = terms;
+            this.offsets = offsets;
+            this.postings = postings;
+            this.nameTokens = nameTokens;
+            this.grams = grams;
+            this.gramOffsets = gramOffsets;
+            this.gramTerms = gramTerms;
+        }
+
+        /**
+         * Finds the first term that sorts at or after a token; every term with that token as a
+         * prefix follows it contiguously.
+         *
+         * @param token query token
+         * @return position of the first such term (may equal {@code terms.length})
+         */
+        int firstTermAtOrAfter(String token) {
+            int i = Arrays.binarySearch(terms, token);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /**
+     * The indexed tokens one query token matches: the range of catalog terms it is a prefix of
+     * (prefixed tokens outside the catalog are looked up while scoring) and, for fuzzy searches,
+     * the most similar tokens with their weights.
+     */
+    private static final class Expansion {
+
+        /** Query token. */
+        final String token;
+
+        /** First catalog term starting with the token. */
+        final int lo;
+
+        /** End (exclusive) of the catalog terms starting with the token. */
+        final int hi;
+
+        /** Similar catalog terms. */
+        final IntList similarCatalogTerms = new IntList();
+
+        /** Match weight of each similar catalog term. */
+        final IntList similarCatalogWeights = new IntList();
+
+        /** Similar tokens outside the catalog. */
+        final List<String> similarExtraTerms = new ArrayList<>();
+
+        /** Match weight of each similar token outside the catalog. */
+        final IntList similarExtraWeights = new IntList();
+
+        Expansion(String token, CatalogTerms ct) {
+            this.token = token;
+            this.lo = ct.firstTermAtOrAfter(token);
+            this.hi = ct.firstTermAtOrAfter(token + Character.MAX_VALUE);
+        }
+
+        /**
+         * Returns whether the query token matched no catalog term and no similar term.
+         *
+         * @return true if nothing in the catalog or among similar terms matched
+         */
+        boolean isEmpty() {
+            return lo == hi && similarCatalogTerms.size == 0 && similarExtraTerms.isEmpty();
+        }
+
+        /**
+         * Counts the catalog postings this expansion will visit, used to process the most
+         * selective query token first.
+         *
+         * @param ct catalog part of the index
+         * @return number of postings
+         */
+        int postingCount(CatalogTerms ct) {
+            int n = ct.offsets[hi] - ct.offsets[lo];
+            for (int k = 0; k < similarCatalogTerms.size; k++) {
+                int t = similarCatalogTerms.values[k];
+                n += ct.offsets[t + 1] - ct.offsets[t];
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Growable list of primitive ints.
+     */
+    private static final class IntList {
+
+        /** Backing storage. */
+        int[] values = new int[4];
+
+        /** Number of values in use. */
+        int size;
+
+        /**
+         * Appends a value.
+         *
+         * @param v value to append
+         */
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Interval index over one user's goal history, answering "which goal applied on this date" in
+ * O(log n).
+ *
+ * <p>Goals are kept in the order they were set. Setting a goal supersedes every earlier goal from
+ * the new goal's start date on, the same way saving goals used to replace them, but the earlier
+ * goals keep the days they did apply to. So each goal applies from its start date until the
+ * earliest of its own end date and the day before a later-set goal starts; those effective
+ * intervals never overlap. They are stored sorted by start day in parallel arrays, and a date is
+ * looked up by binary search for the last interval starting on or before it.</p>
+ *
+ * <p>The index is built from a {@link UserShard}'s goals and rebuilt by the shard when its goals
+ * change; it is not saved itself.</p>
+ */
+public final class GoalHistory {
+
+    /** Effective start day of each interval, as an epoch day, ascending. */
+    private final long[] starts;
+
+    /** Effective end day of each interval (inclusive), as an epoch day. */
+    private final long[] ends;
+
+    /** Goal of each interval. */
+    private final Goal[] goals;
+
+    /**
+     * Builds the index over a user's goals.
+     *
+     * @param history goals in the order they were set, oldest first (goals without both dates are skipped)
+     */
+    public GoalHistory(List<Goal> history) {
+        List<Goal> applied = new ArrayList<>();
+        List<long[]> intervals = new ArrayList<>();
+        long supersededFrom = Long.MAX_VALUE;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            Goal g = history.get(i);
+            if (g == null || g.getStartDate() == null || g.getEndDate() == null) continue;
+            long start = g.getStartDate().toEpochDay();
+            long end = Math.min(g.getEndDate().toEpochDay(), supersededFrom - 1);
+            supersededFrom = Math.min(supersededFrom, start);
+            if (end < start) continue;
+            applied.add(g);
+            intervals.add(new long[] {start, end});
+        }
+
+        Integer[] order = new Integer[applied.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(intervals.get(a)[0], intervals.get(b)[0]));
+
+        starts = new long[order.length];
+        ends = new long[order.length];
+        goals = new Goal[order.length];
+        for (int i = 0; i < order.length; i++) {
+            starts[i] = intervals.get(order[i])[0];
+            ends[i] = intervals.get(order[i])[1];
+            goals[i] = applied.get(order[i]);
+        }
+    }
+
+    /**
+     * Returns the goal that applied on a date.
+     *
+     * @param date date of interest
+     * @return the goal, or null if no goal applied that day
+     */
+    public Goal goalOn(LocalDate date) {
+        if (date == null) return null;
+        long day = date.toEpochDay();
+        int lo = 0;
+        int hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= day) lo = mid + 1;
+            else hi = mid;
+        }
+        int i = lo - 1;
+        return i >= 0 && day <= ends[i] ? goals[i] : null;
+    }
+
+    /**
+     * Returns the number of goals that applied on at least one day.
+     *
+     * @return number of effective intervals
+     */
+    public int size() {
+        return goals.length;
+    }
+}
@@ -0,0 +1,155 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Two-way dictionary between the string IDs the rest of the app sees and small 64-bit keys used
+ * inside the model. Each distinct string is given the next key, starting at 1, and keeps it for
+ * the life of the dictionary, so indexes can be keyed by {@code long} (see {@link LongMap}) and
+ * columns can hold a number instead of a string reference. Strings are found through an
+ * open-addressing table of keys probed on the string's hash, so lookups box nothing and allocate
+ * no entry objects.
+ *
+ * <p>This class also defines the compact ID format used for new entities: a random 64-bit value
+ * written as 16 lowercase hex digits ({@link #newId()}), in place of a 36-character UUID string.
+ * A compact ID can be stored as its {@code long} value ({@link #parseCompact(String)}) and turned
+ * back into exactly the same string ({@link #formatCompact(long)}). IDs created before this
+ * format existed are left as they are.</p>
+ */
+public final class IdDictionary {
+
+    /** Key that no string is ever given; returned for unknown strings and for null. */
+    public static final long NONE = 0L;
+
+    /** Number of hex digits in a compact ID. */
+    private static final int COMPACT_LENGTH = 16;
+
+    /** Random source for new IDs. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Strings by key (index 0 is unused). */
+    private String[] names = new String[8];
+
+    /** Hash table of keys, probed linearly from the string's hash; {@link #NONE} marks a free slot. */
+    private int[] slots = new int[16];
+
+    /** Number of strings in the dictionary; also the last key given. */
+    private int size;
+
+    /**
+     * Returns the key of a string, giving it the next key if it has none yet.
+     *
+     * @param name string ID
+     * @return its key, or {@link #NONE} for null
+     */
+    public long keyOf(String name) {
+        if (name == null) return NONE;
+        int i = slotOf(name);
+        if (slots[i] != NONE) return slots[i];
+
+        int next = ++size;
+        if (next == names.length) names = Arrays.copyOf(names, names.length * 2);
+        names[next] = name;
+        slots[i] = next;
+        if (size * 4 > slots.length * 3) rehash(slots.length * 2);
+        return next;
+    }
+
+    /**
+     * Returns the key of a string without adding it.
+     *
+     * @param name string ID
+     * @return its key, or {@link #NONE} if it has none (or is null)
+     */
+    public long find(String name) {
+        return name == null ? NONE : slots[slotOf(name)];
+    }
+
+    /**
+     * Returns the string a key was given to.
+     *
+     * @param key key
+     * @return the string ID, or null for {@link #NONE} or an unknown key
+     */
+    public String nameOf(long key) {
+        return key <= NONE || key > size ? null : names[(int) key];
+    }
+
+    /**
+     * Returns the number of strings in the dictionary.
+     *
+     * @return dictionary size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot holding a string's key, or the free slot where its key would go.
+     *
+     * @param name string ID (not null)
+     * @return slot index in {@link #slots}
+     */
+    private int slotOf(String name) {
+        int mask = slots.length - 1;
+        int h = name.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        while (slots[i] != NONE && !name.equals(names[slots[i]])) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Rebuilds the hash table at a new size.
+     *
+     * @param capacity new table length (a power of two)
+     */
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int key = 1; key <= size; key++) slots[slotOf(names[key])] = key;
+    }
+
+    /**
+     * Creates an ID for a new entity in the compact format.
+     *
+     * @return 16 lowercase hex digits of a random, non-zero 64-bit value
+     */
+    public static String newId() {
+        long v;
+        do {
+            v = RANDOM.nextLong();
+        } while (v == NONE);
+        return formatCompact(v);
+    }
+
+    /**
+     * Returns the value of a compact ID.
+     *
+     * @param id string ID
+     * @return the 64-bit value, or {@link #NONE} if {@code id} is not exactly in the compact format
+     */
+    public static long parseCompact(String id) {
+        if (id == null || id.length() != COMPACT_LENGTH) return NONE;
+        long v = 0;
+        for (int i = 0; i < COMPACT_LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') digit = c - '0';
+            else if (c >= 'a' && c <= 'f') digit = c - 'a' + 10;
+            else return NONE;
+            v = (v << 4) | digit;
+        }
+        return v;
+    }
+
+    /**
+     * Writes a 64-bit value as a compact ID.
+     *
+     * @param value non-zero value
+     * @return 16 lowercase hex digits
+     */
+    public static String formatCompact(long value) {
+        String hex = Long.toHexString(value);
+        return "0".repeat(COMPACT_LENGTH - hex.length()) + hex;
+    }
+}
@@ -0,0 +1,293 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a single mutation recorded in the {@link DataJournal}.
+ * Each entry describes one change to the model (a logged food, a deleted custom food,
+ * a goal update, and so on) and carries just enough data for {@link DataManager}
+ * to re-apply it on top of the last saved snapshot.
+ *
+ * <p>Entries are created through the static factory methods, one per {@link Type}.
+ * Fields that do not apply to a given type are left null.</p>
+ */
+public class JournalEntry implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Kind of mutation this entry records. */
+    private Type type;
+
+    /** ID of the user the mutation belongs to (or the old email for an email change). */
+    private String userId;
+
+    /** Date of the affected DayLog, if any. */
+    private LocalDate date;
+
+    /** ID of the affected entity (FoodLog, CustomFood, or the recipe for a component change) or the new email for an email change. */
+    private String targetId;
+
+    /** Model object carried by the entry (FoodLog, CustomFood, User, goal list, or recipe component). */
+    private Serializable payload;
+
+    /** Password salt stored with an account entry. */
+    private String passwordSalt;
+
+    /** Password hash stored with an account entry. */
+    private String passwordHash;
+
+    /** Default constructor for serialization. */
+    public JournalEntry() {
+    }
+
+    /**
+     * Constructs an entry of the given type.
+     *
+     * @param type kind of mutation
+     * @param userId affected user ID
+     * @param date affected date
+     * @param targetId affected entity ID
+     * @param payload model object carried by the entry
+     */
+    private JournalEntry(Type type, String userId, LocalDate date, String targetId, Serializable payload) {
+        this.type = type;
+        this.userId = userId;
+        this.date = date;
+        this.targetId = targetId;
+        this.payload = payload;
+    }
+
+    /**
+     * Creates an entry recording a FoodLog added to a user's day.
+     *
+     * @param userId owner of the DayLog
+     * @param date date of the DayLog
+     * @param log the food log that was added
+     * @return journal entry
+     */
+    public static JournalEntry foodLogAdded(String userId, LocalDate date, FoodLog log) {
+        return new JournalEntry(Type.FOOD_LOG_ADDED, userId, date, log == null ? null : log.getId(), log);
+    }
+
+    /**
+     * Creates an entry recording a FoodLog removed from a user's day.
+     *
+     * @param userId owner of the DayLog
+     * @param date date of the DayLog
+     * @param foodLogId ID of the removed food log
+     * @return journal entry
+     */
+    public static JournalEntry foodLogRemoved(String userId, LocalDate date, String foodLogId) {
+        return new JournalEntry(Type.FOOD_LOG_REMOVED, userId, date, foodLogId, null);
+    }
+
+    /**
+     * Creates an entry recording a newly created CustomFood (including its generated Food item).
+     *
+     * @param customFood the custom food that was created
+     * @return journal entry
+     */
+    public static JournalEntry customFoodCreated(CustomFood customFood) {
+        return new JournalEntry(Type.CUSTOM_FOOD_CREATED, customFood.getUserId(), null, customFood.getId(), customFood);
+    }
+
+    /**
+     * Creates an entry recording a deleted CustomFood.
+     *
+     * @param userId owner of the custom food (null in entries written before per-user shards)
+     * @param customFoodId ID of the deleted custom food
+     * @return journal entry
+     */
+    public static JournalEntry customFoodDeleted(String userId, String customFoodId) {
+        return new JournalEntry(Type.CUSTOM_FOOD_DELETED, userId, null, customFoodId, null);
+    }
+
+    /**
+     * Creates an entry recording servings of one custom food added to another.
+     *
+     * @param userId owner of both custom foods
+     * @param customFoodId ID of the recipe that was extended
+     * @param componentId ID of the custom food used in it
+     * @param servings servings added
+     * @return journal entry
+     */
+    public static JournalEntry customFoodComponentAdded(String userId, String customFoodId, String componentId, double servings) {
+        return new JournalEntry(Type.CUSTOM_FOOD_COMPONENT_ADDED, userId, null, customFoodId, new AbstractMap.SimpleEntry<>(componentId, servings));
+    }
+
+    /**
+     * Creates an entry recording a custom food removed from another's components.
+     *
+     * @param userId owner of both custom foods
+     * @param customFoodId ID of the recipe
+     * @param componentId ID of the removed component
+     * @return journal entry
+     */
+    public static JournalEntry customFoodComponentRemoved(String userId, String customFoodId, String componentId) {
+        return new JournalEntry(Type.CUSTOM_FOOD_COMPONENT_REMOVED, userId, null, customFoodId, componentId);
+    }
+
+    /**
+     * Creates an entry recording that a user's goals were replaced. Only older versions journal
+     * this; goals are now added with {@link #goalAdded}, and these entries are only decoded and
+     * replayed.
+     *
+     * @param userId owner of the goals (null in entries written before per-user shards)
+     * @param goals the new goal list
+     * @return journal entry
+     */
+    public static JournalEntry goalsReplaced(String userId, List<Goal> goals) {
+        return new JournalEntry(Type.GOALS_REPLACED, userId, null, null, new ArrayList<>(goals));
+    }
+
+    /**
+     * Creates an entry recording a goal added to a user's goal history.
+     *
+     * @param userId owner of the goal
+     * @param goal the new goal
+     * @return journal entry
+     */
+    public static JournalEntry goalAdded(String userId, Goal goal) {
+        return new JournalEntry(Type.GOAL_ADDED, userId, null, goal.getId(), goal);
+    }
+
+    /**
+     * Creates an entry recording a created or updated account.
+     *
+     * @param user the account's user object
+     * @param passwordSalt stored password salt
+     * @param passwordHash stored password hash
+     * @return journal entry
+     */
+    public static JournalEntry accountSaved(User user, String passwordSalt, String passwordHash) {
+        JournalEntry e = new JournalEntry(Type.ACCOUNT_SAVED, user.getId(), null, null, user);
+        e.passwordSalt = passwordSalt;
+        e.passwordHash = passwordHash;
+        return e;
+    }
+
+    /**
+     * Creates an entry recording an account email change. Entries written before users had
+     * surrogate IDs carry the previous email in place of the user ID.
+     *
+     * @param userId ID of the account
+     * @param newEmail new (normalized) email
+     * @return journal entry
+     */
+    public static JournalEntry accountEmailChanged(String userId, String newEmail) {
+        return new JournalEntry(Type.ACCOUNT_EMAIL_CHANGED, userId, null, newEmail, null);
+    }
+
+    /**
+     * Creates an entry recording a login or logout.
+     *
+     * @param userId ID of the newly active user, or null after logout
+     * @return journal entry
+     */
+    public static JournalEntry activeUserChanged(String userId) {
+        return new JournalEntry(Type.ACTIVE_USER_CHANGED, userId, null, null, null);
+    }
+
+    /**
+     * Returns the entry type.
+     *
+     * @return kind of mutation
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the affected user ID.
+     *
+     * @return user ID
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Returns the affected date.
+     *
+     * @return date of the affected DayLog
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the affected entity ID.
+     *
+     * @return entity ID
+     */
+    public String getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * Returns the payload object.
+     *
+     * @return model object carried by this entry
+     */
+    public Serializable getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns the password salt for account entries.
+     *
+     * @return password salt
+     */
+    public String getPasswordSalt() {
+        return passwordSalt;
+    }
+
+    /**
+     * Returns the password hash for account entries.
+     *
+     * @return password hash
+     */
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    /**
+     * Enumerates the mutations that can be recorded in the journal.
+     * User-scoped mutations are journaled in the owning user's shard; the rest in the global journal.
+     */
+    public enum Type {
+        FOOD_LOG_ADDED(true),
+        FOOD_LOG_REMOVED(true),
+        CUSTOM_FOOD_CREATED(true),
+        CUSTOM_FOOD_DELETED(true),
+        GOALS_REPLACED(true),
+        ACCOUNT_SAVED(false),
+        ACCOUNT_EMAIL_CHANGED(false),
+        ACTIVE_USER_CHANGED(false),
+        CUSTOM_FOOD_COMPONENT_ADDED(true),
+        CUSTOM_FOOD_COMPONENT_REMOVED(true),
+        GOAL_ADDED(true);
+
+        /** Whether the mutation changes one user's shard rather than global data. */
+        private final boolean userScoped;
+
+        Type(boolean userScoped) {
+            this.userScoped = userScoped;
+        }
+
+        /**
+         * Returns whether this mutation belongs in a user's shard.
+         *
+         * @return true for user-scoped mutations
+         */
+        public boolean isUserScoped() {
+            return userScoped;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One persistent data file: a {@link SnapshotStore} plus the {@link DataJournal} of changes
+ * made since that snapshot was written.
+ *
+ * <p>{@link DataManager} keeps one store for the global data (accounts, credentials, food catalog)
+ * and one per user shard. The store tracks, on the caller's thread, how large its journal has
+ * grown and whether it holds changes that are not yet folded into a snapshot, so only dirty
+ * files are rewritten on save. All disk writes are handed to the shared {@link PersistenceService}.</p>
+ *
+ * <p>A store can also own segment files whose changes are journaled in its journal (a user's
+ * monthly DayLog segments). Segment payloads handed to {@link #writeSnapshot(PersistenceService, byte[], Map)}
+ * accumulate until the writer runs and are always written before the snapshot, so the journal is
+ * only cleared once every change it holds is on disk.</p>
+ */
+public class JournaledStore {
+
+    /** Snapshot generations of this file. */
+    private final SnapshotStore snapshots;
+
+    /** Journal of changes made since the last snapshot. */
+    private final DataJournal journal;
+
+    /** Bytes appended to the journal since the last snapshot request. */
+    private long journalBytes;
+
+    /** Whether this file has changes that are not yet part of a requested snapshot. */
+    private boolean dirty;
+
+    /**
+     * Whether the journal holds records that are not reflected in memory: records this version
+     * could not read, entries on top of a snapshot that could not be read, or entries for a month
+     * whose segment could not be read. Such a journal is never cleared, so snapshot writes are
+     * refused for as long as it exists.
+     */
+    private boolean journalKept;
+
+    /** Segment payloads waiting to be written with the next snapshot. */
+    private final Map<SnapshotStore, byte[]> pendingSegments = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a store for a snapshot and journal kept in the given directory.
+     *
+     * @param directory    directory holding both files
+     * @param snapshotFile file name of the snapshot
+     * @param journalFile  file name of the journal
+     * @param generations  number of snapshot generations to keep
+     */
+    public JournaledStore(Path directory, String snapshotFile, String journalFile, int generations) {
+        this.snapshots = new SnapshotStore(directory, snapshotFile, generations);
+        this.journal = new DataJournal(directory.resolve(journalFile));
+    }
+
+    /**
+     * Reads the newest valid snapshot.
+     *
+     * @param reader parses the snapshot payload
+     * @param <T> type produced by the reader
+     * @return the parsed snapshot, or null if none exists
+     * @throws IOException if snapshots exist but none of them can be read; the journal is then
+     *                     kept and snapshot writes are refused, so the files stay as they are
+     */
+    public <T> T readSnapshot(SnapshotStore.Reader<T> reader) throws IOException {
+        try {
+            return snapshots.read(reader);
+        } catch (IOException e) {
+            journalKept = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every journal entry written since the last snapshot. A non-empty journal marks the
+     * store dirty, so the entries are folded into the next snapshot.
+     *
+     * @return journal entries in append order
+     * @throws IOException if the journal cannot be read; the store then refuses snapshot writes
+     */
+    public List<JournalEntry> readJournal() throws IOException {
+        List<JournalEntry> entries;
+        try {
+            entries = journal.readAll();
+        } catch (IOException e) {
+            journalKept = true;
+            throw e;
+        }
+        journalBytes = journal.size();
+        if (!entries.isEmpty()) dirty = true;
+        return entries;
+    }
+
+    /**
+     * Keeps the journal as it is: snapshot writes are refused from now on, so it is never
+     * cleared. Used when a replayed entry could not be applied.
+     */
+    public void keepJournal() {
+        journalKept = true;
+    }
+
+    /**
+     * Queues one entry for appending to the journal.
+     *
+     * @param writer background writer
+     * @param entry mutation to persist
+     * @return true if the entry was queued, false if it could not be encoded (a snapshot is then needed)
+     */
+    public boolean append(PersistenceService writer, JournalEntry entry) {
+        dirty = true;
+        byte[] record;
+        try {
+            record = DataJournal.encode(entry);
+        } catch (IOException e) {
+            return false;
+        }
+        writer.submit(() -> journal.append(record));
+        journalBytes += DataJournal.frameSize(record);
+        return true;
+    }
+
+    /**
+     * Queues a snapshot write of an already encoded payload. Requests for this store made before
+     * the writer gets to them are merged into one write of the latest payload. Once the snapshot
+     * is in place the journal is cleared; on failure the previous snapshot and the journal are
+     * left intact. Nothing is written if the journal must be kept (see {@link #keepJournal()}),
+     * since clearing it would discard records that are not in memory.
+     *
+     * @param writer background writer
+     * @param payload encoded snapshot
+     */
+    public void writeSnapshot(PersistenceService writer, byte[] payload) {
+        writeSnapshot(writer, payload, Map.of());
+    }
+
+    /**
+     * Queues a snapshot write together with changed segment files. Segments handed to earlier
+     * requests that have not been written yet are kept, so merging requests never drops a segment.
+     *
+     * @param writer background writer
+     * @param payload encoded snapshot
+     * @param segments encoded segment payloads by segment store
+     */
+    public void writeSnapshot(PersistenceService writer, byte[] payload, Map<SnapshotStore, byte[]> segments) {
+        if (journalKept) return;
+        journalBytes = 0;
+        dirty = false;
+        pendingSegments.putAll(segments);
+        writer.submitCoalesced(this, () -> {
+            for (SnapshotStore segment : List.copyOf(pendingSegments.keySet())) {
+                byte[] bytes = pendingSegments.remove(segment);
+                if (bytes != null) segment.write(out -> out.write(bytes));
+            }
+            snapshots.write(out -> out.write(payload));
+            try {
+                journal.clear();
+            } catch (IOException ignored) {
+                // Leftover entries are idempotent and are simply re-applied on the next load.
+            }
+        });
+    }
+
+    /**
+     * Returns how many bytes were appended to the journal since the last snapshot request.
+     *
+     * @return journal growth in bytes
+     */
+    public long getJournalBytes() {
+        return journalBytes;
+    }
+
+    /**
+     * Returns whether this store has changes that are not yet part of a requested snapshot.
+     *
+     * @return true if a snapshot write is needed
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks this store as needing a snapshot write, for example after a migration or a failed write.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+}
@@ -0,0 +1,205 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive {@code long} keys to positive {@code int} counts, laid out like
+ * {@link LongMap} but with the values in an {@code int[]}, so neither keys nor counts are ever
+ * boxed. A count of zero means the key is absent: a count that drops to zero removes its key.
+ *
+ * <p>The table size is a power of two and is doubled once it is three quarters full. Removal
+ * shifts later entries of the same probe run back into the freed slot, so no tombstones are left
+ * behind.</p>
+ */
+public final class LongIntMap {
+
+    /** Multiplier used to spread keys over the table (the 64-bit golden ratio). */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /** Keys by slot. */
+    private long[] keys;
+
+    /** Counts by slot; zero marks an empty slot. */
+    private int[] values;
+
+    /** Number of entries. */
+    private int size;
+
+    /** Creates an empty map. */
+    public LongIntMap() {
+        keys = new long[8];
+        values = new int[8];
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the map has no entries.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the count for a key.
+     *
+     * @param key key
+     * @return the count, or 0 if the key is not present
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key key
+     * @return true if the map holds a count for it
+     */
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    /**
+     * Sets the count for a key. A count of zero or less removes the key.
+     *
+     * @param key   key
+     * @param value new count
+     */
+    public void put(long key, int value) {
+        if (value <= 0) {
+            remove(key);
+            return;
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * 3 / 4) resize(keys.length * 2);
+    }
+
+    /**
+     * Changes the count for a key, removing the key once its count drops to zero or less.
+     *
+     * @param key   key
+     * @param delta change in the count
+     * @return the new count (0 if the key was removed or never added)
+     */
+    public int add(long key, int delta) {
+        int total = get(key) + delta;
+        put(key, total);
+        return Math.max(0, total);
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key key
+     * @return the removed count, or 0 if the key was not present
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) break;
+        }
+        if (values[i] == 0) return 0;
+
+        int old = values[i];
+        // Shift later entries of the probe run back so none is left behind an empty slot.
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = 0;
+        size--;
+        return old;
+    }
+
+    /** Removes every entry, keeping the current capacity. */
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Passes every entry to an action, in slot order.
+     *
+     * @param action receives each key together with its count
+     */
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) action.accept(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * Returns the home slot of a key.
+     *
+     * @param key  key
+     * @param mask table length minus one
+     * @return slot index
+     */
+    private static int slot(long key, int mask) {
+        long h = key * MIX;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Rehashes every entry into a table of a new size.
+     *
+     * @param capacity new table length (a power of two)
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == 0) continue;
+            int i = slot(oldKeys[j], mask);
+            while (values[i] != 0) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Receives the entries of a {@link LongIntMap}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Accepts one entry.
+         *
+         * @param key   key
+         * @param value count
+         */
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,228 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash map from primitive {@code long} keys to objects, using open addressing with linear probing.
+ * Keys are never boxed, and entries live in two parallel arrays instead of one node object each,
+ * so lookups on surrogate IDs (see {@link IdDictionary}) cost a multiply, a mask and usually a
+ * single array probe.
+ *
+ * <p>The table size is a power of two and is doubled once it is three quarters full. Removal
+ * shifts later entries of the same probe run back into the freed slot, so no tombstones are left
+ * behind and lookups never slow down after many removals. Null values are not allowed.</p>
+ *
+ * @param <V> value type
+ */
+public final class LongMap<V> {
+
+    /** Multiplier used to spread keys over the table (the 64-bit golden ratio). */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /** Keys by slot. */
+    private long[] keys;
+
+    /** Values by slot; null marks an empty slot. */
+    private Object[] values;
+
+    /** Number of entries. */
+    private int size;
+
+    /** Creates an empty map. */
+    public LongMap() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty map sized for a number of entries.
+     *
+     * @param expected number of entries to make room for
+     */
+    public LongMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 4 / 3) * 2 - 1);
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the map has no entries.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key key
+     * @return the value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return (V) values[i];
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key key
+     * @return true if the map holds a value for it
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value for a key.
+     *
+     * @param key   key
+     * @param value value (must not be null)
+     * @return the previous value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("LongMap values must not be null");
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * 3 / 4) resize(keys.length * 2);
+        return null;
+    }
+
+    /**
+     * Returns the value for a key, first storing one made by a function if the key is absent.
+     *
+     * @param key      key
+     * @param function creates the value for an absent key (must not return null)
+     * @return the existing or new value
+     */
+    public V computeIfAbsent(long key, LongFunction<V> function) {
+        V v = get(key);
+        if (v != null) return v;
+        v = function.apply(key);
+        put(key, v);
+        return v;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key key
+     * @return the removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) break;
+        }
+        if (values[i] == null) return null;
+
+        V old = (V) values[i];
+        // Shift later entries of the probe run back so none is left behind an empty slot.
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    /** Removes every entry, keeping the current capacity. */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Returns the values in slot order.
+     *
+     * @return a new list of the values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> out = new ArrayList<>(size);
+        for (Object v : values) {
+            if (v != null) out.add((V) v);
+        }
+        return out;
+    }
+
+    /**
+     * Passes every entry to an action, in slot order.
+     *
+     * @param action receives each value together with its key
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) action.accept((V) values[i], keys[i]);
+        }
+    }
+
+    /**
+     * Returns the home slot of a key.
+     *
+     * @param key  key
+     * @param mask table length minus one
+     * @return slot index
+     */
+    private static int slot(long key, int mask) {
+        long h = key * MIX;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Rehashes every entry into a table of a new size.
+     *
+     * @param capacity new table length (a power of two)
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = slot(oldKeys[j], mask);
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable nutrient amounts: calories plus protein, carbohydrate and fat grams.
+ *
+ * <p>All nutrient math in the model ({@link Food}, {@link FoodLog}, {@link CustomFood} and
+ * {@link DayLog}) is done with this type instead of {@code Map<String, Double>}, so adding up a
+ * day or a recipe works on plain doubles without boxing or map allocation. The map-returning
+ * methods on those classes remain as adapters built with {@link #toMap()}.</p>
+ *
+ * <p>When summing many values, use an {@link Accumulator} to avoid creating an intermediate
+ * {@code Macros} for every step.</p>
+ */
+public final class Macros implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** All nutrients zero. */
+    public static final Macros ZERO = new Macros(0.0, 0.0, 0.0, 0.0);
+
+    /** Calories. */
+    private final double calories;
+
+    /** Protein in grams. */
+    private final double proteinG;
+
+    /** Carbohydrates in grams. */
+    private final double carbsG;
+
+    /** Fat in grams. */
+    private final double fatG;
+
+    /**
+     * Creates a nutrient vector.
+     *
+     * @param calories calories
+     * @param proteinG protein (g)
+     * @param carbsG carbohydrates (g)
+     * @param fatG fat (g)
+     */
+    public Macros(double calories, double proteinG, double carbsG, double fatG) {
+        this.calories = calories;
+        this.proteinG = proteinG;
+        this.carbsG = carbsG;
+        this.fatG = fatG;
+    }
+
+    /**
+     * Returns calories.
+     *
+     * @return calories
+     */
+    public double getCalories() {
+        return calories;
+    }
+
+    /**
+     * Returns protein grams.
+     *
+     * @return protein (g)
+     */
+    public double getProteinG() {
+        return proteinG;
+    }
+
+    /**
+     * Returns carbohydrate grams.
+     *
+     * @return carbohydrates (g)
+     */
+    public double getCarbsG() {
+        return carbsG;
+    }
+
+    /**
+     * Returns fat grams.
+     *
+     * @return fat (g)
+     */
+    public double getFatG() {
+        return fatG;
+    }
+
+    /**
+     * Returns the element-wise sum of this vector and another.
+     *
+     * @param other amounts to add (null is treated as zero)
+     * @return summed amounts
+     */
+    public Macros plus(Macros other) {
+        if (other == null) return this;
+        return new Macros(calories + other.calories, proteinG + other.proteinG, carbsG + other.carbsG, fatG + other.fatG);
+    }
+
+    /**
+     * Returns the element-wise difference of this vector and another.
+     *
+     * @param other amounts to subtract (null is treated as zero)
+     * @return remaining amounts
+     */
+    public Macros minus(Macros other) {
+        if (other == null) return this;
+        return new Macros(calories - other.calories, proteinG - other.proteinG, carbsG - other.carbsG, fatG - other.fatG);
+    }
+
+    /**
+     * Returns every amount multiplied by a factor, such as a serving count.
+     *
+     * @param factor multiplier
+     * @return scaled amounts
+     */
+    public Macros scale(double factor) {
+        if (factor == 1.0) return this;
+        return new Macros(calories * factor, proteinG * factor, carbsG * factor, fatG * factor);
+    }
+
+    /**
+     * Returns the macronutrients in the legacy map format used by the UI.
+     *
+     * @return map containing "proteinG", "carbsG", and "fatG"
+     */
+    public Map<String, Double> toMap() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        out.put("proteinG", proteinG);
+        out.put("carbsG", carbsG);
+        out.put("fatG", fatG);
+        return out;
+    }
+
+    /**
+     * Compares nutrient amounts exactly.
+     *
+     * @param o other object
+     * @return true if all four amounts are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Macros m)) return false;
+        return Double.compare(calories, m.calories) == 0 && Double.compare(proteinG, m.proteinG) == 0
+                && Double.compare(carbsG, m.carbsG) == 0 && Double.compare(fatG, m.fatG) == 0;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return hash code
+     */
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(calories);
+        h = 31 * h + Double.hashCode(proteinG);
+        h = 31 * h + Double.hashCode(carbsG);
+        return 31 * h + Double.hashCode(fatG);
+    }
+
+    /**
+     * Returns a short readable summary.
+     *
+     * @return amounts as text
+     */
+    @Override
+    public String toString() {
+        return "%.0f kcal (P: %.1fg  C: %.1fg  F: %.1fg)".formatted(calories, proteinG, carbsG, fatG);
+    }
+
+    /**
+     * Mutable running sum of nutrient amounts, for adding up many entries without allocating.
+     */
+    public static final class Accumulator {
+
+        /** Running calories. */
+        private double calories;
+
+        /** Running protein (g). */
+        private double proteinG;
+
+        /** Running carbohydrates (g). */
+        private double carbsG;
+
+        /** Running fat (g). */
+        private double fatG;
+
+        /**
+         * Adds raw amounts.
+         *
+         * @param calories calories
+         * @param proteinG protein (g)
+         * @param carbsG carbohydrates (g)
+         * @param fatG fat (g)
+         * @return this accumulator
+         */
+        public Accumulator add(double calories, double proteinG, double carbsG, double fatG) {
+            this.calories += calories;
+            this.proteinG += proteinG;
+            this.carbsG += carbsG;
+            this.fatG += fatG;
+            return this;
+        }
+
+        /**
+         * Adds a vector.
+         *
+         * @param m amounts to add (null is ignored)
+         * @return this accumulator
+         */
+        public Accumulator add(Macros m) {
+            return m == null ? this : add(m.calories, m.proteinG, m.carbsG, m.fatG);
+        }
+
+        /**
+         * Adds a vector multiplied by a factor.
+         *
+         * @param m amounts to add (null is ignored)
+         * @param factor multiplier applied to {@code m}
+         * @return this accumulator
+         */
+        public Accumulator add(Macros m, double factor) {
+            return m == null ? this : add(m.calories * factor, m.proteinG * factor, m.carbsG * factor, m.fatG * factor);
+        }
+
+        /**
+         * Returns the running calories.
+         *
+         * @return calories so far
+         */
+        public double getCalories() {
+            return calories;
+        }
+
+        /**
+         * Returns the running protein.
+         *
+         * @return protein (g) so far
+         */
+        public double getProteinG() {
+            return proteinG;
+        }
+
+        /**
+         * Returns the running carbohydrates.
+         *
+         * @return carbohydrates (g) so far
+         */
+        public double getCarbsG() {
+            return carbsG;
+        }
+
+        /**
+         * Returns the running fat.
+         *
+         * @return fat (g) so far
+         */
+        public double getFatG() {
+            return fatG;
+        }
+
+        /**
+         * Returns the current sum as an immutable vector.
+         *
+         * @return summed amounts
+         */
+        public Macros toMacros() {
+            return new Macros(calories, proteinG, carbsG, fatG);
+        }
+    }
+}
@@ -0,0 +1,850 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Hand-written, versioned binary format for the MacroMate model, used for both snapshots and
+ * journal records in place of Java object serialization.
+ *
+ * <p>Every snapshot and journal record starts with the schema version it was written with.
+ * Readers take that version and skip or default any field that did not exist yet, so files
+ * written by older versions are migrated forward as they are loaded; a file from a newer
+ * version is rejected rather than misread. Data written by Java serialization before this
+ * format existed is recognized by its stream header and read through {@link ObjectInputStream}
+ * one last time, then written back in this format on the next save.</p>
+ *
+ * <p>Encoding conventions: strings are a varint-length-prefixed UTF-8 byte array, entity IDs are a
+ * tag byte followed by an 8-byte value (compact IDs), two 8-byte halves (UUID strings) or a string
+ * (anything else), dates are epoch days, timestamps are UTC epoch seconds plus nanoseconds, and
+ * enums are stored by ordinal (-1 for null), so new enum constants must only ever be appended.</p>
+ */
+public final class ModelCodec {
+
+    /** Current schema version written by this codec. */
+    public static final int SCHEMA_VERSION = 8;
+
+    /** First schema version that keeps goals, custom foods and DayLogs in per-user shards. */
+    private static final int SHARDED_VERSION = 2;
+
+    /** First schema version that keeps a user's DayLogs in monthly segments instead of the shard file. */
+    private static final int SEGMENTED_VERSION = 3;
+
+    /** First schema version whose shard file carries per-month food usage counts. */
+    private static final int USAGE_VERSION = 4;
+
+    /**
+     * First schema version in which a user's ID is a permanent surrogate key stored separately from
+     * their email. Users written earlier were keyed by email; that email becomes their ID.
+     */
+    private static final int USER_EMAIL_VERSION = 5;
+
+    /** First schema version whose custom foods can use other custom foods as components. */
+    private static final int RECIPE_COMPONENTS_VERSION = 6;
+
+    /** First schema version that writes entity IDs with {@link #writeId} instead of as strings. */
+    private static final int COMPACT_IDS_VERSION = 7;
+
+    /** First schema version whose shard file carries per-day nutrient totals. */
+    private static final int DAY_TOTALS_VERSION = 8;
+
+    /** Magic number at the start of a binary snapshot payload ("MMBC"). */
+    private static final int SNAPSHOT_MAGIC = 0x4D4D4243;
+
+    /** Magic number at the start of a user shard payload ("MMUS"). */
+    private static final int SHARD_MAGIC = 0x4D4D5553;
+
+    /** Magic number at the start of a DayLog segment payload ("MMDS"). */
+    private static final int SEGMENT_MAGIC = 0x4D4D4453;
+
+    /** First two bytes of any Java serialization stream. */
+    private static final int JAVA_STREAM_MAGIC = 0xACED;
+
+    /** Sentinel for a null {@link LocalDate}. */
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    /** Sentinel for a null {@link LocalDateTime}. */
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    /** Ingredient tag: the Food is a reference into the snapshot's food list. */
+    private static final byte INGREDIENT_REF = 0;
+
+    /** Ingredient tag: the Food is written inline. */
+    private static final byte INGREDIENT_INLINE = 1;
+
+    /** ID tag: null. */
+    private static final byte ID_NULL = 0;
+
+    /** ID tag: a compact ID ({@link IdDictionary#newId()}), written as its 8-byte value. */
+    private static final byte ID_COMPACT = 1;
+
+    /** ID tag: a lowercase UUID string, written as its two 8-byte halves. */
+    private static final byte ID_UUID = 2;
+
+    /** ID tag: any other string, written with {@link #writeString}. */
+    private static final byte ID_STRING = 3;
+
+    private ModelCodec() {
+    }
+
+    // ---------------------------------------------------------------------
+    // Snapshots
+    // ---------------------------------------------------------------------
+
+    /**
+     * Writes the global snapshot (accounts, credentials, active user, food catalog) in the current
+     * schema version. Per-user data is written separately with {@link #writeShard}.
+     *
+     * @param os destination stream (left open)
+     * @param s snapshot contents
+     * @throws IOException if writing fails
+     */
+    public static void writeSnapshot(OutputStream os, Snapshot s) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeShort(SCHEMA_VERSION);
+
+        out.writeInt(s.usersById.size());
+        for (Map.Entry<String, User> e : s.usersById.entrySet()) {
+            writeString(out, e.getKey());
+            writeUser(out, e.getValue());
+            writeString(out, s.passwordSaltById.get(e.getKey()));
+            writeString(out, s.passwordHashById.get(e.getKey()));
+        }
+        writeString(out, s.activeUser == null ? null : s.activeUser.getId());
+
+        out.writeInt(s.foods.size());
+        for (Food f : s.foods) writeFood(out, f);
+
+        out.flush();
+    }
+
+    /**
+     * Reads a global snapshot written by any schema version, or by the legacy Java-serialization format.
+     * Snapshots from before per-user shards also carry every user's goals, custom foods and DayLogs;
+     * those are returned in the snapshot's per-user lists so the caller can split them into shards.
+     *
+     * @param is source stream
+     * @return parsed snapshot
+     * @throws IOException if the payload is malformed or from a newer schema version
+     * @throws ClassNotFoundException if a legacy payload references unknown classes
+     */
+    public static Snapshot readSnapshot(InputStream is) throws IOException, ClassNotFoundException {
+        BufferedInputStream buffered = new BufferedInputStream(is);
+        if (isJavaSerialized(buffered)) return readLegacySnapshot(buffered);
+
+        DataInputStream in = new DataInputStream(buffered);
+        if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a MacroMate snapshot");
+        int version = readVersion(in);
+
+        Snapshot s = new Snapshot();
+        int users = in.readInt();
+        for (int i = 0; i < users; i++) {
+            String id = readString(in);
+            s.usersById.put(id, readUser(in, version));
+            s.passwordSaltById.put(id, readString(in));
+            s.passwordHashById.put(id, readString(in));
+        }
+        String activeId = readString(in);
+        s.activeUser = activeId == null ? null : s.usersById.get(activeId);
+
+        if (version < SHARDED_VERSION) {
+            int goals = in.readInt();
+            for (int i = 0; i < goals; i++) s.goals.add(readGoal(in, version));
+        }
+
+        Map<String, Food> shared = new HashMap<>();
+        int foods = in.readInt();
+        for (int i = 0; i < foods; i++) {
+            Food f = readFood(in, version);
+            s.foods.add(f);
+            if (f.getId() != null) shared.putIfAbsent(f.getId(), f);
+        }
+
+        if (version < SHARDED_VERSION) {
+            int customFoods = in.readInt();
+            for (int i = 0; i < customFoods; i++) s.customFoods.add(readCustomFood(in, version, shared::get));
+
+            int dayLogs = in.readInt();
+            for (int i = 0; i < dayLogs; i++) s.dayLogs.add(readDayLog(in, version));
+        }
+
+        return s;
+    }
+
+    /**
+     * Writes one user's shard (goals, custom foods, per-month food usage counts and per-day
+     * nutrient totals) in the current schema version. Totals are written for every month whose
+     * totals are known: a day is its day of month, its number of entries and its four totals.
+     * Custom food ingredients that {@code foods} knows are written as references by ID. DayLogs are
+     * written separately with {@link #writeSegment}.
+     *
+     * @param os destination stream (left open)
+     * @param shard shard contents
+     * @param foods lookup of the shared foods that are saved with the global data, by ID (returns
+     *              null for unknown IDs and for foods that must be written in full)
+     * @throws IOException if writing fails
+     */
+    public static void writeShard(OutputStream os, UserShard shard, Function<String, Food> foods) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(SHARD_MAGIC);
+        out.writeShort(SCHEMA_VERSION);
+        writeId(out, shard.getUserId());
+
+        out.writeInt(shard.getGoals().size());
+        for (Goal g : shard.getGoals()) writeGoal(out, g);
+
+        out.writeInt(shard.getCustomFoods().size());
+        for (CustomFood cf : shard.getCustomFoods()) writeCustomFood(out, cf, foods);
+
+        out.writeInt(shard.getUsageByMonth().size());
+        for (Map.Entry<YearMonth, Map<String, Integer>> e : shard.getUsageByMonth().entrySet()) {
+            writeDate(out, e.getKey().atDay(1));
+            writeVarInt(out, e.getValue().size());
+            for (Map.Entry<String, Integer> c : e.getValue().entrySet()) {
+                writeId(out, c.getKey());
+                writeVarInt(out, c.getValue());
+            }
+        }
+
+        DailyRollup rollup = shard.getRollup();
+        out.writeInt(shard.getTotaledMonths().size());
+        for (YearMonth month : shard.getTotaledMonths()) {
+            writeDate(out, month.atDay(1));
+            List<LocalDate> days = new ArrayList<>();
+            for (int d = 1; d <= month.lengthOfMonth(); d++) {
+                if (rollup.count(month.atDay(d)) > 0) days.add(month.atDay(d));
+            }
+            writeVarInt(out, days.size());
+            for (LocalDate day : days) {
+                Macros m = rollup.get(day);
+                out.writeByte(day.getDayOfMonth());
+                writeVarInt(out, rollup.count(day));
+                out.writeDouble(m.getCalories());
+                out.writeDouble(m.getProteinG());
+                out.writeDouble(m.getCarbsG());
+                out.writeDouble(m.getFatG());
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads a user shard written by {@link #writeShard}. Shards from before monthly segments also
+     * carry all of the user's DayLogs; those are added to the returned shard.
+     *
+     * @param is source stream
+     * @param foods lookup of shared foods by ID, used to resolve ingredient references
+     * @return parsed shard (without a store attached)
+     * @throws IOException if the payload is malformed or from a newer schema version
+     */
+    public static UserShard readShard(InputStream is, Function<String, Food> foods) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != SHARD_MAGIC) throw new IOException("Not a MacroMate user shard");
+        int version = readVersion(in);
+
+        UserShard shard = new UserShard(readId(in, version));
+
+        int goals = in.readInt();
+        for (int i = 0; i < goals; i++) shard.addGoal(readGoal(in, version));
+
+        int customFoods = in.readInt();
+        for (int i = 0; i < customFoods; i++) shard.getCustomFoods().add(readCustomFood(in, version, foods));
+
+        if (version < SEGMENTED_VERSION) {
+            int dayLogs = in.readInt();
+            for (int i = 0; i < dayLogs; i++) shard.putDayLog(readDayLog(in, version));
+        }
+
+        if (version >= USAGE_VERSION) {
+            int months = in.readInt();
+            for (int i = 0; i < months; i++) {
+                YearMonth month = YearMonth.from(readDate(in));
+                int n = readVarInt(in);
+                Map<String, Integer> counts = new HashMap<>();
+                for (int j = 0; j < n; j++) counts.put(readId(in, version), readVarInt(in));
+                shard.setMonthUsage(month, counts);
+            }
+        }
+
+        if (version >= DAY_TOTALS_VERSION) {
+            int months = in.readInt();
+            for (int i = 0; i < months; i++) {
+                YearMonth month = YearMonth.from(readDate(in));
+                shard.markMonthTotaled(month);
+                int n = readVarInt(in);
+                for (int j = 0; j < n; j++) {
+                    int dayOfMonth = in.readUnsignedByte();
+                    if (dayOfMonth < 1 || dayOfMonth > month.lengthOfMonth()) throw new IOException("Bad day of month " + dayOfMonth);
+                    LocalDate day = month.atDay(dayOfMonth);
+                    int entries = readVarInt(in);
+                    Macros totals = new Macros(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+                    shard.setDayTotals(day, totals, entries);
+                }
+            }
+        }
+
+        return shard;
+    }
+
+    /**
+     * Writes one segment of DayLogs (a single user's logs for one month) in the current schema version.
+     *
+     * @param os destination stream (left open)
+     * @param dayLogs DayLogs in the segment
+     * @throws IOException if writing fails
+     */
+    public static void writeSegment(OutputStream os, List<DayLog> dayLogs) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(SEGMENT_MAGIC);
+        out.writeShort(SCHEMA_VERSION);
+        out.writeInt(dayLogs.size());
+        for (DayLog dl : dayLogs) writeDayLog(out, dl);
+        out.flush();
+    }
+
+    /**
+     * Reads a DayLog segment written by {@link #writeSegment}.
+     *
+     * @param is source stream
+     * @return DayLogs in the segment
+     * @throws IOException if the payload is malformed or from a newer schema version
+     */
+    public static List<DayLog> readSegment(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != SEGMENT_MAGIC) throw new IOException("Not a MacroMate DayLog segment");
+        int version = readVersion(in);
+
+        int n = in.readInt();
+        List<DayLog> dayLogs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) dayLogs.add(readDayLog(in, version));
+        return dayLogs;
+    }
+
+    /**
+     * Reads a snapshot written with Java object serialization before this codec existed.
+     *
+     * @param in source stream
+     * @return parsed snapshot
+     * @throws IOException if the stream is malformed
+     * @throws ClassNotFoundException if the stream references unknown classes
+     */
+    private static Snapshot readLegacySnapshot(InputStream in) throws IOException, ClassNotFoundException {
+        Snapshot s = new Snapshot();
+        try (ObjectInputStream ois = new ObjectInputStream(in)) {
+            s.activeUser = (User) ois.readObject();
+            s.goals = castList(ois.readObject());
+            s.foods = castList(ois.readObject());
+            s.customFoods = castList(ois.readObject());
+            s.dayLogs = castList(ois.readObject());
+            s.usersById = castMap(ois.readObject());
+            s.passwordSaltById = castMap(ois.readObject());
+            s.passwordHashById = castMap(ois.readObject());
+        }
+        return s;
+    }
+
+    // ---------------------------------------------------------------------
+    // Journal records
+    // ---------------------------------------------------------------------
+
+    /**
+     * Encodes a journal entry as one self-describing record.
+     *
+     * @param e entry to encode
+     * @return record bytes
+     * @throws IOException if encoding fails
+     */
+    public static byte[] encodeEntry(JournalEntry e) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(SCHEMA_VERSION);
+        out.writeByte(e.getType().ordinal());
+        writeString(out, e.getUserId());
+        writeDate(out, e.getDate());
+        writeString(out, e.getTargetId());
+
+        switch (e.getType()) {
+            case FOOD_LOG_ADDED -> writeFoodLog(out, (FoodLog) e.getPayload());
+            case CUSTOM_FOOD_CREATED -> writeCustomFood(out, (CustomFood) e.getPayload(), id -> null);
+            case GOALS_REPLACED -> {
+                List<Goal> goals = castList(e.getPayload());
+                out.writeInt(goals.size());
+                for (Goal g : goals) writeGoal(out, g);
+            }
+            case ACCOUNT_SAVED -> {
+                writeUser(out, (User) e.getPayload());
+                writeString(out, e.getPasswordSalt());
+                writeString(out, e.getPasswordHash());
+            }
+            case CUSTOM_FOOD_COMPONENT_ADDED -> {
+                Map.Entry<?, ?> component = (Map.Entry<?, ?>) e.getPayload();
+                writeString(out, (String) component.getKey());
+                out.writeDouble((Double) component.getValue());
+            }
+            case CUSTOM_FOOD_COMPONENT_REMOVED -> writeString(out, (String) e.getPayload());
+            case GOAL_ADDED -> writeGoal(out, (Goal) e.getPayload());
+            default -> {
+                // Remaining types are fully described by the common header.
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a journal record written by {@link #encodeEntry(JournalEntry)} in any schema version,
+     * or a legacy record written with Java serialization.
+     *
+     * @param record record bytes
+     * @return decoded entry
+     * @throws IOException if the record is malformed or from a newer schema version
+     * @throws ClassNotFoundException if a legacy record references unknown classes
+     */
+    public static JournalEntry decodeEntry(byte[] record) throws IOException, ClassNotFoundException {
+        if (record.length >= 2 && ((record[0] & 0xFF) << 8 | (record[1] & 0xFF)) == JAVA_STREAM_MAGIC) {
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+                if (ois.readObject() instanceof JournalEntry e) return e;
+                throw new IOException("Unexpected legacy journal record");
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int version = readVersion(in);
+        JournalEntry.Type type = readEnum(JournalEntry.Type.values(), in.readByte());
+        if (type == null) throw new IOException("Unknown journal record type");
+        String userId = readString(in);
+        LocalDate date = readDate(in);
+        String targetId = readString(in);
+
+        return switch (type) {
+            case FOOD_LOG_ADDED -> JournalEntry.foodLogAdded(userId, date, readFoodLog(in, version));
+            case FOOD_LOG_REMOVED -> JournalEntry.foodLogRemoved(userId, date, targetId);
+            case CUSTOM_FOOD_CREATED -> JournalEntry.customFoodCreated(readCustomFood(in, version, id -> null));
+            case CUSTOM_FOOD_DELETED -> JournalEntry.customFoodDeleted(userId, targetId);
+            case GOALS_REPLACED -> {
+                int n = in.readInt();
+                List<Goal> goals = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) goals.add(readGoal(in, version));
+                yield JournalEntry.goalsReplaced(userId, goals);
+            }
+            case ACCOUNT_SAVED -> JournalEntry.accountSaved(readUser(in, version), readString(in), readString(in));
+            case ACCOUNT_EMAIL_CHANGED -> JournalEntry.accountEmailChanged(userId, targetId);
+            case ACTIVE_USER_CHANGED -> JournalEntry.activeUserChanged(userId);
+            case CUSTOM_FOOD_COMPONENT_ADDED -> JournalEntry.customFoodComponentAdded(userId, targetId, readString(in), in.readDouble());
+            case CUSTOM_FOOD_COMPONENT_REMOVED -> JournalEntry.customFoodComponentRemoved(userId, targetId, readString(in));
+            case GOAL_ADDED -> JournalEntry.goalAdded(userId, readGoal(in, version));
+        };
+    }
+
+    /**
+     * Returns whether a journal record was written by a newer schema version than this codec reads.
+     *
+     * @param record record bytes
+     * @return true if the record carries a schema version above {@link #SCHEMA_VERSION}
+     */
+    static boolean isNewerVersion(byte[] record) {
+        if (record.length < 2) return false;
+        int version = (record[0] & 0xFF) << 8 | (record[1] & 0xFF);
+        return version != JAVA_STREAM_MAGIC && version > SCHEMA_VERSION;
+    }
+
+    // ---------------------------------------------------------------------
+    // Entities
+    // ---------------------------------------------------------------------
+
+    /** Writes a {@link User}. */
+    static void writeUser(DataOutput out, User u) throws IOException {
+        writeString(out, u.getId());
+        writeString(out, u.getName());
+        writeString(out, u.getGoal());
+        out.writeInt(u.getAge());
+        writeEnum(out, u.getSex());
+        out.writeDouble(u.getHeightIn());
+        out.writeDouble(u.getWeightLb());
+        writeEnum(out, u.getActivityLevel());
+        writeString(out, u.getEmail());
+    }
+
+    /** Reads a {@link User} written in the given schema version. */
+    static User readUser(DataInput in, int version) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        String goal = readString(in);
+        int age = in.readInt();
+        int sex = in.readByte();
+        double heightIn = in.readDouble();
+        double weightLb = in.readDouble();
+        int activity = in.readByte();
+        User u = new User(id, name, goal, age, User.sexOf(sex), heightIn, weightLb, User.activityLevelOf(activity));
+        u.setEmail(version >= USER_EMAIL_VERSION ? readString(in) : id);
+        return u;
+    }
+
+    /** Writes a {@link Goal}. */
+    static void writeGoal(DataOutput out, Goal g) throws IOException {
+        writeId(out, g.getId());
+        out.writeInt(g.getTargetCalories());
+        out.writeDouble(g.getTargetProteinG());
+        out.writeDouble(g.getTargetCarbsG());
+        out.writeDouble(g.getTargetFatG());
+        writeDate(out, g.getStartDate());
+        writeDate(out, g.getEndDate());
+    }
+
+    /** Reads a {@link Goal} written in the given schema version. */
+    static Goal readGoal(DataInput in, int version) throws IOException {
+        String id = readId(in, version);
+        int calories = in.readInt();
+        double p = in.readDouble();
+        double c = in.readDouble();
+        double f = in.readDouble();
+        LocalDate start = readDate(in);
+        LocalDate end = readDate(in);
+        return new Goal(id, calories, p, c, f, start, end);
+    }
+
+    /** Writes a {@link Food}. */
+    static void writeFood(DataOutput out, Food f) throws IOException {
+        writeString(out, f.getId());
+        writeString(out, f.getName());
+        writeString(out, f.getBrand());
+        writeString(out, f.getCategory());
+        out.writeDouble(f.getServingSize());
+        out.writeDouble(f.getCalories());
+        out.writeDouble(f.getProteinG());
+        out.writeDouble(f.getCarbsG());
+        out.writeDouble(f.getFatG());
+    }
+
+    /** Reads a {@link Food} written in the given schema version. */
+    static Food readFood(DataInput in, int version) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        String brand = readString(in);
+        String category = readString(in);
+        double serving = in.readDouble();
+        double calories = in.readDouble();
+        double p = in.readDouble();
+        double c = in.readDouble();
+        double f = in.readDouble();
+        return new Food(id, name, brand, category, serving, calories, p, c, f);
+    }
+
+    /**
+     * Writes a {@link CustomFood}. Ingredients whose food ID is known to {@code shared}, and
+     * ingredients that are still unbound references, are written as an ID reference and resolved
+     * to the shared Food when read; the others (such as the custom food's generated item, or foods
+     * from the installed catalog) are written in full. Components (other custom foods) follow as
+     * ID and servings.
+     */
+    static void writeCustomFood(DataOutput out, CustomFood cf, Function<String, Food> shared) throws IOException {
+        writeId(out, cf.getId());
+        writeId(out, cf.getUserId());
+        writeString(out, cf.getName());
+        writeString(out, cf.getDescription());
+
+        int n = cf.getIngredientCount();
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            Food f = cf.getIngredientFood(i);
+            String id = cf.getIngredientId(i);
+            if (f == null || (id != null && shared.apply(id) != null)) {
+                out.writeByte(INGREDIENT_REF);
+                writeId(out, id);
+            } else {
+                out.writeByte(INGREDIENT_INLINE);
+                writeFood(out, f);
+            }
+            out.writeDouble(cf.getIngredientGrams(i));
+        }
+
+        List<Map.Entry<String, Double>> components = new ArrayList<>();
+        for (var c : cf.getComponents()) {
+            if (c != null && c.getKey() != null && c.getValue() != null) components.add(c);
+        }
+        out.writeInt(components.size());
+        for (var c : components) {
+            writeId(out, c.getKey());
+            out.writeDouble(c.getValue());
+        }
+    }
+
+    /**
+     * Reads a {@link CustomFood} written in the given schema version, resolving ingredient
+     * references. A reference {@code shared} cannot resolve is kept as an unbound ingredient.
+     */
+    static CustomFood readCustomFood(DataInput in, int version, Function<String, Food> shared) throws IOException {
+        CustomFood cf = new CustomFood(readId(in, version), readId(in, version), readString(in), readString(in));
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            byte tag = in.readByte();
+            String ref = null;
+            Food f = switch (tag) {
+                case INGREDIENT_REF -> shared.apply(ref = readId(in, version));
+                case INGREDIENT_INLINE -> readFood(in, version);
+                default -> throw new IOException("Unknown ingredient tag " + tag);
+            };
+            double grams = in.readDouble();
+            if (f != null) cf.addIngredient(f, grams);
+            else cf.addIngredientRef(ref, grams);
+        }
+        if (version >= RECIPE_COMPONENTS_VERSION) {
+            int m = in.readInt();
+            for (int i = 0; i < m; i++) cf.addComponent(readId(in, version), in.readDouble());
+        }
+        return cf;
+    }
+
+    /** Writes a {@link DayLog} with all of its {@link FoodLog} entries. */
+    static void writeDayLog(DataOutput out, DayLog dl) throws IOException {
+        writeId(out, dl.getId());
+        writeId(out, dl.getUserId());
+        writeDate(out, dl.getDate());
+
+        List<FoodLog> logs = new ArrayList<>();
+        for (FoodLog log : dl.getFoodLogs()) {
+            if (log != null) logs.add(log);
+        }
+        out.writeInt(logs.size());
+        for (FoodLog log : logs) writeFoodLog(out, log);
+    }
+
+    /** Reads a {@link DayLog} written in the given schema version; its totals are rebuilt as entries are added. */
+    static DayLog readDayLog(DataInput in, int version) throws IOException {
+        DayLog dl = new DayLog(readId(in, version), readId(in, version), readDate(in));
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) dl.addFoodLog(readFoodLog(in, version));
+        return dl;
+    }
+
+    /** Writes a {@link FoodLog}, including its precomputed totals. */
+    static void writeFoodLog(DataOutput out, FoodLog log) throws IOException {
+        writeId(out, log.getId());
+        writeId(out, log.getCustomFoodId());
+        writeEnum(out, log.getMealType());
+        out.writeDouble(log.getServings());
+        writeTimestamp(out, log.getTimestamp());
+        writeString(out, log.getNotes());
+        Macros m = log.getNutrients();
+        out.writeDouble(m.getCalories());
+        out.writeDouble(m.getProteinG());
+        out.writeDouble(m.getCarbsG());
+        out.writeDouble(m.getFatG());
+    }
+
+    /** Reads a {@link FoodLog} written in the given schema version. */
+    static FoodLog readFoodLog(DataInput in, int version) throws IOException {
+        String id = readId(in, version);
+        String foodId = readId(in, version);
+        FoodLog.MealType mealType = readEnum(FoodLog.MealType.values(), in.readByte());
+        double servings = in.readDouble();
+        LocalDateTime timestamp = readTimestamp(in);
+        String notes = readString(in);
+        FoodLog log = new FoodLog(id, foodId, mealType, servings, timestamp, notes);
+        log.setComputedTotals(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+        return log;
+    }
+
+    // ---------------------------------------------------------------------
+    // Primitives
+    // ---------------------------------------------------------------------
+
+    /** Reads and validates a schema version. */
+    private static int readVersion(DataInput in) throws IOException {
+        int version = in.readUnsignedShort();
+        if (version > SCHEMA_VERSION) {
+            throw new NewerVersionException("Schema version " + version + " is newer than this build reads (" + SCHEMA_VERSION + ")");
+        }
+        if (version < 1) throw new IOException("Unsupported schema version " + version);
+        return version;
+    }
+
+    /** Returns whether the stream starts with the Java serialization header, without consuming it. */
+    private static boolean isJavaSerialized(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        return b0 >= 0 && b1 >= 0 && (b0 << 8 | b1) == JAVA_STREAM_MAGIC;
+    }
+
+    /** Writes a nullable string as a varint (length + 1, 0 for null) followed by its UTF-8 bytes. */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, b.length + 1);
+        out.write(b);
+    }
+
+    /** Reads a nullable string written by {@link #writeString}. */
+    private static String readString(DataInput in) throws IOException {
+        int len = readVarInt(in) - 1;
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a nullable entity ID: compact IDs as their 8-byte value, lowercase UUID strings as
+     * their two halves, and anything else as a string, each after a tag byte.
+     */
+    private static void writeId(DataOutput out, String id) throws IOException {
+        if (id == null) {
+            out.writeByte(ID_NULL);
+            return;
+        }
+        long compact = IdDictionary.parseCompact(id);
+        if (compact != IdDictionary.NONE) {
+            out.writeByte(ID_COMPACT);
+            out.writeLong(compact);
+            return;
+        }
+        UUID uuid = parseUuid(id);
+        if (uuid != null) {
+            out.writeByte(ID_UUID);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            return;
+        }
+        out.writeByte(ID_STRING);
+        writeString(out, id);
+    }
+
+    /** Reads an entity ID written by {@link #writeId}, or by {@link #writeString} before {@link #COMPACT_IDS_VERSION}. */
+    private static String readId(DataInput in, int version) throws IOException {
+        if (version < COMPACT_IDS_VERSION) return readString(in);
+        byte tag = in.readByte();
+        return switch (tag) {
+            case ID_NULL -> null;
+            case ID_COMPACT -> IdDictionary.formatCompact(in.readLong());
+            case ID_UUID -> new UUID(in.readLong(), in.readLong()).toString();
+            case ID_STRING -> readString(in);
+            default -> throw new IOException("Unknown ID tag " + tag);
+        };
+    }
+
+    /** Parses a string that is exactly a lowercase UUID as written by {@link UUID#toString()}, or returns null. */
+    private static UUID parseUuid(String id) {
+        if (id.length() != 36 || id.charAt(8) != '-') return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Writes a non-negative int in 7-bit groups, so small values take a single byte. */
+    private static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /** Reads an int written by {@link #writeVarInt}. */
+    private static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /** Writes a nullable date as its epoch day. */
+    private static void writeDate(DataOutput out, LocalDate d) throws IOException {
+        out.writeInt(d == null ? NULL_DATE : (int) d.toEpochDay());
+    }
+
+    /** Reads a nullable date written by {@link #writeDate}. */
+    private static LocalDate readDate(DataInput in) throws IOException {
+        int day = in.readInt();
+        return day == NULL_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /** Writes a nullable timestamp as UTC epoch seconds plus nanoseconds. */
+    private static void writeTimestamp(DataOutput out, LocalDateTime t) throws IOException {
+        if (t == null) {
+            out.writeLong(NULL_TIMESTAMP);
+            return;
+        }
+        out.writeLong(t.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(t.getNano());
+    }
+
+    /** Reads a nullable timestamp written by {@link #writeTimestamp}. */
+    private static LocalDateTime readTimestamp(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        if (seconds == NULL_TIMESTAMP) return null;
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+    /** Writes a nullable enum constant as its ordinal. */
+    private static void writeEnum(DataOutput out, Enum<?> e) throws IOException {
+        out.writeByte(e == null ? -1 : e.ordinal());
+    }
+
+    /** Reads an enum constant by ordinal, returning null for -1 or an unknown ordinal. */
+    private static <E extends Enum<E>> E readEnum(E[] values, int ordinal) {
+        return (ordinal >= 0 && ordinal < values.length) ? values[ordinal] : null;
+    }
+
+    /** Safely casts an object to a List. */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(Object o) {
+        if (o instanceof List<?> l) return (List<T>) l;
+        return new ArrayList<>();
+    }
+
+    /** Safely casts an object to a Map. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V> castMap(Object o) {
+        if (o instanceof Map<?, ?> m) return (Map<K, V>) m;
+        return new HashMap<>();
+    }
+
+    /**
+     * Plain holder for the collections stored in the global snapshot. The goal, custom food and
+     * DayLog lists are only filled when reading a snapshot from before per-user shards.
+     */
+    public static class Snapshot {
+        User activeUser;
+        List<Goal> goals = new ArrayList<>();
+        List<Food> foods = new ArrayList<>();
+        List<CustomFood> customFoods = new ArrayList<>();
+        List<DayLog> dayLogs = new ArrayList<>();
+        Map<String, User> usersById = new HashMap<>();
+        Map<String, String> passwordSaltById = new HashMap<>();
+        Map<String, String> passwordHashById = new HashMap<>();
+    }
+}
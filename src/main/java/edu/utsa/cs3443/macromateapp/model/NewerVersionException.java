@@ -0,0 +1,21 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a file or journal record was written by a newer schema version than
+ * {@link ModelCodec} can read. Unlike a damaged file, such data is intact and must not be
+ * replaced: {@link SnapshotStore} stops at it instead of falling back to an older generation,
+ * and refuses to write over it.
+ */
+public class NewerVersionException extends IOException {
+
+    /**
+     * Creates the exception.
+     *
+     * @param message description of the version that was found
+     */
+    public NewerVersionException(String message) {
+        super(message);
+    }
+}
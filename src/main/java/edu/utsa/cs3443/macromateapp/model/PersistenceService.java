@@ -0,0 +1,181 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background writer that keeps disk I/O off the JavaFX Application Thread.
+ * All work runs on a single daemon thread, so writes reach the disk in the order they were submitted.
+ *
+ * <p>Three kinds of work are supported:</p>
+ * <ul>
+ *     <li>{@link #submit(Task)} queues an ordered task, such as a journal append.</li>
+ *     <li>{@link #submitCoalesced(Object, Task)} marks one file dirty and schedules a snapshot write.
+ *     Requests for the same key that arrive before the writer gets to it replace each other,
+ *     so a burst of save requests results in a single write of the latest state.</li>
+ *     <li>{@link #read(Callable)} queues a read behind every write submitted so far and hands its
+ *     result back as a future, so loading a file never waits on, or races with, earlier writes.</li>
+ * </ul>
+ *
+ * <p>{@link #flush(long, TimeUnit)} waits until everything submitted so far has been written and
+ * is used on shutdown (and anywhere a caller needs the data to be durable).</p>
+ */
+public class PersistenceService {
+
+    /** Single writer thread; a daemon so it never keeps the JVM alive on its own. */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "macromate-persistence");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Latest coalesced task waiting to run for each key; a key is absent when its file is clean. */
+    private final Map<Object, Task> pending = new ConcurrentHashMap<>();
+
+    /** Set when a background task fails; cleared by {@link #takeFailure()}. */
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+
+    /**
+     * Queues an ordered write. Tasks run one at a time in submission order.
+     *
+     * @param task write to perform on the writer thread
+     */
+    public void submit(Task task) {
+        if (task == null) return;
+        writer.execute(() -> run(task));
+    }
+
+    /**
+     * Marks a file dirty and schedules a coalesced write for it. If an earlier task for the same
+     * key has not started yet, it is dropped in favour of this one. The write runs at the position
+     * of the latest request, so it always follows every task submitted before it.
+     *
+     * @param key identifies the file being written (tasks for different keys never replace each other)
+     * @param task write of the latest state of that file
+     */
+    public void submitCoalesced(Object key, Task task) {
+        if (key == null || task == null) return;
+        pending.put(key, task);
+        writer.execute(() -> drainPending(key, task));
+    }
+
+    /**
+     * Queues a read. It runs on the writer thread after every task submitted before it, so it sees
+     * the files as those writes leave them without the caller having to flush first.
+     *
+     * @param task read to perform on the writer thread
+     * @param <T> type of the result
+     * @return future completed with the result, or exceptionally if the read fails or the writer has stopped
+     */
+    public <T> CompletableFuture<T> read(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            writer.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether any coalesced write is waiting to run.
+     *
+     * @return true if some file has unsaved snapshot changes
+     */
+    public boolean isDirty() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Waits until every task submitted before this call has finished.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of {@code timeout}
+     * @return true if all earlier work completed in time, false on timeout or interruption
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        try {
+            writer.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Flushes outstanding work and stops the writer thread. Later submissions are ignored.
+     *
+     * @param timeout maximum time to wait for outstanding writes
+     * @param unit unit of {@code timeout}
+     * @return true if all outstanding work was written
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        boolean flushed = flush(timeout, unit);
+        writer.shutdown();
+        return flushed;
+    }
+
+    /**
+     * Reports and clears whether any background write has failed since the last call.
+     *
+     * @return true if a write failed
+     */
+    public boolean takeFailure() {
+        return failed.getAndSet(false);
+    }
+
+    /**
+     * Runs a coalesced task unless a later request for the same key has replaced it.
+     *
+     * @param key file key
+     * @param task task queued with this drain
+     */
+    private void drainPending(Object key, Task task) {
+        if (pending.remove(key, task)) run(task);
+    }
+
+    /**
+     * Runs a task, recording (rather than propagating) any failure.
+     *
+     * @param task task to run
+     */
+    private void run(Task task) {
+        try {
+            task.run();
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+        }
+    }
+
+    /**
+     * A unit of background I/O.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Performs the write.
+         *
+         * @throws IOException if the write fails
+         */
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,270 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One user's custom foods seen as a recipe graph: each {@link CustomFood} is a node, and each of
+ * its components (another custom food used in it) is an edge to that food. Edges that would
+ * create a cycle are rejected, so the graph is always a DAG.
+ *
+ * <p>Per-serving totals are evaluated bottom-up and memoized: a recipe's total is its own
+ * ingredients ({@link CustomFood#computeNutrients()}) plus each component's total times its
+ * servings, and every total is kept until something below it changes. Changing a recipe's
+ * components, or editing an ingredient {@link Food}, drops the memoized totals of that recipe and
+ * of the recipes that use it (directly or further up), and nothing else. Rendering a whole
+ * library therefore evaluates each recipe at most once, however often it is reused.</p>
+ *
+ * <p>Ingredient edits are pushed to the graph as they happen: each custom food in the graph is
+ * registered with its ingredient {@link Food}s, and an edit to one of them, or a change to a
+ * recipe's own ingredients, drops the affected totals along the reverse edges at once. Looking
+ * up a memoized total is therefore a single hash lookup.</p>
+ *
+ * <p>The graph is built from a {@link UserShard}'s custom foods and kept up to date by
+ * {@link DataManager}; it is not saved itself.</p>
+ */
+public final class RecipeGraph {
+
+    /** Custom foods by ID. */
+    private final Map<String, CustomFood> recipes = new HashMap<>();
+
+    /** Reverse edges: custom food ID to the IDs of the custom foods that use it. */
+    private final Map<String, Set<String>> usedBy = new HashMap<>();
+
+    /** Memoized per-serving totals, including components, by custom food ID. */
+    private final Map<String, Macros> totals = new HashMap<>();
+
+    /**
+     * Creates a graph of the given custom foods.
+     *
+     * @param customFoods the user's custom foods (null items are skipped)
+     */
+    public RecipeGraph(Collection<CustomFood> customFoods) {
+        for (CustomFood cf : customFoods) put(cf);
+    }
+
+    /**
+     * Adds a custom food, or replaces the one with the same ID, together with its components.
+     *
+     * @param cf custom food to add
+     */
+    void put(CustomFood cf) {
+        if (cf == null || cf.getId() == null) return;
+        CustomFood previous = recipes.put(cf.getId(), cf);
+        if (previous != null) {
+            unlinkComponents(previous);
+            if (previous != cf) previous.setGraph(null);
+        }
+        cf.setGraph(this);
+        for (var c : cf.getComponents()) {
+            if (c != null && c.getKey() != null) usedBy.computeIfAbsent(c.getKey(), k -> new HashSet<>()).add(cf.getId());
+        }
+        invalidate(cf.getId());
+    }
+
+    /**
+     * Removes a custom food. Recipes that used it lose it as a component.
+     *
+     * @param customFoodId ID of the custom food to remove
+     * @return the removed custom food, or null if the graph did not contain it
+     */
+    CustomFood remove(String customFoodId) {
+        CustomFood cf = recipes.get(customFoodId);
+        if (cf == null) return null;
+
+        invalidate(customFoodId);
+        Set<String> parents = usedBy.remove(customFoodId);
+        if (parents != null) {
+            for (String parentId : parents) {
+                CustomFood parent = recipes.get(parentId);
+                if (parent != null) parent.removeComponent(customFoodId);
+            }
+        }
+        unlinkComponents(cf);
+        recipes.remove(customFoodId);
+        cf.setGraph(null);
+        return cf;
+    }
+
+    /**
+     * Adds servings of one custom food to another, unless that would make a recipe contain itself.
+     *
+     * @param parentId ID of the recipe being extended
+     * @param childId  ID of the custom food to use in it
+     * @param servings number of servings (must be positive)
+     * @return true if the component was added
+     */
+    boolean addComponent(String parentId, String childId, double servings) {
+        CustomFood parent = recipes.get(parentId);
+        if (parent == null || !recipes.containsKey(childId) || !(servings > 0)) return false;
+        if (reaches(childId, parentId)) return false;
+
+        parent.addComponent(childId, servings);
+        usedBy.computeIfAbsent(childId, k -> new HashSet<>()).add(parentId);
+        invalidate(parentId);
+        return true;
+    }
+
+    /**
+     * Removes a component from a recipe.
+     *
+     * @param parentId ID of the recipe
+     * @param childId  ID of the component to remove
+     * @return true if the recipe used that component
+     */
+    boolean removeComponent(String parentId, String childId) {
+        CustomFood parent = recipes.get(parentId);
+        if (parent == null || !parent.removeComponent(childId)) return false;
+
+        Set<String> parents = usedBy.get(childId);
+        if (parents != null) {
+            parents.remove(parentId);
+            if (parents.isEmpty()) usedBy.remove(childId);
+        }
+        invalidate(parentId);
+        return true;
+    }
+
+    /**
+     * Returns whether the graph contains a custom food.
+     *
+     * @param customFoodId custom food ID
+     * @return true if it is a node of this graph
+     */
+    public boolean contains(String customFoodId) {
+        return recipes.containsKey(customFoodId);
+    }
+
+    /**
+     * Returns whether adding {@code childId} to {@code parentId} would be accepted, that is,
+     * whether both exist and {@code parentId} is not already reachable from {@code childId}.
+     *
+     * @param parentId ID of the recipe being extended
+     * @param childId  ID of the custom food to use in it
+     * @return true if the component can be added without creating a cycle
+     */
+    public boolean canAddComponent(String parentId, String childId) {
+        return recipes.containsKey(parentId) && recipes.containsKey(childId) && !reaches(childId, parentId);
+    }
+
+    /**
+     * Returns the per-serving totals of one custom food, including its components.
+     *
+     * @param customFoodId custom food ID
+     * @return nutrient totals, or {@link Macros#ZERO} if the graph has no such custom food
+     */
+    public Macros getNutrients(String customFoodId) {
+        Macros memo = totals.get(customFoodId);
+        return memo != null ? memo : evaluate(customFoodId, new HashSet<>());
+    }
+
+    /**
+     * Returns the per-serving totals of every custom food in the graph.
+     *
+     * @return nutrient totals by custom food ID
+     */
+    public Map<String, Macros> getAllNutrients() {
+        Map<String, Macros> out = new LinkedHashMap<>();
+        Set<String> path = new HashSet<>();
+        for (String id : recipes.keySet()) out.put(id, evaluate(id, path));
+        return out;
+    }
+
+    /**
+     * Returns whether one custom food is reachable from another along component edges
+     * (a food reaches itself).
+     *
+     * @param fromId starting custom food ID
+     * @param toId   custom food ID to look for
+     * @return true if {@code toId} is {@code fromId} or one of its direct or indirect components
+     */
+    private boolean reaches(String fromId, String toId) {
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> seen = new HashSet<>();
+        stack.push(fromId);
+        while (!stack.isEmpty()) {
+            String id = stack.pop();
+            if (id.equals(toId)) return true;
+            if (!seen.add(id)) continue;
+            CustomFood cf = recipes.get(id);
+            if (cf == null) continue;
+            for (var c : cf.getComponents()) {
+                if (c != null && c.getKey() != null) stack.push(c.getKey());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes a memoized total, evaluating any components that are not memoized first.
+     *
+     * @param id   custom food ID
+     * @param path IDs currently being evaluated, to stop on a cycle in damaged saved data
+     * @return per-serving totals
+     */
+    private Macros evaluate(String id, Set<String> path) {
+        Macros memo = totals.get(id);
+        if (memo != null) return memo;
+        CustomFood cf = recipes.get(id);
+        if (cf == null || !path.add(id)) return Macros.ZERO;
+
+        Macros.Accumulator sum = new Macros.Accumulator().add(cf.computeNutrients());
+        for (var c : cf.getComponents()) {
+            if (c == null || c.getKey() == null || c.getValue() == null) continue;
+            sum.add(evaluate(c.getKey(), path), c.getValue());
+        }
+        path.remove(id);
+
+        Macros total = sum.toMacros();
+        totals.put(id, total);
+        return total;
+    }
+
+    /**
+     * Called by a custom food of this graph when its own ingredients, or an ingredient Food, have
+     * changed. Drops its memoized total and those of the recipes above it.
+     *
+     * @param customFoodId ID of the changed custom food
+     */
+    void ownTotalsChanged(String customFoodId) {
+        if (customFoodId != null) invalidate(customFoodId);
+    }
+
+    /**
+     * Drops the memoized totals of a custom food and of every recipe above it. A recipe is only
+     * memoized if everything below it is, so the walk stops at recipes that are not memoized.
+     *
+     * @param id custom food ID
+     */
+    private void invalidate(String id) {
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            String current = stack.pop();
+            if (totals.remove(current) == null) continue;
+            Set<String> parents = usedBy.get(current);
+            if (parents != null) stack.addAll(parents);
+        }
+    }
+
+    /**
+     * Removes the reverse edges created for a custom food's components.
+     *
+     * @param cf custom food whose components are being removed from the graph
+     */
+    private void unlinkComponents(CustomFood cf) {
+        for (var c : cf.getComponents()) {
+            if (c == null || c.getKey() == null) continue;
+            Set<String> parents = usedBy.get(c.getKey());
+            if (parents == null) continue;
+            parents.remove(cf.getId());
+            if (parents.isEmpty()) usedBy.remove(c.getKey());
+        }
+    }
+}
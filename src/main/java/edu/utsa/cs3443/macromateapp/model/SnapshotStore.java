@@ -0,0 +1,316 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Crash-safe storage for full data snapshots.
+ * A snapshot is written to a temporary file, forced to disk with {@link FileChannel#force(boolean)},
+ * and then atomically moved over the current snapshot. The previous snapshots are kept as
+ * numbered generations ({@code name.1}, {@code name.2}, ...), newest first.
+ *
+ * <p>Each file starts with a small header holding a magic number, the payload length, and a
+ * CRC-32 of the payload, so a torn or corrupted file is detected before any of it is used.
+ * Reading tries the current snapshot first and falls back to the newest older generation
+ * that passes the check. Files written before this header existed are still accepted.</p>
+ *
+ * <p>Only damage is a reason to fall back. A snapshot that passes its check but cannot be parsed,
+ * such as one written by a newer version ({@link NewerVersionException}), is intact data that
+ * this build cannot use: the read fails instead, and the store refuses every write from then on,
+ * so the file is never rotated out by an older build.</p>
+ */
+public class SnapshotStore {
+
+    /** Magic number identifying a framed snapshot file ("MMSN"). */
+    private static final int MAGIC = 0x4D4D534E;
+
+    /** Header size: magic (int) + payload length (long) + CRC-32 (long). */
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    /** Directory that holds the snapshot files. */
+    private final Path directory;
+
+    /** File name of the current snapshot. */
+    private final String fileName;
+
+    /** Number of snapshot generations kept on disk, including the current one. */
+    private final int generations;
+
+    /** Whether the last read failed, in which case writes are refused so the files are kept. */
+    private volatile boolean readOnly;
+
+    /**
+     * Creates a snapshot store.
+     *
+     * @param directory   directory that holds the snapshot files
+     * @param fileName    file name of the current snapshot
+     * @param generations number of generations to keep (at least 1)
+     */
+    public SnapshotStore(Path directory, String fileName, int generations) {
+        this.directory = directory;
+        this.fileName = fileName;
+        this.generations = Math.max(1, generations);
+    }
+
+    /**
+     * Returns the path of a snapshot generation.
+     *
+     * @param generation 0 for the current snapshot, 1 for the one before it, and so on
+     * @return path of that generation's file
+     */
+    public Path generationFile(int generation) {
+        return directory.resolve(generation == 0 ? fileName : fileName + "." + generation);
+    }
+
+    /**
+     * Returns whether any snapshot generation exists on disk.
+     *
+     * @return true if at least one snapshot file exists
+     */
+    public boolean exists() {
+        for (int g = 0; g < generations; g++) {
+            if (Files.exists(generationFile(g))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes a new snapshot. The payload is streamed into a temporary file and forced to disk,
+     * older generations are shifted down, and the temporary file is atomically moved into place.
+     * If anything fails before the move, the existing snapshots are left untouched.
+     *
+     * @param writer writes the snapshot payload
+     * @throws IOException if the snapshot cannot be written, or if the last read failed (see
+     *                     {@link #isReadOnly()})
+     */
+    public void write(Writer writer) throws IOException {
+        if (readOnly) throw new IOException("Snapshots in " + directory + " could not be read and are kept as they are");
+        Files.createDirectories(directory);
+        Path tmp = directory.resolve(fileName + ".tmp");
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.allocate(HEADER_BYTES));
+
+            CountingCrcStream payload = new CountingCrcStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
+            writer.write(payload);
+            payload.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putLong(payload.count).putLong(payload.getChecksum().getValue()).flip();
+            ch.position(0);
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        rotateGenerations();
+        try {
+            Files.move(tmp, generationFile(0), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, generationFile(0), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory();
+    }
+
+    /**
+     * Reads the newest valid snapshot. Generations are tried from newest to oldest, skipping those
+     * that are truncated or fail their checksum. If the first intact generation cannot be parsed,
+     * the read fails rather than falling back. After a failed read, writes are refused until a
+     * read succeeds.
+     *
+     * @param reader parses the snapshot payload
+     * @param <T> type produced by the reader
+     * @return the parsed snapshot, or null if no snapshot exists
+     * @throws IOException if snapshots exist but none of them can be read
+     */
+    public <T> T read(Reader<T> reader) throws IOException {
+        IOException failure = null;
+        readOnly = true;
+        for (int g = 0; g < generations; g++) {
+            Path file = generationFile(g);
+            if (!Files.exists(file)) continue;
+            byte[] bytes = Files.readAllBytes(file);
+            boolean framed = isFramed(bytes);
+            InputStream payload;
+            try {
+                payload = framed ? verifiedPayload(file, bytes) : new ByteArrayInputStream(bytes);
+            } catch (IOException e) {
+                failure = addFailure(failure, e);
+                continue;
+            }
+            T value;
+            try {
+                value = reader.read(payload);
+            } catch (NewerVersionException e) {
+                throw e;
+            } catch (Exception e) {
+                // A framed payload passed its checksum, so it is not damaged: do not fall back.
+                // An unframed file has no checksum, and a parse error is the only sign of damage.
+                if (framed) throw new IOException("Snapshot " + file + " cannot be parsed", e);
+                failure = addFailure(failure, e);
+                continue;
+            }
+            readOnly = false;
+            return value;
+        }
+        if (failure != null) throw failure;
+        readOnly = false;
+        return null;
+    }
+
+    /**
+     * Records why one generation could not be used.
+     *
+     * @param failure failure collected so far, or null
+     * @param cause why the generation was skipped
+     * @return the failure to throw if no generation can be read
+     */
+    private IOException addFailure(IOException failure, Exception cause) {
+        if (failure == null) failure = new IOException("No readable snapshot in " + directory);
+        failure.addSuppressed(cause);
+        return failure;
+    }
+
+    /**
+     * Returns whether writes are refused because the last read failed.
+     *
+     * @return true if the files on disk must be kept as they are
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Returns whether a snapshot file starts with the header. Files written before framing was
+     * introduced have no header to verify.
+     *
+     * @param bytes contents of the file
+     * @return true if the file is framed
+     */
+    private static boolean isFramed(byte[] bytes) {
+        return bytes.length >= HEADER_BYTES && ByteBuffer.wrap(bytes).getInt() == MAGIC;
+    }
+
+    /**
+     * Opens the verified payload of a framed snapshot file.
+     *
+     * @param file snapshot file
+     * @param bytes contents of the file
+     * @return stream over the payload bytes
+     * @throws IOException if the file is truncated or fails its checksum
+     */
+    private static InputStream verifiedPayload(Path file, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes, Integer.BYTES, HEADER_BYTES - Integer.BYTES);
+        long length = buf.getLong();
+        long crc = buf.getLong();
+        if (length != bytes.length - HEADER_BYTES) throw new IOException("Truncated snapshot: " + file);
+
+        CRC32 actual = new CRC32();
+        actual.update(bytes, HEADER_BYTES, (int) length);
+        if (actual.getValue() != crc) throw new IOException("Snapshot checksum mismatch: " + file);
+
+        return new ByteArrayInputStream(bytes, HEADER_BYTES, (int) length);
+    }
+
+    /**
+     * Shifts every kept generation one slot older, dropping the oldest.
+     *
+     * @throws IOException if a generation cannot be moved
+     */
+    private void rotateGenerations() throws IOException {
+        Files.deleteIfExists(generationFile(generations - 1));
+        for (int g = generations - 2; g >= 0; g--) {
+            Path from = generationFile(g);
+            if (Files.exists(from)) Files.move(from, generationFile(g + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory entry changes (renames) to disk where the platform supports it.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+            // Not supported on every platform (e.g. Windows); the file data itself is already synced.
+        }
+    }
+
+    /**
+     * Writes a snapshot payload to a stream.
+     */
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * Writes the payload.
+         *
+         * @param out destination stream (must not be closed by the writer)
+         * @throws IOException if writing fails
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Parses a snapshot payload from a stream.
+     *
+     * @param <T> type of the parsed snapshot
+     */
+    @FunctionalInterface
+    public interface Reader<T> {
+        /**
+         * Reads the payload.
+         *
+         * @param in verified payload stream
+         * @return parsed snapshot
+         * @throws Exception if the payload cannot be parsed
+         */
+        T read(InputStream in) throws Exception;
+    }
+
+    /**
+     * Output stream that tracks the CRC-32 and byte count of everything written through it.
+     */
+    private static class CountingCrcStream extends CheckedOutputStream {
+
+        /** Number of payload bytes written so far. */
+        private long count;
+
+        CountingCrcStream(OutputStream out) {
+            super(out, new CRC32());
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            super.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The underlying channel is closed by SnapshotStore#write; only flush here.
+            flush();
+        }
+    }
+}
@@ -22,9 +22,15 @@ public class User implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
-    /** Unique identifier for the user (typically an email). */
+    /**
+     * Unique, permanent identifier for the user. Every shard, goal, custom food and DayLog is keyed
+     * on it, so it never changes, even when the user changes their email.
+     */
     private String id;
 
+    /** Email address the user signs in with; unique across accounts, but free to change. */
+    private String email;
+
     /** Backing value for the JavaFX name property. */
     private String nameValue;
 
@@ -88,6 +94,15 @@ public class User implements Serializable {
         return id;
     }
 
+    /**
+     * Returns the user's sign-in email.
+     *
+     * @return email address
+     */
+    public String getEmail() {
+        return email;
+    }
+
     /**
      * Returns the JavaFX property for the user's display name, creating it if needed.
      *
@@ -173,6 +188,15 @@ public class User implements Serializable {
         this.id = id;
     }
 
+    /**
+     * Sets the user's sign-in email.
+     *
+     * @param email set email address
+     */
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
     /**
      * Sets user name and updates the JavaFX property if it exists.
      *
@@ -263,6 +287,28 @@ public class User implements Serializable {
         return calculateBMR() * mult;
     }
 
+    /**
+     * Returns the biological sex with the given ordinal, used when decoding stored users.
+     *
+     * @param ordinal stored ordinal
+     * @return matching sex, or null if the ordinal is unknown
+     */
+    static Sex sexOf(int ordinal) {
+        Sex[] values = Sex.values();
+        return (ordinal >= 0 && ordinal < values.length) ? values[ordinal] : null;
+    }
+
+    /**
+     * Returns the activity level with the given ordinal, used when decoding stored users.
+     *
+     * @param ordinal stored ordinal
+     * @return matching activity level, or null if the ordinal is unknown
+     */
+    static ActivityLevel activityLevelOf(int ordinal) {
+        ActivityLevel[] values = ActivityLevel.values();
+        return (ordinal >= 0 && ordinal < values.length) ? values[ordinal] : null;
+    }
+
     /**
      * Standard to String method.
      *
@@ -270,8 +316,8 @@ public class User implements Serializable {
      */
     @Override
     public String toString() {
-        return "User{id='%s', name='%s', goal='%s', age=%d, sex=%s, heightIn=%.2f, weightLb=%.2f, activityLevel=%s}"
-                .formatted(id, nameValue, goal, age, sex, heightIn, weightLb, activityLevel);
+        return "User{id='%s', email='%s', name='%s', goal='%s', age=%d, sex=%s, heightIn=%.2f, weightLb=%.2f, activityLevel=%s}"
+                .formatted(id, email, nameValue, goal, age, sex, heightIn, weightLb, activityLevel);
     }
 
     /**
@@ -0,0 +1,686 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Holds the data that belongs to a single user: their goals, custom foods, and DayLogs.
+ * Each shard is stored in its own directory, so logging in or saving only touches that
+ * user's data instead of the whole install.
+ *
+ * <p>Goals (the user's full goal history) and custom foods are kept in one shard file. DayLogs are
+ * kept in monthly segment files; only the segments that have been needed so far are loaded, and the
+ * shard tracks which months exist on disk, which are loaded, and which have changed since they were
+ * last written. Loaded DayLogs are held in a map sorted by date, so a single day or a date range is
+ * found without scanning.</p>
+ *
+ * <p>The shard also indexes FoodLogs by food ID. For loaded months it maps each food to the
+ * entries (and their DayLogs) that reference it, so deleting a food only touches those entries.
+ * For every month it keeps how many entries reference each food. These counts are saved with the
+ * shard, so usage totals are known and the months holding a food are found without reading every
+ * segment. A month's counts are rebuilt from its DayLogs whenever the month is loaded.</p>
+ *
+ * <p>The fields of every FoodLog filed in the shard's DayLogs are kept in one {@link FoodLogTable},
+ * and their totals are added up per day in a {@link DailyRollup}, which answers date-range sums in
+ * O(log n). The per-day totals are saved with the shard as well, and restored into the rollup for
+ * months that are not loaded, so long-range sums and averages do not read any segment. Food IDs are
+ * given keys by an {@link IdDictionary} shared by that table and the food index, so indexing an
+ * entry reads its food key straight from the table and looks it up in a {@link LongMap}. The usage
+ * counts are keyed the same way and held as plain ints in {@link LongIntMap}s; food IDs are only
+ * turned back into strings when the counts are saved, or when a caller asks about a food by ID.</p>
+ *
+ * <p>Shards are created and loaded on demand by {@link DataManager} (when a user authenticates
+ * or registers) and are written back only when they have changed.</p>
+ */
+public class UserShard {
+
+    /** ID of the user this shard belongs to. */
+    private String userId;
+
+    /** The user's goals, in the order they were set. */
+    private final List<Goal> goals = new ArrayList<>();
+
+    /** Interval index over {@link #goals}, built on first use and dropped when they change (null until then). */
+    private GoalHistory goalHistory;
+
+    /** Custom foods created by the user. */
+    private final List<CustomFood> customFoods = new ArrayList<>();
+
+    /** Recipe graph over {@link #customFoods}, built on first use (null until then). */
+    private RecipeGraph recipes;
+
+    /** DayLogs of the loaded months, by date. */
+    private final NavigableMap<LocalDate, DayLog> dayLogs = new TreeMap<>();
+
+    /** Months that have a segment file on disk. */
+    private final NavigableSet<YearMonth> storedMonths = new TreeSet<>();
+
+    /** Months whose segment has been read into {@link #dayLogs}. */
+    private final Set<YearMonth> loadedMonths = new HashSet<>();
+
+    /** Stored months whose segment could not be read. They stay unloaded and are never written. */
+    private final Set<YearMonth> unreadableMonths = new HashSet<>();
+
+    /** Whether the shard's own snapshot or journal could not be read, making the whole shard read-only. */
+    private boolean unreadable;
+
+    /** Loaded months changed since their segment was last written. */
+    private final Set<YearMonth> dirtyMonths = new HashSet<>();
+
+    /** Snapshot and journal backing this shard on disk. */
+    private JournaledStore store;
+
+    /** Segment file stores by month, created as months are read or written. */
+    private final Map<YearMonth, SnapshotStore> segmentStores = new HashMap<>();
+
+    /** Keys for the food IDs used in this shard, shared by the FoodLog table and the food index. */
+    private final IdDictionary foodKeys = new IdDictionary();
+
+    /** Columnar storage for the FoodLogs of the loaded months. */
+    private final FoodLogTable foodLogTable = new FoodLogTable(256, foodKeys);
+
+    /** Per-day totals of the loaded months and of the {@link #totaledMonths}. */
+    private final DailyRollup rollup = new DailyRollup();
+
+    /** Months that are not loaded but whose per-day totals were restored into {@link #rollup}. */
+    private final Set<YearMonth> totaledMonths = new HashSet<>();
+
+    /** FoodLogs of the loaded months by food key, each mapped to the DayLog holding it. */
+    private final LongMap<Map<FoodLog, DayLog>> logsByFood = new LongMap<>();
+
+    /** Number of FoodLogs per food key in each month, for loaded and unloaded months alike. */
+    private final NavigableMap<YearMonth, LongIntMap> usageByMonth = new TreeMap<>();
+
+    /** Number of FoodLogs per food key across all months. */
+    private final LongIntMap usageTotals = new LongIntMap();
+
+    /**
+     * Creates an empty shard for a user.
+     *
+     * @param userId ID of the owning user
+     */
+    public UserShard(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Returns the ID of the owning user.
+     *
+     * @return user ID
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Re-assigns this shard, and every custom food and DayLog in it, to another user ID.
+     *
+     * @param userId new owner ID
+     * @return true if anything in the shard was changed
+     */
+    boolean reassignTo(String userId) {
+        boolean changed = !userId.equals(this.userId);
+        this.userId = userId;
+        for (CustomFood cf : customFoods) {
+            if (cf != null && !userId.equals(cf.getUserId())) {
+                cf.setUserId(userId);
+                changed = true;
+            }
+        }
+        for (DayLog dl : dayLogs.values()) {
+            if (!userId.equals(dl.getUserId())) {
+                dl.setUserId(userId);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the user's goal history, in the order the goals were set.
+     *
+     * @return read-only list of goals
+     */
+    public List<Goal> getGoals() {
+        return Collections.unmodifiableList(goals);
+    }
+
+    /**
+     * Appends a goal to the user's history. It applies from its start date on, ahead of any goal
+     * set before it.
+     *
+     * @param goal goal to add
+     */
+    void addGoal(Goal goal) {
+        if (goal == null) return;
+        goals.add(goal);
+        goalHistory = null;
+    }
+
+    /**
+     * Replaces the user's whole goal history.
+     *
+     * @param replacement goals in the order they were set
+     */
+    void setGoals(List<Goal> replacement) {
+        goals.clear();
+        for (Goal g : replacement) {
+            if (g != null) goals.add(g);
+        }
+        goalHistory = null;
+    }
+
+    /**
+     * Returns the interval index over the user's goals, building it on first use.
+     *
+     * @return the user's goal history index
+     */
+    public GoalHistory getGoalHistory() {
+        if (goalHistory == null) goalHistory = new GoalHistory(goals);
+        return goalHistory;
+    }
+
+    /**
+     * Returns the user's custom foods.
+     *
+     * @return mutable list of custom foods
+     */
+    public List<CustomFood> getCustomFoods() {
+        return customFoods;
+    }
+
+    /**
+     * Returns the recipe graph over the user's custom foods, building it on first use. Custom
+     * foods added or removed afterwards must also be put into or removed from the graph.
+     *
+     * @return the user's recipe graph
+     */
+    public RecipeGraph getRecipes() {
+        if (recipes == null) recipes = new RecipeGraph(customFoods);
+        return recipes;
+    }
+
+    /**
+     * Returns the user's DayLogs for the months loaded so far, oldest first.
+     *
+     * @return live view of the loaded DayLogs (removal is supported, adding is not)
+     */
+    public Collection<DayLog> getDayLogs() {
+        return dayLogs.values();
+    }
+
+    /**
+     * Returns the loaded DayLogs between two dates (inclusive), oldest first.
+     *
+     * @param from first date of the range
+     * @param to last date of the range
+     * @return live view of the DayLogs in the range
+     */
+    public Collection<DayLog> getDayLogs(LocalDate from, LocalDate to) {
+        return dayLogs.subMap(from, true, to, true).values();
+    }
+
+    /**
+     * Returns the loaded DayLog for a date.
+     *
+     * @param date date of interest
+     * @return the DayLog, or null if none is loaded for that date
+     */
+    public DayLog getDayLog(LocalDate date) {
+        return date == null ? null : dayLogs.get(date);
+    }
+
+    /**
+     * Adds a DayLog to the shard. DayLogs without a date are ignored. If the shard already holds
+     * a DayLog for the same date, the new one's FoodLogs are merged into it.
+     *
+     * @param dl DayLog to add
+     * @return the DayLog now held for that date, or null if {@code dl} has no date
+     */
+    DayLog putDayLog(DayLog dl) {
+        if (dl == null || dl.getDate() == null) return null;
+        DayLog existing = dayLogs.putIfAbsent(dl.getDate(), dl);
+        if (existing == null) {
+            for (FoodLog fl : dl.getFoodLogs()) index(dl, fl);
+            return dl;
+        }
+        for (FoodLog fl : dl.getFoodLogs()) addFoodLog(existing, fl);
+        return existing;
+    }
+
+    /**
+     * Removes the loaded DayLog for a date.
+     *
+     * @param date date of the DayLog to remove
+     * @return the removed DayLog, or null if none was loaded for that date
+     */
+    DayLog removeDayLog(LocalDate date) {
+        DayLog removed = date == null ? null : dayLogs.remove(date);
+        if (removed != null) {
+            for (FoodLog fl : removed.getFoodLogs()) unindex(removed, fl);
+        }
+        return removed;
+    }
+
+    /**
+     * Adds a FoodLog to one of this shard's DayLogs and indexes it.
+     *
+     * @param day loaded DayLog to add to
+     * @param log entry to add
+     */
+    void addFoodLog(DayLog day, FoodLog log) {
+        if (day == null || log == null) return;
+        day.addFoodLog(log);
+        index(day, log);
+    }
+
+    /**
+     * Removes a FoodLog from one of this shard's DayLogs and from the index.
+     *
+     * @param day loaded DayLog holding the entry
+     * @param log entry to remove
+     */
+    void removeFoodLog(DayLog day, FoodLog log) {
+        if (day == null || log == null) return;
+        int before = day.getFoodLogs().size();
+        day.removeFoodLog(log);
+        if (day.getFoodLogs().size() < before) unindex(day, log);
+    }
+
+    /**
+     * Returns the table holding the FoodLogs of the loaded months.
+     *
+     * @return this shard's FoodLog table
+     */
+    FoodLogTable getFoodLogTable() {
+        return foodLogTable;
+    }
+
+    /**
+     * Returns the per-day totals of the loaded months and of the months whose saved totals were
+     * restored.
+     *
+     * @return this shard's rollup
+     */
+    DailyRollup getRollup() {
+        return rollup;
+    }
+
+    /**
+     * Returns the loaded FoodLogs that reference a food, each with the DayLog holding it.
+     * Entries in months that are not loaded are not included; see {@link #getMonthsUsing}.
+     *
+     * @param foodId food or custom food ID
+     * @return read-only map from entry to its DayLog
+     */
+    Map<FoodLog, DayLog> getFoodLogsOf(String foodId) {
+        Map<FoodLog, DayLog> logs = logsByFood.get(foodKeys.find(foodId));
+        return logs == null ? Map.of() : Collections.unmodifiableMap(logs);
+    }
+
+    /**
+     * Returns how many FoodLogs reference a food across all months with known counts.
+     *
+     * @param foodId food or custom food ID
+     * @return number of entries logged with that food
+     */
+    int countFoodLogs(String foodId) {
+        return usageTotals.get(foodKeys.find(foodId));
+    }
+
+    /**
+     * Returns the months that may hold FoodLogs for a food: months whose counts include it,
+     * plus any stored months whose counts are not known yet.
+     *
+     * @param foodId food or custom food ID
+     * @return months to load before looking the food up with {@link #getFoodLogsOf}
+     */
+    Set<YearMonth> getMonthsUsing(String foodId) {
+        Set<YearMonth> out = new TreeSet<>(getUncountedMonths());
+        long foodKey = foodKeys.find(foodId);
+        if (foodKey == IdDictionary.NONE) return out;
+        for (Map.Entry<YearMonth, LongIntMap> e : usageByMonth.entrySet()) {
+            if (e.getValue().containsKey(foodKey)) out.add(e.getKey());
+        }
+        return out;
+    }
+
+    /**
+     * Returns the stored months with no known usage counts, such as months last written before
+     * counts were kept. Loading such a month counts it.
+     *
+     * @return months without counts
+     */
+    Set<YearMonth> getUncountedMonths() {
+        Set<YearMonth> out = new TreeSet<>();
+        for (YearMonth m : storedMonths) {
+            if (!usageByMonth.containsKey(m)) out.add(m);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the stored months whose per-day totals are not in the rollup, such as months last
+     * written before totals were kept. Loading such a month adds its totals.
+     *
+     * @return months without totals, oldest first
+     */
+    NavigableSet<YearMonth> getUntotaledMonths() {
+        NavigableSet<YearMonth> out = new TreeSet<>();
+        for (YearMonth m : storedMonths) {
+            if (!loadedMonths.contains(m) && !totaledMonths.contains(m)) out.add(m);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the months whose per-day totals in the rollup are complete, for saving with the
+     * shard: the loaded months and the months whose saved totals were restored.
+     *
+     * @return months with known totals, oldest first
+     */
+    NavigableSet<YearMonth> getTotaledMonths() {
+        NavigableSet<YearMonth> out = new TreeSet<>(loadedMonths);
+        out.addAll(totaledMonths);
+        return out;
+    }
+
+    /**
+     * Records that a month's saved per-day totals are being restored. Its days are then added
+     * with {@link #setDayTotals}. Ignored for a loaded month, whose totals come from its DayLogs.
+     *
+     * @param month month the totals belong to
+     */
+    void markMonthTotaled(YearMonth month) {
+        if (!loadedMonths.contains(month)) totaledMonths.add(month);
+    }
+
+    /**
+     * Restores one day's saved totals into the rollup. Ignored unless the day's month was passed
+     * to {@link #markMonthTotaled} and is not loaded.
+     *
+     * @param day date of the totals
+     * @param totals summed totals of the day's entries
+     * @param entries number of entries the totals cover
+     */
+    void setDayTotals(LocalDate day, Macros totals, int entries) {
+        if (totaledMonths.contains(YearMonth.from(day))) rollup.addDay(day, totals, entries);
+    }
+
+    /**
+     * Drops restored totals for months that have no segment on disk, such as a month whose
+     * segment was deleted by hand. Called once the stored months are known.
+     */
+    void dropUnstoredTotals() {
+        for (YearMonth m : new ArrayList<>(totaledMonths)) {
+            if (!storedMonths.contains(m)) clearMonthTotals(m);
+        }
+    }
+
+    /**
+     * Removes a month's restored totals from the rollup, if it has any.
+     *
+     * @param month month to reset
+     * @return true if the month's totals had been restored
+     */
+    private boolean clearMonthTotals(YearMonth month) {
+        if (!totaledMonths.remove(month)) return false;
+        rollup.clear(month.atDay(1), month.atEndOfMonth());
+        return true;
+    }
+
+    /**
+     * Returns the per-month usage counts by food ID, for saving with the shard. The counts are
+     * kept by food key; this translates them back to IDs.
+     *
+     * @return map from month to counts by food ID
+     */
+    NavigableMap<YearMonth, Map<String, Integer>> getUsageByMonth() {
+        NavigableMap<YearMonth, Map<String, Integer>> out = new TreeMap<>();
+        for (Map.Entry<YearMonth, LongIntMap> e : usageByMonth.entrySet()) {
+            Map<String, Integer> counts = new HashMap<>();
+            e.getValue().forEach((foodKey, n) -> counts.put(foodKeys.nameOf(foodKey), n));
+            out.put(e.getKey(), counts);
+        }
+        return out;
+    }
+
+    /**
+     * Restores one month's saved usage counts, replacing any counts already held for it.
+     *
+     * @param month month the counts belong to
+     * @param counts number of entries by food ID
+     */
+    void setMonthUsage(YearMonth month, Map<String, Integer> counts) {
+        clearMonthUsage(month);
+        LongIntMap m = usageByMonth.get(month);
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (e.getKey() == null || e.getValue() == null || e.getValue() <= 0) continue;
+            long foodKey = foodKeys.keyOf(e.getKey());
+            m.put(foodKey, e.getValue());
+            addUsage(foodKey, e.getValue());
+        }
+    }
+
+    /**
+     * Moves an entry into the shard's FoodLog table and adds it to the daily rollup, the food
+     * index and its month's usage counts.
+     *
+     * @param day DayLog holding the entry
+     * @param log entry to index
+     */
+    private void index(DayLog day, FoodLog log) {
+        if (log == null) return;
+        log.moveTo(foodLogTable);
+        rollup.add(day.getDate(), log.getNutrients());
+        long foodKey = log.getFoodKey();
+        if (foodKey == IdDictionary.NONE) return;
+        logsByFood.computeIfAbsent(foodKey, k -> new HashMap<>()).put(log, day);
+        usageByMonth.computeIfAbsent(YearMonth.from(day.getDate()), k -> new LongIntMap()).add(foodKey, 1);
+        addUsage(foodKey, 1);
+    }
+
+    /**
+     * Removes an entry from the daily rollup, the food index and its month's usage counts, and
+     * moves it out of the shard's FoodLog table.
+     *
+     * @param day DayLog that held the entry
+     * @param log entry to remove
+     */
+    private void unindex(DayLog day, FoodLog log) {
+        if (log == null) return;
+        long foodKey = log.getFoodKey();
+        rollup.remove(day.getDate(), log.getNutrients());
+        log.detach();
+        Map<FoodLog, DayLog> logs = logsByFood.get(foodKey);
+        if (logs == null || logs.remove(log) == null) return;
+        if (logs.isEmpty()) logsByFood.remove(foodKey);
+        LongIntMap month = usageByMonth.get(YearMonth.from(day.getDate()));
+        if (month != null) month.add(foodKey, -1);
+        addUsage(foodKey, -1);
+    }
+
+    /**
+     * Changes the all-months usage count of a food, dropping it once it reaches zero.
+     *
+     * @param foodKey food key in {@link #foodKeys} ({@link IdDictionary#NONE} is ignored)
+     * @param delta change in the number of entries
+     */
+    private void addUsage(long foodKey, int delta) {
+        if (foodKey == IdDictionary.NONE) return;
+        usageTotals.add(foodKey, delta);
+    }
+
+    /**
+     * Drops one month's usage counts from the totals and resets the month to no entries.
+     *
+     * @param month month to reset
+     */
+    private void clearMonthUsage(YearMonth month) {
+        LongIntMap old = usageByMonth.put(month, new LongIntMap());
+        if (old != null) old.forEach((foodKey, n) -> addUsage(foodKey, -n));
+    }
+
+    /**
+     * Returns the months that have a segment file on disk, oldest first.
+     *
+     * @return mutable set of stored months
+     */
+    NavigableSet<YearMonth> getStoredMonths() {
+        return storedMonths;
+    }
+
+    /**
+     * Returns whether a month's DayLogs are in memory. A month with no segment on disk
+     * has nothing to load and counts as loaded.
+     *
+     * @param month month of interest
+     * @return true if the month does not need to be read from disk
+     */
+    boolean isMonthLoaded(YearMonth month) {
+        return loadedMonths.contains(month) || !storedMonths.contains(month);
+    }
+
+    /**
+     * Records that a month's segment is being read into memory. The month's usage counts and
+     * restored per-day totals are reset to the DayLogs already in memory for it; DayLogs added
+     * from the segment afterwards are counted as they are added, so saved counts and totals never
+     * go stale once a month is loaded.
+     *
+     * @param month loaded month
+     * @return true if the month is stored and its totals were not saved with the shard, so the
+     *         shard should be rewritten to save them
+     */
+    boolean markMonthLoaded(YearMonth month) {
+        boolean untotaled = storedMonths.contains(month) && !loadedMonths.contains(month)
+                && !totaledMonths.contains(month);
+        loadedMonths.add(month);
+        unreadableMonths.remove(month);
+        clearMonthUsage(month);
+        LongIntMap counts = usageByMonth.get(month);
+        boolean restored = clearMonthTotals(month);
+        for (DayLog dl : getDayLogs(month.atDay(1), month.atEndOfMonth())) {
+            for (FoodLog fl : dl.getFoodLogs()) {
+                if (restored) rollup.add(dl.getDate(), fl.getNutrients());
+                long foodKey = fl.getFoodKey();
+                if (foodKey == IdDictionary.NONE) continue;
+                counts.add(foodKey, 1);
+                addUsage(foodKey, 1);
+            }
+        }
+        return untotaled;
+    }
+
+    /**
+     * Records that a month's segment exists but could not be read. The month stays unloaded, so
+     * the next access tries again, and it cannot be marked dirty until a read succeeds.
+     *
+     * @param month month whose segment failed to read
+     */
+    void markMonthUnreadable(YearMonth month) {
+        unreadableMonths.add(month);
+    }
+
+    /**
+     * Returns the stored months whose segment could not be read.
+     *
+     * @return read-only view of the unreadable months
+     */
+    Set<YearMonth> getUnreadableMonths() {
+        return Collections.unmodifiableSet(unreadableMonths);
+    }
+
+    /**
+     * Records that the shard's snapshot or journal exists but could not be read. The shard then
+     * holds none of the user's data, and no change to it may be made or written.
+     */
+    void markUnreadable() {
+        unreadable = true;
+    }
+
+    /**
+     * Returns whether the shard's snapshot or journal could not be read.
+     *
+     * @return true if the shard is read-only
+     */
+    boolean isUnreadable() {
+        return unreadable;
+    }
+
+    /**
+     * Records that a month's DayLogs changed and its segment must be rewritten. A month whose
+     * segment could not be read is read-only: it is left alone, so the good segment on disk is
+     * never replaced by the partial month in memory.
+     *
+     * @param month changed month
+     */
+    void markMonthDirty(YearMonth month) {
+        if (unreadableMonths.contains(month)) return;
+        loadedMonths.add(month);
+        dirtyMonths.add(month);
+        usageByMonth.computeIfAbsent(month, k -> new LongIntMap());
+    }
+
+    /**
+     * Marks every loaded month, and the month of every DayLog in memory, as needing a rewrite.
+     * Used after a migration or a failed write.
+     */
+    void markLoadedMonthsDirty() {
+        for (LocalDate date : dayLogs.keySet()) markMonthDirty(YearMonth.from(date));
+        dirtyMonths.addAll(loadedMonths);
+    }
+
+    /**
+     * Returns and clears the set of months whose segments must be rewritten. The months are
+     * recorded as stored, since their segment is about to be written.
+     *
+     * @return months to write
+     */
+    Set<YearMonth> takeDirtyMonths() {
+        Set<YearMonth> out = new HashSet<>(dirtyMonths);
+        dirtyMonths.clear();
+        storedMonths.addAll(out);
+        return out;
+    }
+
+    /**
+     * Returns the store backing this shard.
+     *
+     * @return snapshot and journal of this shard
+     */
+    JournaledStore getStore() {
+        return store;
+    }
+
+    /**
+     * Sets the store backing this shard. Cached segment stores are dropped, since they point
+     * into the previous store's directory.
+     *
+     * @param store snapshot and journal of this shard
+     */
+    void setStore(JournaledStore store) {
+        this.store = store;
+        segmentStores.clear();
+    }
+
+    /**
+     * Returns the cached segment stores of this shard, by month.
+     *
+     * @return mutable map of segment stores
+     */
+    Map<YearMonth, SnapshotStore> getSegmentStores() {
+        return segmentStores;
+    }
+}
@@ -0,0 +1,151 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link DailyRollup}: range sums and averages agree with adding the days up one by
+ * one, as entries are added and removed, the window grows, and far-off days are kept aside.
+ */
+class DailyRollupTest {
+
+    /** Tolerance for sums built up by many additions and removals. */
+    private static final double EPSILON = 1e-6;
+
+    /** First day of the test calendar. */
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    /** Random adds and removes over several years match per-day sums for random ranges. */
+    @Test
+    void rangeSumsMatchBruteForce() {
+        Random random = new Random(11);
+        int days = 3 * 365;
+        DailyRollup rollup = new DailyRollup();
+        double[][] expected = new double[days][4];
+        List<Object[]> live = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (!live.isEmpty() && random.nextInt(4) == 0) {
+                Object[] e = live.remove(random.nextInt(live.size()));
+                int d = (int) e[0];
+                Macros m = (Macros) e[1];
+                rollup.remove(START.plusDays(d), m);
+                add(expected[d], m, -1);
+            } else {
+                // Start in the middle so the window has to grow in both directions.
+                int d = (days / 2 + (i % 2 == 0 ? 1 : -1) * random.nextInt(days / 2)) % days;
+                Macros m = new Macros(random.nextDouble() * 800, random.nextDouble() * 50, random.nextDouble() * 90, random.nextDouble() * 30);
+                rollup.add(START.plusDays(d), m);
+                add(expected[d], m, 1);
+                live.add(new Object[] {d, m});
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(days);
+            int to = from + random.nextInt(days - from);
+            double[] sum = new double[4];
+            for (int d = from; d <= to; d++) add(sum, expected[d]);
+            assertMacros(sum, rollup.sum(START.plusDays(from), START.plusDays(to)));
+        }
+        for (int d = 0; d < days; d++) assertMacros(expected[d], rollup.get(START.plusDays(d)));
+    }
+
+    /** Averages count empty days as zero; an empty or reversed range is zero. */
+    @Test
+    void averagesOverCalendarDays() {
+        DailyRollup rollup = new DailyRollup();
+        rollup.add(START, new Macros(1000, 10, 20, 30));
+        rollup.add(START.plusDays(3), new Macros(1000, 10, 20, 30));
+
+        assertEquals(new Macros(500, 5, 10, 15), rollup.average(START, START.plusDays(3)));
+        assertEquals(Macros.ZERO, rollup.average(START.plusDays(3), START));
+        assertEquals(Macros.ZERO, rollup.sum(START.plusDays(1), START.plusDays(2)));
+    }
+
+    /** Removing a day's last entry leaves it at exactly zero. */
+    @Test
+    void lastRemovalClearsDay() {
+        DailyRollup rollup = new DailyRollup();
+        Macros a = new Macros(0.1, 0.2, 0.3, 0.7);
+        Macros b = new Macros(0.2, 0.1, 0.7, 0.3);
+        rollup.add(START, a);
+        rollup.add(START, b);
+        rollup.remove(START, a);
+        rollup.remove(START, b);
+
+        assertEquals(Macros.ZERO, rollup.get(START));
+        assertEquals(0, rollup.count(START));
+        assertEquals(0.0, rollup.sum(START.minusDays(5), START.plusDays(5)).getCalories());
+    }
+
+    /** A day far outside the window is kept aside and still counted in sums, counts and the first day. */
+    @Test
+    void keepsFarOffDaysAside() {
+        DailyRollup rollup = new DailyRollup();
+        LocalDate typo = LocalDate.of(2205, 1, 1);
+        LocalDate ancient = LocalDate.of(1, 1, 1);
+        rollup.add(START, new Macros(100, 1, 1, 1));
+        rollup.add(typo, new Macros(200, 2, 2, 2));
+        rollup.add(ancient, new Macros(300, 3, 3, 3));
+
+        assertEquals(new Macros(200, 2, 2, 2), rollup.get(typo));
+        assertEquals(600, rollup.sum(ancient, typo).getCalories());
+        assertEquals(100, rollup.sum(START, START.plusYears(100)).getCalories());
+        assertEquals(ancient, rollup.firstDay());
+
+        rollup.remove(ancient, new Macros(300, 3, 3, 3));
+        assertEquals(START, rollup.firstDay());
+        assertEquals(Macros.ZERO, rollup.get(ancient));
+    }
+
+    /** Whole days restored at once can be cleared month by month, leaving other days alone. */
+    @Test
+    void restoresAndClearsWholeDays() {
+        DailyRollup rollup = new DailyRollup();
+        assertNull(rollup.firstDay());
+        rollup.addDay(START.plusDays(2), new Macros(900, 9, 9, 9), 3);
+        rollup.addDay(START.plusDays(40), new Macros(500, 5, 5, 5), 2);
+        rollup.addDay(START.plusDays(41), new Macros(500, 5, 5, 5), 0);
+        rollup.add(START.plusDays(40), new Macros(100, 1, 1, 1));
+
+        assertEquals(3, rollup.count(START.plusDays(2)));
+        assertEquals(3, rollup.count(START.plusDays(40)));
+        assertEquals(0, rollup.count(START.plusDays(41)));
+        assertEquals(START.plusDays(2), rollup.firstDay());
+        assertEquals(1500, rollup.sum(START, START.plusDays(60)).getCalories());
+
+        rollup.clear(START, START.plusDays(30));
+        assertEquals(0, rollup.count(START.plusDays(2)));
+        assertEquals(600, rollup.sum(START, START.plusDays(60)).getCalories());
+        assertEquals(START.plusDays(40), rollup.firstDay());
+    }
+
+    /** Adds a day's amounts into a running total. */
+    private static void add(double[] total, Macros m, int sign) {
+        total[0] += sign * m.getCalories();
+        total[1] += sign * m.getProteinG();
+        total[2] += sign * m.getCarbsG();
+        total[3] += sign * m.getFatG();
+    }
+
+    /** Adds one running total into another. */
+    private static void add(double[] total, double[] day) {
+        for (int k = 0; k < 4; k++) total[k] += day[k];
+    }
+
+    /** Checks totals against expected values, allowing for rounding. */
+    private static void assertMacros(double[] expected, Macros actual) {
+        assertEquals(expected[0], actual.getCalories(), EPSILON);
+        assertEquals(expected[1], actual.getProteinG(), EPSILON);
+        assertEquals(expected[2], actual.getCarbsG(), EPSILON);
+        assertEquals(expected[3], actual.getFatG(), EPSILON);
+    }
+}
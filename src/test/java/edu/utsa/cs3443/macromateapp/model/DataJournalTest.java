@@ -0,0 +1,126 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link DataJournal}: records read back in order, and a torn or damaged tail is
+ * dropped and truncated away so later appends start at a clean record boundary.
+ */
+class DataJournalTest {
+
+    /** Directory for the journal file. */
+    @TempDir
+    Path dir;
+
+    /** Appended records are read back in order. */
+    @Test
+    void readsAppendedRecords() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("j").resolve("journal.log"));
+        long expectedSize = 0;
+        for (int i = 0; i < 3; i++) {
+            byte[] record = DataJournal.encode(JournalEntry.activeUserChanged("u" + i));
+            journal.append(record);
+            expectedSize += DataJournal.frameSize(record);
+        }
+        assertEquals(expectedSize, journal.size());
+
+        List<JournalEntry> entries = journal.readAll();
+        assertEquals(3, entries.size());
+        for (int i = 0; i < 3; i++) assertEquals("u" + i, entries.get(i).getUserId());
+    }
+
+    /** A record cut short by a crash is dropped, truncated away, and the next append is readable. */
+    @Test
+    void dropsTornTail() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("journal.log"));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u0")));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u1")));
+        long intact = journal.size();
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u2")));
+        truncate(journal.getFile(), journal.size() - 3);
+
+        assertEquals(2, journal.readAll().size());
+        assertEquals(intact, journal.size());
+
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u3")));
+        List<JournalEntry> entries = journal.readAll();
+        assertEquals(3, entries.size());
+        assertEquals("u3", entries.get(2).getUserId());
+    }
+
+    /** A tail cut inside the length word is dropped as well. */
+    @Test
+    void dropsPartialLengthWord() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("journal.log"));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u0")));
+        long intact = journal.size();
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u1")));
+        truncate(journal.getFile(), intact + 2);
+
+        assertEquals(1, journal.readAll().size());
+        assertEquals(intact, journal.size());
+    }
+
+    /** A record whose checksum does not match, and everything after it, is dropped. */
+    @Test
+    void dropsRecordWithBadChecksum() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("journal.log"));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u0")));
+        long intact = journal.size();
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u1")));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u2")));
+        try (RandomAccessFile f = new RandomAccessFile(journal.getFile().toFile(), "rw")) {
+            long at = intact + 2 * Integer.BYTES + 4;
+            f.seek(at);
+            int b = f.read();
+            f.seek(at);
+            f.write(b ^ 0xFF);
+        }
+
+        assertEquals(1, journal.readAll().size());
+        assertEquals(intact, journal.size());
+    }
+
+    /** An intact record from a newer version fails the read instead of being dropped. */
+    @Test
+    void rejectsNewerRecord() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("journal.log"));
+        byte[] record = DataJournal.encode(JournalEntry.activeUserChanged("u0"));
+        record[1]++;
+        journal.append(record);
+        long size = journal.size();
+
+        assertThrows(IOException.class, journal::readAll);
+        assertEquals(size, journal.size());
+    }
+
+    /** Clearing deletes the file; a missing journal reads as empty. */
+    @Test
+    void clearsJournal() throws IOException {
+        DataJournal journal = new DataJournal(dir.resolve("journal.log"));
+        journal.append(DataJournal.encode(JournalEntry.activeUserChanged("u0")));
+        journal.clear();
+
+        assertFalse(Files.exists(journal.getFile()));
+        assertEquals(0, journal.size());
+        assertEquals(List.of(), journal.readAll());
+    }
+
+    /** Cuts a file down to a length. */
+    private static void truncate(Path file, long length) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.setLength(length);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for {@link GoalHistory}: overlapping goals are cut into intervals where the goal set
+ * later wins, and lookups agree with a brute-force scan.
+ */
+class GoalHistoryTest {
+
+    /** First day of the test calendar. */
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+
+    /** A later goal wins where it overlaps an earlier one; the earlier goal keeps the days before. */
+    @Test
+    void laterGoalWinsOverlap() {
+        Goal early = goal("early", 0, 30);
+        Goal late = goal("late", 10, 20);
+        GoalHistory history = new GoalHistory(List.of(early, late));
+
+        assertSame(early, history.goalOn(day(0)));
+        assertSame(early, history.goalOn(day(9)));
+        assertSame(late, history.goalOn(day(10)));
+        assertSame(late, history.goalOn(day(20)));
+        assertNull(history.goalOn(day(21)));
+        assertNull(history.goalOn(day(-1)));
+        assertEquals(2, history.size());
+    }
+
+    /** An earlier goal set to start after a later one is hidden entirely; gaps have no goal. */
+    @Test
+    void hiddenGoalsAndGaps() {
+        Goal hidden = goal("hidden", 15, 40);
+        Goal first = goal("first", 0, 5);
+        Goal second = goal("second", 10, 50);
+        GoalHistory history = new GoalHistory(List.of(hidden, first, second));
+
+        assertEquals(2, history.size());
+        assertSame(first, history.goalOn(day(5)));
+        assertNull(history.goalOn(day(7)));
+        assertSame(second, history.goalOn(day(15)));
+        assertNull(history.goalOn(null));
+    }
+
+    /** Goals without a start or end date, and null goals, are skipped. */
+    @Test
+    void skipsIncompleteGoals() {
+        Goal g = goal("g", 0, 10);
+        GoalHistory history = new GoalHistory(Arrays.asList(null, new Goal("x", 1, 1, 1, 1, null, day(5)), g));
+
+        assertEquals(1, history.size());
+        assertSame(g, history.goalOn(day(3)));
+    }
+
+    /** Lookups match the rule "the latest goal covering the day, unless a later goal started on or before it". */
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<Goal> goals = new ArrayList<>();
+            int n = 1 + random.nextInt(12);
+            for (int i = 0; i < n; i++) {
+                int from = random.nextInt(100);
+                goals.add(goal("g" + i, from, from + random.nextInt(40)));
+            }
+            GoalHistory history = new GoalHistory(goals);
+            for (int d = -5; d < 150; d++) assertSame(bruteForce(goals, day(d)), history.goalOn(day(d)), "day " + d);
+        }
+    }
+
+    /**
+     * Finds the goal of a day by scanning from the latest goal back: a goal applies if it covers
+     * the day, and no goal set after it has started by then.
+     */
+    private static Goal bruteForce(List<Goal> goals, LocalDate date) {
+        for (int i = goals.size() - 1; i >= 0; i--) {
+            Goal g = goals.get(i);
+            if (!g.getStartDate().isAfter(date)) return g.getEndDate().isBefore(date) ? null : g;
+        }
+        return null;
+    }
+
+    /** Creates a goal covering two day offsets (inclusive). */
+    private static Goal goal(String id, int from, int to) {
+        return new Goal(id, 2000, 100, 200, 70, day(from), day(to));
+    }
+
+    /** Returns the date a number of days after {@link #START}. */
+    private static LocalDate day(int offset) {
+        return START.plusDays(offset);
+    }
+}
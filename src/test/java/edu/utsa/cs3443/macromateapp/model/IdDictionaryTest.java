@@ -0,0 +1,48 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link IdDictionary}: stable keys for ID strings, and the compact ID format.
+ */
+class IdDictionaryTest {
+
+    /** Each name gets one key for good, and keys map back to names, across table growth. */
+    @Test
+    void assignsStableKeys() {
+        IdDictionary dict = new IdDictionary();
+        assertEquals(IdDictionary.NONE, dict.keyOf(null));
+        assertEquals(IdDictionary.NONE, dict.find("missing"));
+
+        long[] keys = new long[10_000];
+        for (int i = 0; i < keys.length; i++) keys[i] = dict.keyOf("food-" + i);
+        for (int i = 0; i < keys.length; i++) {
+            assertNotEquals(IdDictionary.NONE, keys[i]);
+            assertEquals(keys[i], dict.keyOf("food-" + i));
+            assertEquals(keys[i], dict.find("food-" + i));
+            assertEquals("food-" + i, dict.nameOf(keys[i]));
+        }
+        assertEquals(keys.length, dict.size());
+        assertEquals(IdDictionary.NONE, dict.find("missing"));
+        assertNull(dict.nameOf(IdDictionary.NONE));
+        assertNull(dict.nameOf(keys.length + 1));
+    }
+
+    /** New IDs are compact and parse back to the value they format. */
+    @Test
+    void formatsAndParsesCompactIds() {
+        String id = IdDictionary.newId();
+        long value = IdDictionary.parseCompact(id);
+        assertNotEquals(IdDictionary.NONE, value);
+        assertEquals(id, IdDictionary.formatCompact(value));
+        assertEquals(-1L, IdDictionary.parseCompact(IdDictionary.formatCompact(-1L)));
+
+        assertEquals(IdDictionary.NONE, IdDictionary.parseCompact(null));
+        assertEquals(IdDictionary.NONE, IdDictionary.parseCompact("abc"));
+        assertEquals(IdDictionary.NONE, IdDictionary.parseCompact(id.toUpperCase().replace('0', 'G')));
+    }
+}
@@ -0,0 +1,65 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LongIntMap}: a count that drops to zero removes its key, and counts agree with
+ * a boxed map through many increments, decrements and resizes.
+ */
+class LongIntMapTest {
+
+    /** Counts go up and down, and a key whose count reaches zero is gone. */
+    @Test
+    void addsAndDropsCounts() {
+        LongIntMap map = new LongIntMap();
+        assertTrue(map.isEmpty());
+        assertEquals(1, map.add(7, 1));
+        assertEquals(300, map.add(7, 299));
+        assertEquals(300, map.get(7));
+        assertEquals(1, map.size());
+
+        assertEquals(0, map.add(7, -300));
+        assertFalse(map.containsKey(7));
+        assertEquals(0, map.get(7));
+        assertTrue(map.isEmpty());
+
+        assertEquals(0, map.add(8, -1));
+        assertTrue(map.isEmpty());
+        map.put(9, 5);
+        map.put(9, 0);
+        assertTrue(map.isEmpty());
+    }
+
+    /** Random adds and removes match a HashMap of boxed counts. */
+    @Test
+    void matchesBoxedCounts() {
+        Random random = new Random(5);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2_000) * 64L;
+            int delta = random.nextInt(5) - 2;
+            int total = expected.getOrDefault(key, 0) + delta;
+            if (total > 0) expected.put(key, total);
+            else expected.remove(key);
+            assertEquals(Math.max(0, total), map.add(key, delta));
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Long, Integer> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertEquals(expected, seen);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        for (long key : expected.keySet()) assertEquals(0, map.get(key));
+    }
+}
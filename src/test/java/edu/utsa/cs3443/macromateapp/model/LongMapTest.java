@@ -0,0 +1,117 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LongMap}, in particular that removal shifts the rest of a probe run back so
+ * every remaining key stays reachable.
+ */
+class LongMapTest {
+
+    /** Slots in a map created with the default size. */
+    private static final int DEFAULT_SLOTS = 16;
+
+    /** Basic put, get, replace and remove. */
+    @Test
+    void putsGetsAndRemoves() {
+        LongMap<String> map = new LongMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(7, "a"));
+        assertEquals("a", map.put(7, "b"));
+        assertEquals("b", map.get(7));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(7));
+        assertNull(map.remove(7));
+        assertFalse(map.containsKey(7));
+        assertTrue(map.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, null));
+    }
+
+    /**
+     * Keys sharing one home slot form a probe run; removing the first of them must move the
+     * others back so lookups still find them, including keys whose run wraps past the end.
+     */
+    @Test
+    void removalShiftsProbeRunBack() {
+        for (int home : new int[] {3, DEFAULT_SLOTS - 2}) {
+            List<Long> keys = keysWithHome(home, 4);
+            long neighbour = keysWithHome((home + 1) % DEFAULT_SLOTS, 1).get(0);
+            LongMap<Long> map = new LongMap<>();
+            for (long k : keys) map.put(k, k);
+            map.put(neighbour, neighbour);
+
+            assertEquals(keys.get(0), map.remove(keys.get(0)));
+            for (long k : keys.subList(1, keys.size())) assertEquals(k, map.get(k), "home " + home);
+            assertEquals(neighbour, map.get(neighbour));
+
+            assertEquals(keys.get(2), map.remove(keys.get(2)));
+            assertEquals(keys.get(1), map.get(keys.get(1)));
+            assertEquals(keys.get(3), map.get(keys.get(3)));
+            assertEquals(neighbour, map.get(neighbour));
+            assertEquals(3, map.size());
+        }
+    }
+
+    /** Random puts and removes agree with {@link HashMap}, through several resizes. */
+    @Test
+    void matchesHashMap() {
+        Random random = new Random(42);
+        LongMap<Integer> map = new LongMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = -100; key < 4_900; key++) assertEquals(expected.get(key), map.get(key));
+
+        Map<Long, Integer> visited = new HashMap<>();
+        map.forEach((v, k) -> visited.put(k, v));
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), map.values().size());
+    }
+
+    /** computeIfAbsent only calls the function for a missing key; clear empties the map. */
+    @Test
+    void computesAndClears() {
+        LongMap<List<String>> map = new LongMap<>();
+        map.computeIfAbsent(5, k -> new ArrayList<>()).add("a");
+        map.computeIfAbsent(5, k -> {
+            throw new AssertionError("called for a present key");
+        }).add("b");
+        assertEquals(List.of("a", "b"), map.get(5));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(5));
+    }
+
+    /**
+     * Finds keys whose home slot in a default-sized map is the given one. This mirrors the map's
+     * hash, so the test can build collisions on purpose.
+     */
+    private static List<Long> keysWithHome(int home, int count) {
+        List<Long> out = new ArrayList<>();
+        for (long k = 1; out.size() < count; k++) {
+            long h = k * 0x9E3779B97F4A7C15L;
+            if (((int) (h ^ (h >>> 32)) & (DEFAULT_SLOTS - 1)) == home) out.add(k);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,519 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ModelCodec}: round trips in the current schema version, and reading payloads
+ * written by every older version. Older payloads are built byte by byte with {@link LegacyOut},
+ * following the layout each version wrote, since this build can only write the current one.
+ */
+class ModelCodecTest {
+
+    /** Magic number of a snapshot payload. */
+    private static final int SNAPSHOT_MAGIC = 0x4D4D4243;
+
+    /** Magic number of a shard payload. */
+    private static final int SHARD_MAGIC = 0x4D4D5553;
+
+    /** Magic number of a segment payload. */
+    private static final int SEGMENT_MAGIC = 0x4D4D4453;
+
+    /** Ordinal of the test user's sex (female). */
+    private static final int SEX = 1;
+
+    /** Ordinal of the test user's activity level (moderate). */
+    private static final int ACTIVITY = 2;
+
+    /** A date used throughout. */
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 14);
+
+    /** A timestamp used throughout. */
+    private static final LocalDateTime TIME = DAY.atTime(12, 30, 15, 500);
+
+    /** Snapshots keep users, credentials and foods; an active user is resolved by ID. */
+    @Test
+    void snapshotRoundTrips() throws Exception {
+        ModelCodec.Snapshot s = new ModelCodec.Snapshot();
+        User u = user("u1");
+        s.usersById.put("u1", u);
+        s.passwordSaltById.put("u1", "salt");
+        s.passwordHashById.put("u1", "hash");
+        s.activeUser = u;
+        s.foods.add(food("f1"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelCodec.writeSnapshot(bytes, s);
+        ModelCodec.Snapshot read = ModelCodec.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertUser(read.usersById.get("u1"), "a@x.com");
+        assertSame(read.usersById.get("u1"), read.activeUser);
+        assertEquals("salt", read.passwordSaltById.get("u1"));
+        assertEquals("hash", read.passwordHashById.get("u1"));
+        assertFood(read.foods.get(0), "f1");
+    }
+
+    /** Shards keep goals, custom foods (references, inline foods, components), usage counts and day totals. */
+    @Test
+    void shardRoundTrips() throws Exception {
+        Food shared = food("f1");
+        UserShard shard = new UserShard("u1");
+        shard.addGoal(goal("g1"));
+        CustomFood cf = new CustomFood("c1", "u1", "Shake", "desc");
+        cf.addIngredient(shared, 50);
+        cf.addIngredient(food("inline"), 20);
+        cf.addComponent("c2", 1.5);
+        shard.getCustomFoods().add(cf);
+
+        YearMonth month = YearMonth.from(DAY);
+        shard.markMonthLoaded(month);
+        shard.putDayLog(dayLog(IdDictionary.newId(), "u1", DAY, 1));
+        shard.putDayLog(dayLog(IdDictionary.newId(), "u1", DAY.plusDays(1), 2));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelCodec.writeShard(bytes, shard, id -> id.equals("f1") ? shared : null);
+        UserShard read = ModelCodec.readShard(new ByteArrayInputStream(bytes.toByteArray()), id -> id.equals("f1") ? shared : null);
+
+        assertEquals("u1", read.getUserId());
+        assertGoal(read.getGoals().get(0), "g1");
+        CustomFood readCf = read.getCustomFoods().get(0);
+        assertEquals("Shake", readCf.getName());
+        assertEquals(2, readCf.getIngredientCount());
+        assertSame(shared, readCf.getIngredientFood(0));
+        assertFood(readCf.getIngredientFood(1), "inline");
+        assertEquals(20, readCf.getIngredientGrams(1));
+        assertEquals(List.of(Map.entry("c2", 1.5)), List.copyOf(readCf.getComponents()));
+
+        assertEquals(3, read.countFoodLogs("food-a"));
+        assertTrue(read.getDayLogs().isEmpty());
+        assertEquals(Set.of(month), read.getTotaledMonths());
+        assertEquals(shard.getRollup().get(DAY), read.getRollup().get(DAY));
+        assertEquals(shard.getRollup().sum(DAY, DAY.plusDays(1)), read.getRollup().sum(DAY, DAY.plusDays(1)));
+        assertEquals(2, read.getRollup().count(DAY.plusDays(1)));
+    }
+
+    /** Segments keep DayLogs and FoodLogs, whatever form their IDs take. */
+    @Test
+    void segmentRoundTrips() throws Exception {
+        String compact = IdDictionary.newId();
+        String uuid = UUID.randomUUID().toString();
+        DayLog dl = dayLog(compact, uuid, DAY, 2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ModelCodec.writeSegment(bytes, List.of(dl));
+        List<DayLog> read = ModelCodec.readSegment(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(1, read.size());
+        assertEquals(compact, read.get(0).getId());
+        assertEquals(uuid, read.get(0).getUserId());
+        assertEquals(DAY, read.get(0).getDate());
+        assertFoodLog(read.get(0).getFoodLogs().get(0));
+        assertEquals(dl.getTotalNutrients(), read.get(0).getTotalNutrients());
+    }
+
+    /** Every journal entry type survives encoding with its header and payload. */
+    @Test
+    void journalEntriesRoundTrip() throws Exception {
+        List<JournalEntry> entries = List.of(
+                JournalEntry.foodLogAdded("u1", DAY, foodLog("l1")),
+                JournalEntry.foodLogRemoved("u1", DAY, "l1"),
+                JournalEntry.customFoodCreated(new CustomFood("c1", "u1", "Shake", null)),
+                JournalEntry.customFoodDeleted("u1", "c1"),
+                JournalEntry.goalsReplaced("u1", List.of(goal("g1"))),
+                JournalEntry.accountSaved(user("u1"), "salt", "hash"),
+                JournalEntry.accountEmailChanged("u1", "b@x.com"),
+                JournalEntry.activeUserChanged("u1"),
+                JournalEntry.customFoodComponentAdded("u1", "c1", "c2", 2.5),
+                JournalEntry.customFoodComponentRemoved("u1", "c1", "c2"),
+                JournalEntry.goalAdded("u1", goal("g2")));
+        assertEquals(JournalEntry.Type.values().length, entries.size());
+
+        for (JournalEntry e : entries) {
+            JournalEntry read = ModelCodec.decodeEntry(ModelCodec.encodeEntry(e));
+            assertEquals(e.getType(), read.getType());
+            assertEquals(e.getUserId(), read.getUserId());
+            assertEquals(e.getDate(), read.getDate());
+            assertEquals(e.getTargetId(), read.getTargetId());
+        }
+        JournalEntry added = ModelCodec.decodeEntry(ModelCodec.encodeEntry(entries.get(0)));
+        assertFoodLog((FoodLog) added.getPayload());
+        JournalEntry component = ModelCodec.decodeEntry(ModelCodec.encodeEntry(entries.get(8)));
+        assertEquals(Map.entry("c2", 2.5), component.getPayload());
+        JournalEntry account = ModelCodec.decodeEntry(ModelCodec.encodeEntry(entries.get(5)));
+        assertUser((User) account.getPayload(), "a@x.com");
+        assertEquals("hash", account.getPasswordHash());
+    }
+
+    /**
+     * Snapshots of every version are read. Before version 2 they also carry goals, custom foods
+     * and DayLogs; before version 5 a user's email is their ID.
+     */
+    @Test
+    void readsSnapshotsOfEveryVersion() throws Exception {
+        for (int v = 1; v <= ModelCodec.SCHEMA_VERSION; v++) {
+            LegacyOut out = new LegacyOut(v);
+            out.data.writeInt(SNAPSHOT_MAGIC);
+            out.data.writeShort(v);
+            out.data.writeInt(1);
+            out.string("a@x.com");
+            out.user("a@x.com");
+            out.string("salt");
+            out.string("hash");
+            out.string("a@x.com");
+            if (v < 2) {
+                out.data.writeInt(1);
+                out.goal("g1");
+            }
+            out.data.writeInt(1);
+            out.food("f1");
+            if (v < 2) {
+                out.data.writeInt(1);
+                out.customFood("c1", "f1");
+                out.data.writeInt(1);
+                out.dayLog("d1", "a@x.com", DAY, 2);
+            }
+
+            ModelCodec.Snapshot s = ModelCodec.readSnapshot(out.input());
+            String at = "version " + v;
+            assertUser(s.activeUser, "a@x.com");
+            assertEquals("hash", s.passwordHashById.get("a@x.com"), at);
+            assertFood(s.foods.get(0), "f1");
+            assertEquals(v < 2 ? 1 : 0, s.goals.size(), at);
+            assertEquals(v < 2 ? 1 : 0, s.dayLogs.size(), at);
+            if (v < 2) {
+                assertGoal(s.goals.get(0), "g1");
+                assertSame(s.foods.get(0), s.customFoods.get(0).getIngredientFood(0), at);
+                assertFoodLog(s.dayLogs.get(0).getFoodLogs().get(0));
+            }
+        }
+    }
+
+    /**
+     * Shards of every version are read: DayLogs before version 3, usage counts from version 4,
+     * components from version 6 and day totals from version 8.
+     */
+    @Test
+    void readsShardsOfEveryVersion() throws Exception {
+        Food shared = food("f1");
+        for (int v = 2; v <= ModelCodec.SCHEMA_VERSION; v++) {
+            LegacyOut out = new LegacyOut(v);
+            out.data.writeInt(SHARD_MAGIC);
+            out.data.writeShort(v);
+            out.id("u1");
+            out.data.writeInt(1);
+            out.goal("g1");
+            out.data.writeInt(1);
+            out.customFood("c1", "f1");
+            if (v < 3) {
+                out.data.writeInt(1);
+                out.dayLog("d1", "u1", DAY, 2);
+            }
+            if (v >= 4) {
+                out.data.writeInt(1);
+                out.data.writeInt((int) DAY.withDayOfMonth(1).toEpochDay());
+                out.varInt(1);
+                out.id("food-a");
+                out.varInt(2);
+            }
+            if (v >= 8) {
+                out.data.writeInt(1);
+                out.data.writeInt((int) DAY.withDayOfMonth(1).toEpochDay());
+                out.varInt(1);
+                out.data.writeByte(DAY.getDayOfMonth());
+                out.varInt(2);
+                out.data.writeDouble(300);
+                out.data.writeDouble(20);
+                out.data.writeDouble(30);
+                out.data.writeDouble(10);
+            }
+
+            UserShard shard = ModelCodec.readShard(out.input(), id -> id.equals("f1") ? shared : null);
+            String at = "version " + v;
+            assertEquals("u1", shard.getUserId(), at);
+            assertGoal(shard.getGoals().get(0), "g1");
+            CustomFood cf = shard.getCustomFoods().get(0);
+            assertSame(shared, cf.getIngredientFood(0), at);
+            assertEquals(v >= 6 ? 1 : 0, cf.getComponents().size(), at);
+            assertEquals(v < 3 ? 1 : 0, shard.getDayLogs().size(), at);
+            assertEquals(v >= 3 && v < 4 ? 0 : 2, shard.countFoodLogs("food-a"), at);
+            Macros totals = v < 3 ? new Macros(600, 40, 60, 20) : v >= 8 ? new Macros(300, 20, 30, 10) : Macros.ZERO;
+            assertEquals(totals, shard.getRollup().get(DAY), at);
+        }
+    }
+
+    /** Segments of every version since segments were introduced are read. */
+    @Test
+    void readsSegmentsOfEveryVersion() throws Exception {
+        for (int v = 3; v <= ModelCodec.SCHEMA_VERSION; v++) {
+            LegacyOut out = new LegacyOut(v);
+            out.data.writeInt(SEGMENT_MAGIC);
+            out.data.writeShort(v);
+            out.data.writeInt(1);
+            out.dayLog("d1", "u1", DAY, 2);
+
+            List<DayLog> read = ModelCodec.readSegment(out.input());
+            assertEquals("d1", read.get(0).getId(), "version " + v);
+            assertEquals(2, read.get(0).getFoodLogs().size(), "version " + v);
+            assertFoodLog(read.get(0).getFoodLogs().get(0));
+        }
+    }
+
+    /** Journal records of every version are read. */
+    @Test
+    void readsJournalRecordsOfEveryVersion() throws Exception {
+        for (int v = 1; v <= ModelCodec.SCHEMA_VERSION; v++) {
+            LegacyOut out = new LegacyOut(v);
+            out.data.writeShort(v);
+            out.data.writeByte(JournalEntry.Type.FOOD_LOG_ADDED.ordinal());
+            out.string("u1");
+            out.data.writeInt((int) DAY.toEpochDay());
+            out.string(null);
+            out.foodLog("l1");
+
+            JournalEntry e = ModelCodec.decodeEntry(out.bytes());
+            assertEquals(JournalEntry.Type.FOOD_LOG_ADDED, e.getType(), "version " + v);
+            assertEquals(DAY, e.getDate(), "version " + v);
+            assertFoodLog((FoodLog) e.getPayload());
+
+            out = new LegacyOut(v);
+            out.data.writeShort(v);
+            out.data.writeByte(JournalEntry.Type.GOALS_REPLACED.ordinal());
+            out.string("u1");
+            out.data.writeInt(Integer.MIN_VALUE);
+            out.string(null);
+            out.data.writeInt(1);
+            out.goal("g1");
+            e = ModelCodec.decodeEntry(out.bytes());
+            assertNull(e.getDate(), "version " + v);
+            List<?> goals = (List<?>) e.getPayload();
+            assertGoal((Goal) goals.get(0), "g1");
+        }
+    }
+
+    /** A payload from a newer schema version is rejected rather than misread. */
+    @Test
+    void rejectsNewerVersions() throws Exception {
+        LegacyOut out = new LegacyOut(ModelCodec.SCHEMA_VERSION + 1);
+        out.data.writeInt(SEGMENT_MAGIC);
+        out.data.writeShort(ModelCodec.SCHEMA_VERSION + 1);
+        out.data.writeInt(0);
+        assertThrows(IOException.class, () -> ModelCodec.readSegment(out.input()));
+
+        byte[] record = ModelCodec.encodeEntry(JournalEntry.activeUserChanged("u1"));
+        record[1]++;
+        assertTrue(ModelCodec.isNewerVersion(record));
+        assertThrows(IOException.class, () -> ModelCodec.decodeEntry(record));
+    }
+
+    /** Creates the test user. */
+    private static User user(String id) {
+        User u = new User(id, "Ann", "Lose", 30, User.sexOf(SEX), 65, 140, User.activityLevelOf(ACTIVITY));
+        u.setEmail("a@x.com");
+        return u;
+    }
+
+    /** Creates a test food. */
+    private static Food food(String id) {
+        return new Food(id, "Oats", "Brand", "Grains", 40, 150, 5, 27, 3);
+    }
+
+    /** Creates a test goal. */
+    private static Goal goal(String id) {
+        return new Goal(id, 1800, 120, 200, 60, DAY, DAY.plusDays(30));
+    }
+
+    /** Creates a test entry with computed totals. */
+    private static FoodLog foodLog(String id) {
+        FoodLog log = new FoodLog(id, "food-a", FoodLog.MealType.LUNCH, 1.5, TIME, "note");
+        log.setComputedTotals(300, 20, 30, 10);
+        return log;
+    }
+
+    /** Creates a DayLog with the given number of test entries. */
+    private static DayLog dayLog(String id, String userId, LocalDate date, int entries) {
+        DayLog dl = new DayLog(id, userId, date);
+        for (int i = 0; i < entries; i++) dl.addFoodLog(foodLog(id + "-" + i));
+        return dl;
+    }
+
+    /** Checks the fields of the test user. */
+    private static void assertUser(User u, String email) {
+        assertEquals("Ann", u.getName());
+        assertEquals(30, u.getAge());
+        assertEquals(User.sexOf(SEX), u.getSex());
+        assertEquals(User.activityLevelOf(ACTIVITY), u.getActivityLevel());
+        assertEquals(140, u.getWeightLb());
+        assertEquals(email, u.getEmail());
+    }
+
+    /** Checks the fields of a test food. */
+    private static void assertFood(Food f, String id) {
+        assertEquals(id, f.getId());
+        assertEquals("Oats", f.getName());
+        assertEquals(40, f.getServingSize());
+        assertEquals(27, f.getCarbsG());
+    }
+
+    /** Checks the fields of a test goal. */
+    private static void assertGoal(Goal g, String id) {
+        assertEquals(id, g.getId());
+        assertEquals(1800, g.getTargetCalories());
+        assertEquals(60, g.getTargetFatG());
+        assertEquals(DAY, g.getStartDate());
+        assertEquals(DAY.plusDays(30), g.getEndDate());
+    }
+
+    /** Checks the fields of a test entry. */
+    private static void assertFoodLog(FoodLog log) {
+        assertEquals("food-a", log.getCustomFoodId());
+        assertEquals(FoodLog.MealType.LUNCH, log.getMealType());
+        assertEquals(1.5, log.getServings());
+        assertEquals(TIME, log.getTimestamp());
+        assertEquals("note", log.getNotes());
+        assertEquals(new Macros(300, 20, 30, 10), log.getNutrients());
+    }
+
+    /** Writes payloads in the layout of one schema version, using the test fixtures above. */
+    private static final class LegacyOut {
+
+        /** Version whose layout is written. */
+        private final int version;
+
+        /** Buffer being written. */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        /** Stream over {@link #buffer}. */
+        private final DataOutputStream data = new DataOutputStream(buffer);
+
+        /** Creates a writer for one version. */
+        LegacyOut(int version) {
+            this.version = version;
+        }
+
+        /** Returns the bytes written so far. */
+        byte[] bytes() {
+            return buffer.toByteArray();
+        }
+
+        /** Returns the bytes written so far as a stream. */
+        ByteArrayInputStream input() {
+            return new ByteArrayInputStream(bytes());
+        }
+
+        /** Writes a varint. */
+        void varInt(int v) throws IOException {
+            while ((v & ~0x7F) != 0) {
+                data.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data.writeByte(v);
+        }
+
+        /** Writes a length-prefixed string. */
+        void string(String s) throws IOException {
+            if (s == null) {
+                varInt(0);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varInt(b.length + 1);
+            data.write(b);
+        }
+
+        /** Writes an entity ID: a string before compact IDs, a tagged string after. */
+        void id(String id) throws IOException {
+            if (version >= 7) data.writeByte(3);
+            string(id);
+        }
+
+        /** Writes the test user. */
+        void user(String id) throws IOException {
+            string(id);
+            string("Ann");
+            string("Lose");
+            data.writeInt(30);
+            data.writeByte(SEX);
+            data.writeDouble(65);
+            data.writeDouble(140);
+            data.writeByte(ACTIVITY);
+            if (version >= 5) string(id);
+        }
+
+        /** Writes a test goal. */
+        void goal(String id) throws IOException {
+            id(id);
+            data.writeInt(1800);
+            data.writeDouble(120);
+            data.writeDouble(200);
+            data.writeDouble(60);
+            data.writeInt((int) DAY.toEpochDay());
+            data.writeInt((int) DAY.plusDays(30).toEpochDay());
+        }
+
+        /** Writes a test food. */
+        void food(String id) throws IOException {
+            string(id);
+            string("Oats");
+            string("Brand");
+            string("Grains");
+            for (double d : new double[] {40, 150, 5, 27, 3}) data.writeDouble(d);
+        }
+
+        /** Writes a custom food with one referenced ingredient and, from version 6, one component. */
+        void customFood(String id, String ingredientId) throws IOException {
+            id(id);
+            id("u1");
+            string("Shake");
+            string(null);
+            data.writeInt(1);
+            data.writeByte(0);
+            id(ingredientId);
+            data.writeDouble(50);
+            if (version >= 6) {
+                data.writeInt(1);
+                id("c2");
+                data.writeDouble(1.5);
+            }
+        }
+
+        /** Writes a DayLog with the given number of test entries. */
+        void dayLog(String id, String userId, LocalDate date, int entries) throws IOException {
+            id(id);
+            id(userId);
+            data.writeInt((int) date.toEpochDay());
+            data.writeInt(entries);
+            for (int i = 0; i < entries; i++) foodLog(id + "-" + i);
+        }
+
+        /** Writes a test entry. */
+        void foodLog(String id) throws IOException {
+            id(id);
+            id("food-a");
+            data.writeByte(FoodLog.MealType.LUNCH.ordinal());
+            data.writeDouble(1.5);
+            data.writeLong(TIME.toEpochSecond(ZoneOffset.UTC));
+            data.writeInt(TIME.getNano());
+            string("note");
+            for (double d : new double[] {300, 20, 30, 10}) data.writeDouble(d);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package edu.utsa.cs3443.macromateapp.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SnapshotStore}: generations rotate on each write, a damaged or truncated
+ * newest generation falls back to the newest intact older one, and an intact one that cannot be
+ * parsed fails the read and blocks writes.
+ */
+class SnapshotStoreTest {
+
+    /** Directory holding the snapshot files. */
+    @TempDir
+    Path dir;
+
+    /** A store with no files reads as null. */
+    @Test
+    void readsNullWhenEmpty() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        assertFalse(store.exists());
+        assertNull(store.read(SnapshotStoreTest::text));
+    }
+
+    /** Each write becomes generation 0 and pushes the older ones back; the oldest is dropped. */
+    @Test
+    void rotatesGenerations() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        for (String s : new String[] {"one", "two", "three", "four"}) write(store, s);
+
+        assertEquals("four", store.read(SnapshotStoreTest::text));
+        assertTrue(Files.exists(store.generationFile(2)));
+        assertFalse(Files.exists(store.generationFile(3)));
+        assertFalse(Files.exists(dir.resolve("data.dat.tmp")));
+    }
+
+    /** A newest generation with a bad checksum falls back to the previous one. */
+    @Test
+    void fallsBackFromCorruptGeneration() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        write(store, "older");
+        write(store, "newer");
+        flipLastByte(store.generationFile(0));
+
+        assertEquals("older", store.read(SnapshotStoreTest::text));
+    }
+
+    /** A newest generation cut short falls back to the previous one. */
+    @Test
+    void fallsBackFromTruncatedGeneration() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        write(store, "older");
+        write(store, "newer");
+        try (RandomAccessFile f = new RandomAccessFile(store.generationFile(0).toFile(), "rw")) {
+            f.setLength(f.length() - 1);
+        }
+
+        assertEquals("older", store.read(SnapshotStoreTest::text));
+    }
+
+    /** The read is an error only if every generation is damaged, and the store then refuses writes. */
+    @Test
+    void failsWhenNoGenerationIsReadable() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 2);
+        write(store, "older");
+        write(store, "newer");
+        flipLastByte(store.generationFile(0));
+        flipLastByte(store.generationFile(1));
+
+        assertThrows(IOException.class, () -> store.read(SnapshotStoreTest::text));
+        assertTrue(store.isReadOnly());
+        assertThrows(IOException.class, () -> write(store, "lost"));
+        assertFalse(Files.exists(dir.resolve("data.dat.tmp")));
+    }
+
+    /** An intact generation the reader rejects fails the read instead of falling back to an older one. */
+    @Test
+    void doesNotFallBackFromUnparsableGeneration() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        write(store, "older");
+        write(store, "newer");
+        byte[] newest = Files.readAllBytes(store.generationFile(0));
+
+        assertThrows(IOException.class, () -> store.read(in -> {
+            String s = text(in);
+            if (s.equals("newer")) throw new IllegalStateException("rejected");
+            return s;
+        }));
+        assertThrows(IOException.class, () -> write(store, "lost"));
+        assertArrayEquals(newest, Files.readAllBytes(store.generationFile(0)));
+    }
+
+    /** A newer schema version propagates as is, and the newer file is never rotated out. */
+    @Test
+    void propagatesNewerVersion() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 2);
+        write(store, "older");
+        write(store, "newer");
+
+        assertThrows(NewerVersionException.class, () -> store.read(in -> {
+            throw new NewerVersionException("too new");
+        }));
+        assertThrows(IOException.class, () -> write(store, "lost"));
+        assertEquals("newer", store.read(SnapshotStoreTest::text));
+        assertFalse(store.isReadOnly());
+        write(store, "newest");
+        assertEquals("newest", store.read(SnapshotStoreTest::text));
+    }
+
+    /** A writer that fails leaves the existing generations untouched and no temporary file. */
+    @Test
+    void failedWriteKeepsGenerations() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        write(store, "kept");
+
+        assertThrows(IOException.class, () -> store.write(out -> {
+            out.write(1);
+            throw new IOException("disk full");
+        }));
+        assertEquals("kept", store.read(SnapshotStoreTest::text));
+        assertFalse(Files.exists(store.generationFile(1)));
+        assertFalse(Files.exists(dir.resolve("data.dat.tmp")));
+    }
+
+    /** A file written before snapshots had a header is read as it is. */
+    @Test
+    void readsUnframedFile() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, "data.dat", 3);
+        Files.writeString(store.generationFile(0), "legacy");
+
+        assertEquals("legacy", store.read(SnapshotStoreTest::text));
+    }
+
+    /** Writes a string as a generation. */
+    private static void write(SnapshotStore store, String s) throws IOException {
+        store.write(out -> out.write(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Reads a payload as a string. */
+    private static String text(java.io.InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /** Damages the last byte of a file. */
+    private static void flipLastByte(Path file) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            f.seek(f.length() - 1);
+            int b = f.read();
+            f.seek(f.length() - 1);
+            f.write(b ^ 0xFF);
+        }
+    }
+}